@@ -0,0 +1,29 @@
+package cache.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the cache benchmarks at 1, 4 and 16 threads with the GC profiler, so
+ * every result comes with its allocation rate (gc.alloc.rate.norm is bytes
+ * per operation). An optional argument narrows the run to benchmarks matching
+ * a regex, e.g. {@code MultiLevelCacheBenchmark.get}.
+ */
+public class CacheBenchmarks {
+    private static final int[] THREAD_COUNTS = { 1, 4, 16 };
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "cache\\.jmh\\..*";
+        for (int threads : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package cache.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cache.src.core.CacheLevel;
+
+/**
+ * A single CacheLevel per eviction policy and key distribution. CacheLevel
+ * is not thread safe on its own, so every benchmark thread drives its own
+ * level over the shared trace; MultiLevelCacheBenchmark covers shared access.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheLevelBenchmark {
+    private static final int CAPACITY = 10_000;
+
+    @Param({ "lru", "buffered-lru", "w-tinylfu" })
+    public String policy;
+
+    @Param({ "uniform", "zipf", "scan" })
+    public String distribution;
+
+    @Param({ "95" })
+    public int readPercent;
+
+    private long[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = Traces.of(distribution);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLevel {
+        private CacheLevel<Long, Long> level;
+
+        @Setup(Level.Trial)
+        public void setUp(CacheLevelBenchmark benchmark) {
+            long[] keys = benchmark.keys;
+            level = new CacheLevel<>(CAPACITY, Traces.policy(benchmark.policy, CAPACITY));
+            for (int i = 0; i < CAPACITY * 2; i++) {
+                level.put(keys[i], keys[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public Long get(ThreadLevel state, Cursor cursor) {
+        return state.level.get(cursor.next(keys));
+    }
+
+    @Benchmark
+    public void put(ThreadLevel state, Cursor cursor) {
+        long key = cursor.next(keys);
+        state.level.put(key, key);
+    }
+
+    @Benchmark
+    public Long readWrite(ThreadLevel state, Cursor cursor) {
+        long key = cursor.next(keys);
+        if (cursor.isRead(readPercent)) {
+            return state.level.get(key);
+        }
+        state.level.put(key, key);
+        return null;
+    }
+}
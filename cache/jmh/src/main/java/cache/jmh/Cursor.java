@@ -0,0 +1,24 @@
+package cache.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per thread position in the shared trace. Threads start at random offsets
+ * so they do not hit the same key at the same moment.
+ */
+@State(Scope.Thread)
+public class Cursor {
+    private int index = ThreadLocalRandom.current().nextInt(Traces.LENGTH);
+
+    long next(long[] keys) {
+        return keys[index++ & (keys.length - 1)];
+    }
+
+    boolean isRead(int readPercent) {
+        // Looked up per call, the state may be set up on another thread than the one using it
+        return ThreadLocalRandom.current().nextInt(100) < readPercent;
+    }
+}
@@ -0,0 +1,78 @@
+package cache.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import cache.src.eviction.IEvictionPolicy;
+
+/**
+ * Eviction policy bookkeeping on its own, without the map in front of it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LRUEvictionPolicyBenchmark {
+    private static final int CAPACITY = 10_000;
+
+    @Param({ "lru", "buffered-lru" })
+    public String policy;
+
+    private IEvictionPolicy<Long> evictionPolicy;
+    private long[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = Traces.of("uniform");
+        evictionPolicy = Traces.policy(policy, CAPACITY);
+        for (long key = 0; key < CAPACITY; key++) {
+            evictionPolicy.onInsert(key);
+        }
+    }
+
+    // Trace keys are folded onto the CAPACITY tracked keys, so every access is a hit
+    @Benchmark
+    public void onAccess(Cursor cursor) {
+        evictionPolicy.onAccess(cursor.next(keys) % CAPACITY);
+    }
+
+    // Keeps the policy at capacity: every insert is a key never tracked before, then one eviction
+    @Benchmark
+    public Long insertAndEvict(KeySequence sequence) {
+        evictionPolicy.onInsert(sequence.next());
+        return evictionPolicy.evict();
+    }
+
+    /**
+     * Fresh keys for one thread, from a range no other thread and none of the
+     * initially tracked keys use.
+     */
+    @State(Scope.Thread)
+    public static class KeySequence {
+        private long next;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams params) {
+            next = (params.getThreadIndex() + 1L) << 40;
+        }
+
+        long next() {
+            return next++;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cache.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cache.src.builder.CacheBuilder;
+import cache.src.core.CacheLevel;
+import cache.src.core.MultiLevelCache;
+import cache.src.core.ReadMode;
+import cache.src.population.promotion.PromoteToAllLowerLevels;
+
+/**
+ * Two level cache, a small L1 over a larger L2, under read/write mixes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiLevelCacheBenchmark {
+    private static final int L1_CAPACITY = 10_000;
+    private static final int L2_CAPACITY = 50_000;
+
+    @Param({ "STRIPED", "OPTIMISTIC" })
+    public ReadMode readMode;
+
+    @Param({ "uniform", "zipf", "scan" })
+    public String distribution;
+
+    @Param({ "100", "95", "50" })
+    public int readPercent;
+
+    // OPTIMISTIC L1 hits are lock free only with buffered-lru, lru locks its list on every hit
+    @Param({ "lru", "buffered-lru" })
+    public String policy;
+
+    private MultiLevelCache<Long, Long> cache;
+    private long[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = Traces.of(distribution);
+        cache = new CacheBuilder<Long, Long>()
+                .setLevels(2)
+                .addCacheLevel(new CacheLevel<>(L1_CAPACITY, Traces.policy(policy, L1_CAPACITY)))
+                .addCacheLevel(new CacheLevel<>(L2_CAPACITY, Traces.policy(policy, L2_CAPACITY)))
+                .setPromotionStrategy(new PromoteToAllLowerLevels())
+                .setReadMode(readMode)
+                .build();
+        for (int i = 0; i < L2_CAPACITY; i++) {
+            cache.put(keys[i], keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public Long get(Cursor cursor) {
+        return cache.get(cursor.next(keys));
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        long key = cursor.next(keys);
+        cache.put(key, key);
+    }
+
+    @Benchmark
+    public Long readWrite(Cursor cursor) {
+        long key = cursor.next(keys);
+        if (cursor.isRead(readPercent)) {
+            return cache.get(key);
+        }
+        cache.put(key, key);
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package cache.jmh;
+
+import cache.src.benchmark.KeyDistributions;
+import cache.src.eviction.IEvictionPolicy;
+import cache.src.eviction.lru.BufferedLRUEvictionPolicy;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+import cache.src.eviction.tinylfu.WTinyLFUEvictionPolicy;
+
+/**
+ * Key traces and eviction policies by name, shared by the benchmarks'
+ * {@code @Param} values.
+ */
+final class Traces {
+    static final int KEY_SPACE = 100_000;
+    // Power of two so a cursor can wrap with a mask
+    static final int LENGTH = 1 << 20;
+
+    private Traces() {
+    }
+
+    static long[] of(String distribution) {
+        switch (distribution) {
+            case "uniform":
+                return KeyDistributions.uniform(KEY_SPACE, LENGTH, 42);
+            case "zipf":
+                return KeyDistributions.zipf(KEY_SPACE, LENGTH, 0.99, 42);
+            case "scan":
+                return KeyDistributions.scan(KEY_SPACE, LENGTH);
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+    }
+
+    static IEvictionPolicy<Long> policy(String name, int capacity) {
+        switch (name) {
+            case "lru":
+                return new LRUEvictionPolicy<>();
+            case "buffered-lru":
+                return new BufferedLRUEvictionPolicy<>();
+            case "w-tinylfu":
+                return new WTinyLFUEvictionPolicy<>(capacity);
+            default:
+                throw new IllegalArgumentException("Unknown policy " + name);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cache.src.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minimal multi threaded throughput harness used by the benchmark drivers.
+ * Each thread runs the operation in a loop for a fixed duration after a warmup.
+ */
+public class BenchmarkRunner {
+
+    public interface Operation {
+        void run(int threadId, long iteration);
+    }
+
+    private final long warmupMillis;
+    private final long measureMillis;
+
+    public BenchmarkRunner(long warmupMillis, long measureMillis) {
+        this.warmupMillis = warmupMillis;
+        this.measureMillis = measureMillis;
+    }
+
+    /**
+     * Returns operations per second across all threads.
+     */
+    public double run(int threads, Operation operation) throws InterruptedException {
+        runPhase(threads, operation, warmupMillis, new LongAdder());
+        LongAdder ops = new LongAdder();
+        runPhase(threads, operation, measureMillis, ops);
+        return ops.sum() * 1000.0 / measureMillis;
+    }
+
+    private void runPhase(int threads, Operation operation, long durationMillis, LongAdder ops)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            final int threadId = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    long count = 0;
+                    while (System.nanoTime() < deadline[0]) {
+                        operation.run(threadId, count);
+                        count++;
+                    }
+                    ops.add(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        deadline[0] = System.nanoTime() + durationMillis * 1_000_000L;
+        start.countDown();
+        done.await();
+    }
+}
@@ -0,0 +1,82 @@
+package cache.src.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cache.src.builder.CacheBuilder;
+import cache.src.core.CacheLevel;
+import cache.src.core.MultiLevelCache;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+import cache.src.offheap.OffHeapCacheLevel;
+import cache.src.offheap.StringSerializer;
+import cache.src.population.promotion.PromoteToAllLowerLevels;
+
+// Per key cost of get in a loop versus getAll for batch sizes 10, 100 and 1000
+
+public class BulkOperationBenchmark {
+    private static final int KEY_SPACE = 100_000;
+    private static final int L1_CAPACITY = 10_000;
+    private static final int[] BATCH_SIZES = { 10, 100, 1_000 };
+    private static final int KEYS_PER_ROUND = 2_000_000;
+
+    public static void main(String[] args) {
+        MultiLevelCache<String, String> cache = new CacheBuilder<String, String>()
+                .setLevels(2)
+                .addCacheLevel(new CacheLevel<>(L1_CAPACITY, new LRUEvictionPolicy<>()))
+                .addCacheLevel(new OffHeapCacheLevel<>(64L << 20, new StringSerializer()))
+                .setPromotionStrategy(new PromoteToAllLowerLevels())
+                .build();
+        for (int i = 0; i < KEY_SPACE; i++) {
+            cache.put("key-" + i, "value-" + i);
+        }
+        Random random = new Random(7);
+        System.out.printf("%-8s %15s %15s%n", "batch", "get ns/key", "getAll ns/key");
+        for (int batchSize : BATCH_SIZES) {
+            List<List<String>> batches = new ArrayList<>();
+            for (int b = 0; b < KEYS_PER_ROUND / batchSize; b++) {
+                List<String> batch = new ArrayList<>(batchSize);
+                for (int k = 0; k < batchSize; k++) {
+                    batch.add("key-" + random.nextInt(KEY_SPACE));
+                }
+                batches.add(batch);
+            }
+            // Warm up both paths before measuring
+            runLoop(cache, batches);
+            runBulk(cache, batches);
+            double loopNanos = (double) runLoop(cache, batches) / KEYS_PER_ROUND;
+            double bulkNanos = (double) runBulk(cache, batches) / KEYS_PER_ROUND;
+            System.out.printf("%-8d %15.1f %15.1f%n", batchSize, loopNanos, bulkNanos);
+        }
+    }
+
+    private static long runLoop(MultiLevelCache<String, String> cache, List<List<String>> batches) {
+        long start = System.nanoTime();
+        long found = 0;
+        for (List<String> batch : batches) {
+            for (String key : batch) {
+                if (cache.get(key) != null) {
+                    found++;
+                }
+            }
+        }
+        blackhole(found);
+        return System.nanoTime() - start;
+    }
+
+    private static long runBulk(MultiLevelCache<String, String> cache, List<List<String>> batches) {
+        long start = System.nanoTime();
+        long found = 0;
+        for (List<String> batch : batches) {
+            found += cache.getAll(batch).size();
+        }
+        blackhole(found);
+        return System.nanoTime() - start;
+    }
+
+    private static void blackhole(long value) {
+        if (value == Long.MIN_VALUE) {
+            System.out.println(value);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package cache.src.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import cache.src.core.CacheLevel;
+import cache.src.eviction.IEvictionPolicy;
+import cache.src.eviction.lru.BufferedLRUEvictionPolicy;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+
+// Compares eviction policy throughput on a single CacheLevel, 90% reads / 10% writes
+
+public class EvictionPolicyBenchmark {
+    private static final int KEY_SPACE = 20_000;
+    private static final int CAPACITY = 10_000;
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32 };
+
+    public static void main(String[] args) throws InterruptedException {
+        BenchmarkRunner runner = new BenchmarkRunner(1_000, 3_000);
+        System.out.printf("%-8s %-12s %15s%n", "threads", "policy", "ops/sec");
+        for (int threads : THREAD_COUNTS) {
+            report(runner, threads, "lru", LRUEvictionPolicy::new);
+            report(runner, threads, "buffered", BufferedLRUEvictionPolicy::new);
+        }
+    }
+
+    private static void report(BenchmarkRunner runner, int threads, String name,
+            Supplier<IEvictionPolicy<Integer>> policy) throws InterruptedException {
+        CacheLevel<Integer, Integer> level = new CacheLevel<>(CAPACITY, policy.get());
+        for (int i = 0; i < CAPACITY; i++) {
+            level.put(i, i);
+        }
+        // CacheLevel is not thread safe on its own, serialize writes the way
+        // MultiLevelCache does with its stripe locks
+        Object writeLock = new Object();
+        double throughput = runner.run(threads, (threadId, iteration) -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Integer key = random.nextInt(KEY_SPACE);
+            if (random.nextInt(100) < 90) {
+                level.get(key);
+            } else {
+                synchronized (writeLock) {
+                    level.put(key, key);
+                }
+            }
+        });
+        System.out.printf("%-8d %-12s %,15.0f%n", threads, name, throughput);
+    }
+}
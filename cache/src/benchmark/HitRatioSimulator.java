@@ -0,0 +1,54 @@
+package cache.src.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import cache.src.core.CacheLevel;
+import cache.src.eviction.IEvictionPolicy;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+import cache.src.eviction.tinylfu.WTinyLFUEvictionPolicy;
+
+// Replays key traces against a single CacheLevel and reports hit ratio per eviction policy
+
+public class HitRatioSimulator {
+    private static final int KEY_SPACE = 100_000;
+    private static final int TRACE_LENGTH = 2_000_000;
+    private static final int[] CAPACITIES = { 1_000, 5_000 };
+
+    public static void main(String[] args) {
+        Map<String, long[]> traces = new LinkedHashMap<>();
+        traces.put("zipf-0.8", KeyDistributions.zipf(KEY_SPACE, TRACE_LENGTH, 0.8, 42));
+        traces.put("zipf-1.0", KeyDistributions.zipf(KEY_SPACE, TRACE_LENGTH, 1.0, 42));
+        traces.put("zipf+scan", KeyDistributions.scanMixed(KEY_SPACE, TRACE_LENGTH, 0.9, 5_000, 0.3, 42));
+
+        Map<String, IntFunction<IEvictionPolicy<Long>>> policies = new LinkedHashMap<>();
+        policies.put("lru", capacity -> new LRUEvictionPolicy<>());
+        policies.put("w-tinylfu", capacity -> new WTinyLFUEvictionPolicy<>(capacity));
+        policies.put("tinylfu", capacity -> new WTinyLFUEvictionPolicy<>(capacity, 0));
+
+        System.out.printf("%-12s %-10s %-12s %10s%n", "trace", "capacity", "policy", "hit ratio");
+        for (Map.Entry<String, long[]> trace : traces.entrySet()) {
+            for (int capacity : CAPACITIES) {
+                for (Map.Entry<String, IntFunction<IEvictionPolicy<Long>>> policy : policies.entrySet()) {
+                    double hitRatio = replay(trace.getValue(), capacity, policy.getValue().apply(capacity));
+                    System.out.printf("%-12s %-10d %-12s %9.2f%%%n", trace.getKey(), capacity, policy.getKey(),
+                            hitRatio * 100);
+                }
+            }
+        }
+    }
+
+    public static double replay(long[] trace, int capacity, IEvictionPolicy<Long> policy) {
+        CacheLevel<Long, Long> level = new CacheLevel<>(capacity, policy);
+        long hits = 0;
+        for (long key : trace) {
+            if (level.get(key) != null) {
+                hits++;
+            } else {
+                level.put(key, key);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+}
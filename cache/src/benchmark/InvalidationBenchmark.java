@@ -0,0 +1,111 @@
+package cache.src.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cache.src.builder.CacheBuilder;
+import cache.src.core.CacheLevel;
+import cache.src.core.MultiLevelCache;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+import cache.src.invalidation.InProcessTransport;
+import cache.src.invalidation.InvalidationBus;
+import cache.src.invalidation.InvalidationTransport;
+import cache.src.invalidation.TcpTransport;
+import cache.src.invalidation.UdpTransport;
+import cache.src.offheap.StringSerializer;
+import cache.src.population.promotion.PromoteToAllLowerLevels;
+import cache.src.remote.CacheServer;
+import cache.src.remote.RemoteCacheLevel;
+
+// Two caches standing in for two processes: a private L1 each and a shared remote L2.
+// One writes zipf-distributed keys, then we count how many invalidation messages and keys
+// went over each transport and how many of the reader's L1 entries were still stale.
+
+public class InvalidationBenchmark {
+    private static final int KEY_SPACE = 10_000;
+    private static final int WRITES = 200_000;
+    private static final long FLUSH_MILLIS = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        long[] keys = KeyDistributions.zipf(KEY_SPACE, WRITES, 0.99, 3);
+        System.out.printf("%-10s %10s %10s %12s %8s%n", "transport", "writes", "messages", "keys sent", "stale");
+        for (String name : new String[] { "in-process", "udp", "tcp" }) {
+            try (CacheServer server = new CacheServer(64L << 20)) {
+                InvalidationTransport[] transports = transports(name);
+                InvalidationBus<String> writerBus = bus(transports[0]);
+                InvalidationBus<String> readerBus = bus(transports[1]);
+                MultiLevelCache<String, String> writer = cache(server, writerBus);
+                MultiLevelCache<String, String> reader = cache(server, readerBus);
+                for (int i = 0; i < KEY_SPACE; i++) {
+                    writer.put("key-" + i, "v0");
+                    reader.get("key-" + i); // Warm the reader's L1
+                }
+                writerBus.flush();
+                Thread.sleep(100);
+                long messagesBefore = writerBus.getPublishedMessages();
+                long keysBefore = writerBus.getPublishedKeys();
+                for (int i = 0; i < WRITES; i++) {
+                    writer.put("key-" + keys[i], "v" + (i + 1));
+                }
+                writerBus.flush();
+                Thread.sleep(200);
+                int stale = 0;
+                for (int i = 0; i < KEY_SPACE; i++) {
+                    String key = "key-" + i;
+                    String expected = writer.get(key);
+                    if (!expected.equals(reader.get(key))) {
+                        stale++;
+                    }
+                }
+                System.out.printf("%-10s %10d %10d %12d %8d%n", name, WRITES,
+                        writerBus.getPublishedMessages() - messagesBefore,
+                        writerBus.getPublishedKeys() - keysBefore, stale);
+                writerBus.close();
+                readerBus.close();
+                writer.close();
+                reader.close();
+            }
+        }
+    }
+
+    private static InvalidationBus<String> bus(InvalidationTransport transport) {
+        return new InvalidationBus<>(transport, new StringSerializer(), FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static MultiLevelCache<String, String> cache(CacheServer server, InvalidationBus<String> bus) {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        peers.add(server.getAddress());
+        return new CacheBuilder<String, String>()
+                .setLevels(2)
+                .addCacheLevel(new CacheLevel<>(KEY_SPACE, new LRUEvictionPolicy<>()))
+                .addCacheLevel(new RemoteCacheLevel<>(peers, new StringSerializer()))
+                .setPromotionStrategy(new PromoteToAllLowerLevels())
+                .setInvalidationBus(bus)
+                .build();
+    }
+
+    private static InvalidationTransport[] transports(String name) {
+        switch (name) {
+            case "udp": {
+                UdpTransport first = new UdpTransport(0);
+                UdpTransport second = new UdpTransport(0);
+                first.addPeer(second.getAddress());
+                second.addPeer(first.getAddress());
+                return new InvalidationTransport[] { first, second };
+            }
+            case "tcp": {
+                TcpTransport first = new TcpTransport(0);
+                TcpTransport second = new TcpTransport(0);
+                first.addPeer(second.getAddress());
+                second.addPeer(first.getAddress());
+                return new InvalidationTransport[] { first, second };
+            }
+            default: {
+                InProcessTransport shared = new InProcessTransport();
+                return new InvalidationTransport[] { shared, shared };
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package cache.src.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Key traces shared by the benchmark and simulation drivers.
+ */
+public class KeyDistributions {
+
+    private KeyDistributions() {
+    }
+
+    public static long[] uniform(int keySpace, int length, long seed) {
+        Random random = new Random(seed);
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            trace[i] = random.nextInt(keySpace);
+        }
+        return trace;
+    }
+
+    /**
+     * Zipfian keys where rank r is drawn with probability proportional to 1/r^exponent.
+     * Ranks are scattered over the key space so hot keys do not share a hash neighbourhood.
+     */
+    public static long[] zipf(int keySpace, int length, double exponent, long seed) {
+        double[] cdf = new double[keySpace];
+        double sum = 0;
+        for (int rank = 1; rank <= keySpace; rank++) {
+            sum += 1.0 / Math.pow(rank, exponent);
+            cdf[rank - 1] = sum;
+        }
+        Random random = new Random(seed);
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            int rank = index >= 0 ? index : Math.min(-index - 1, keySpace - 1);
+            trace[i] = scramble(rank);
+        }
+        return trace;
+    }
+
+    /**
+     * Zipfian traffic interleaved with sequential scans over keys that are
+     * never reused, the pattern that flushes a plain LRU.
+     */
+    public static long[] scanMixed(int keySpace, int length, double exponent, int scanLength,
+            double scanFraction, long seed) {
+        long[] hot = zipf(keySpace, length, exponent, seed);
+        Random random = new Random(seed + 1);
+        long[] trace = new long[length];
+        long nextScanKey = Long.MAX_VALUE / 2;
+        int i = 0;
+        int hotIndex = 0;
+        while (i < length) {
+            if (random.nextDouble() < scanFraction / scanLength) {
+                for (int s = 0; s < scanLength && i < length; s++) {
+                    trace[i++] = nextScanKey++;
+                }
+            } else {
+                trace[i++] = hot[hotIndex++];
+            }
+        }
+        return trace;
+    }
+
+    public static long[] scan(int keySpace, int length) {
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            trace[i] = i % keySpace;
+        }
+        return trace;
+    }
+
+    private static long scramble(int rank) {
+        long x = rank * 0x9e3779b97f4a7c15L;
+        return (x ^ (x >>> 29)) & Long.MAX_VALUE;
+    }
+}
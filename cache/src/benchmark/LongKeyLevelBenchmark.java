@@ -0,0 +1,61 @@
+package cache.src.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import cache.src.core.CacheLevel;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+import cache.src.primitive.LongKeyCacheLevel;
+
+// Read throughput and bytes allocated per get: CacheLevel<Long, V> versus LongKeyCacheLevel<V>
+
+public class LongKeyLevelBenchmark {
+    private static final int CAPACITY = 100_000;
+    private static final int KEY_SPACE = 200_000;
+    private static final int[] THREAD_COUNTS = { 1, 4, 16 };
+    private static final int ALLOCATION_SAMPLE = 1_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        CacheLevel<Long, String> boxed = new CacheLevel<>(CAPACITY, new LRUEvictionPolicy<>());
+        LongKeyCacheLevel<String> primitive = new LongKeyCacheLevel<>(CAPACITY);
+        for (long i = 0; i < KEY_SPACE; i++) {
+            boxed.put(i, "value");
+            primitive.put(i, "value");
+        }
+        long[] keys = KeyDistributions.uniform(KEY_SPACE, 1 << 20, 11);
+
+        System.out.printf("%-8s %-12s %15s%n", "threads", "level", "ops/sec");
+        BenchmarkRunner runner = new BenchmarkRunner(1_000, 3_000);
+        for (int threads : THREAD_COUNTS) {
+            double boxedOps = runner.run(threads, (threadId, iteration) -> {
+                boxed.get(keys[(int) (iteration & (keys.length - 1))]);
+            });
+            double primitiveOps = runner.run(threads, (threadId, iteration) -> {
+                primitive.get(keys[(int) (iteration & (keys.length - 1))]);
+            });
+            System.out.printf("%-8d %-12s %,15.0f%n", threads, "boxed", boxedOps);
+            System.out.printf("%-8d %-12s %,15.0f%n", threads, "primitive", primitiveOps);
+        }
+
+        System.out.printf("%nbytes allocated per get: boxed %.1f, primitive %.1f%n",
+                bytesPerGet(() -> {
+                    for (int i = 0; i < ALLOCATION_SAMPLE; i++) {
+                        boxed.get(keys[i & (keys.length - 1)]);
+                    }
+                }),
+                bytesPerGet(() -> {
+                    for (int i = 0; i < ALLOCATION_SAMPLE; i++) {
+                        primitive.get(keys[i & (keys.length - 1)]);
+                    }
+                }));
+    }
+
+    private static double bytesPerGet(Runnable gets) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        gets.run(); // Warm up so JIT allocations are not counted
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        gets.run();
+        return (double) (threads.getThreadAllocatedBytes(threadId) - before) / ALLOCATION_SAMPLE;
+    }
+}
@@ -0,0 +1,60 @@
+package cache.src.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import cache.src.builder.CacheBuilder;
+import cache.src.core.CacheLevel;
+import cache.src.core.MultiLevelCache;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+import cache.src.population.IPopulationStrategy;
+import cache.src.population.promotion.PromoteOnFrequency;
+import cache.src.population.promotion.PromoteToAllLowerLevels;
+
+// Replays read traces against a small LRU L1 over a large L2. Misses are filled
+// into L2 only, so L1 contents depend only on the promotion strategy. Reports the L1 hit ratio.
+
+public class PromotionHitRatioSimulator {
+    private static final int KEY_SPACE = 100_000;
+    private static final int TRACE_LENGTH = 2_000_000;
+    private static final int L1_CAPACITY = 1_000;
+    private static final int L2_CAPACITY = 50_000;
+
+    public static void main(String[] args) {
+        Map<String, long[]> traces = new LinkedHashMap<>();
+        traces.put("zipf-0.8", KeyDistributions.zipf(KEY_SPACE, TRACE_LENGTH, 0.8, 42));
+        traces.put("zipf-1.0", KeyDistributions.zipf(KEY_SPACE, TRACE_LENGTH, 1.0, 42));
+        traces.put("zipf+scan", KeyDistributions.scanMixed(KEY_SPACE, TRACE_LENGTH, 0.9, 5_000, 0.3, 42));
+
+        Map<String, Supplier<IPopulationStrategy>> strategies = new LinkedHashMap<>();
+        strategies.put("promote-all", PromoteToAllLowerLevels::new);
+        strategies.put("freq-k2", () -> new PromoteOnFrequency(2, 10 * L1_CAPACITY));
+        strategies.put("freq-k3", () -> new PromoteOnFrequency(3, 10 * L1_CAPACITY));
+
+        System.out.printf("%-12s %-12s %12s%n", "trace", "strategy", "L1 hit ratio");
+        for (Map.Entry<String, long[]> trace : traces.entrySet()) {
+            for (Map.Entry<String, Supplier<IPopulationStrategy>> strategy : strategies.entrySet()) {
+                double hitRatio = replay(trace.getValue(), strategy.getValue().get());
+                System.out.printf("%-12s %-12s %11.2f%%%n", trace.getKey(), strategy.getKey(), hitRatio * 100);
+            }
+        }
+    }
+
+    public static double replay(long[] trace, IPopulationStrategy strategy) {
+        CacheLevel<Long, Long> l2 = new CacheLevel<>(L2_CAPACITY, new LRUEvictionPolicy<>());
+        MultiLevelCache<Long, Long> cache = new CacheBuilder<Long, Long>()
+                .setLevels(2)
+                .addCacheLevel(new CacheLevel<>(L1_CAPACITY, new LRUEvictionPolicy<>()))
+                .addCacheLevel(l2)
+                .setPromotionStrategy(strategy)
+                .recordStats()
+                .build();
+        for (long key : trace) {
+            if (cache.get(key) == null) {
+                l2.put(key, key); // Single threaded, no stripe lock needed
+            }
+        }
+        return cache.stats().getLevel(0).getHitRate();
+    }
+}
@@ -0,0 +1,69 @@
+package cache.src.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import cache.src.builder.CacheBuilder;
+import cache.src.core.CacheLevel;
+import cache.src.core.MultiLevelCache;
+import cache.src.core.ReadMode;
+import cache.src.eviction.IEvictionPolicy;
+import cache.src.eviction.lru.BufferedLRUEvictionPolicy;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+import cache.src.population.promotion.PromoteToAllLowerLevels;
+
+// Compares STRIPED and OPTIMISTIC read modes on a 95% read / 5% write workload.
+// Each mode runs with an exact LRU, which locks on every hit, and with the
+// buffered LRU, the only pairing where OPTIMISTIC L1 hits are lock free.
+
+public class ReadPathBenchmark {
+    private static final int KEY_SPACE = 10_000;
+    private static final int L1_CAPACITY = 5_000;
+    private static final int L2_CAPACITY = 20_000;
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32 };
+
+    public static void main(String[] args) throws InterruptedException {
+        BenchmarkRunner runner = new BenchmarkRunner(1_000, 3_000);
+        System.out.printf("%-8s %-12s %-14s %15s%n", "threads", "mode", "policy", "ops/sec");
+        for (int threads : THREAD_COUNTS) {
+            for (ReadMode mode : ReadMode.values()) {
+                for (boolean buffered : new boolean[] { false, true }) {
+                    runOne(runner, threads, mode, buffered);
+                }
+            }
+        }
+    }
+
+    private static void runOne(BenchmarkRunner runner, int threads, ReadMode mode, boolean buffered)
+            throws InterruptedException {
+        Supplier<IEvictionPolicy<Integer>> policy = buffered ? BufferedLRUEvictionPolicy::new
+                : LRUEvictionPolicy::new;
+        MultiLevelCache<Integer, Integer> cache = buildCache(mode, policy);
+        double throughput = runner.run(threads, (threadId, iteration) -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Integer key = random.nextInt(KEY_SPACE);
+            if (random.nextInt(100) < 95) {
+                cache.get(key);
+            } else {
+                cache.put(key, key);
+            }
+        });
+        System.out.printf("%-8d %-12s %-14s %,15.0f%n", threads, mode, buffered ? "buffered-lru" : "lru",
+                throughput);
+    }
+
+    private static MultiLevelCache<Integer, Integer> buildCache(ReadMode mode,
+            Supplier<IEvictionPolicy<Integer>> policy) {
+        MultiLevelCache<Integer, Integer> cache = new CacheBuilder<Integer, Integer>()
+                .setLevels(2)
+                .addCacheLevel(new CacheLevel<>(L1_CAPACITY, policy.get()))
+                .addCacheLevel(new CacheLevel<>(L2_CAPACITY, policy.get()))
+                .setPromotionStrategy(new PromoteToAllLowerLevels())
+                .setReadMode(mode)
+                .build();
+        for (int i = 0; i < KEY_SPACE; i++) {
+            cache.put(i, i);
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,83 @@
+package cache.src.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cache.src.offheap.StringSerializer;
+import cache.src.remote.CacheServer;
+import cache.src.remote.RemoteCacheLevel;
+
+// Three in-process cache servers on localhost. Compares one round trip per key
+// with pipelined getAll, and checks that a second client sees the first one's writes
+
+public class RemoteLevelBenchmark {
+    private static final int NODES = 3;
+    private static final int KEY_SPACE = 20_000;
+    private static final int[] BATCH_SIZES = { 1, 10, 100, 1_000 };
+    private static final int KEYS_PER_ROUND = 200_000;
+
+    public static void main(String[] args) {
+        List<CacheServer> servers = new ArrayList<>();
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            CacheServer server = new CacheServer(64L << 20);
+            servers.add(server);
+            peers.add(server.getAddress());
+        }
+        try (RemoteCacheLevel<String, String> writer = new RemoteCacheLevel<>(peers, new StringSerializer());
+                RemoteCacheLevel<String, String> reader = new RemoteCacheLevel<>(peers, new StringSerializer())) {
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < KEY_SPACE; i++) {
+                keys.add("key-" + i);
+            }
+            for (int i = 0; i < KEY_SPACE; i += 1_000) {
+                Map<String, String> batch = new HashMap<>();
+                for (String key : keys.subList(i, i + 1_000)) {
+                    batch.put(key, "value-" + key);
+                }
+                writer.putAll(batch);
+            }
+            System.out.printf("second client sees %d of %d keys%n", reader.getAll(keys).size(), KEY_SPACE);
+
+            System.out.printf("%-8s %15s %15s%n", "batch", "get us/key", "getAll us/key");
+            for (int batchSize : BATCH_SIZES) {
+                run(reader, keys, batchSize, false);
+                double single = run(reader, keys, batchSize, false);
+                run(reader, keys, batchSize, true);
+                double pipelined = run(reader, keys, batchSize, true);
+                System.out.printf("%-8d %15.2f %15.2f%n", batchSize, single, pipelined);
+            }
+        } finally {
+            for (CacheServer server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    // Microseconds per key
+    private static double run(RemoteCacheLevel<String, String> level, List<String> keys, int batchSize,
+            boolean bulk) {
+        long start = System.nanoTime();
+        long found = 0;
+        for (int done = 0; done < KEYS_PER_ROUND; done += batchSize) {
+            int from = done % (keys.size() - batchSize);
+            List<String> batch = keys.subList(from, from + batchSize);
+            if (bulk) {
+                found += level.getAll(batch).size();
+            } else {
+                for (String key : batch) {
+                    if (level.get(key) != null) {
+                        found++;
+                    }
+                }
+            }
+        }
+        if (found == Long.MIN_VALUE) {
+            System.out.println(found);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / KEYS_PER_ROUND;
+    }
+}
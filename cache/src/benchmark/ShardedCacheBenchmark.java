@@ -0,0 +1,60 @@
+package cache.src.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import cache.src.builder.CacheBuilder;
+import cache.src.core.MultiLevelCache;
+import cache.src.core.ShardedMultiLevelCache;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+import cache.src.population.promotion.PromoteToAllLowerLevels;
+
+// Throughput of one MultiLevelCache versus a sharded facade of the same total size, 80% read / 20% write
+
+public class ShardedCacheBenchmark {
+    private static final int KEY_SPACE = 100_000;
+    private static final int L1_CAPACITY = 20_000;
+    private static final int L2_CAPACITY = 80_000;
+    private static final int SHARDS = 16;
+    private static final int[] THREAD_COUNTS = { 1, 4, 16, 32 };
+
+    public static void main(String[] args) throws InterruptedException {
+        BenchmarkRunner runner = new BenchmarkRunner(1_000, 3_000);
+        long[] keys = KeyDistributions.zipf(KEY_SPACE, 1 << 20, 0.9, 5);
+        System.out.printf("%-8s %-10s %15s%n", "threads", "cache", "ops/sec");
+        for (int threads : THREAD_COUNTS) {
+            MultiLevelCache<Long, Long> single = new CacheBuilder<Long, Long>()
+                    .setLevels(2)
+                    .addShardedLevel(L1_CAPACITY, capacity -> new LRUEvictionPolicy<>())
+                    .addShardedLevel(L2_CAPACITY, capacity -> new LRUEvictionPolicy<>())
+                    .setPromotionStrategy(new PromoteToAllLowerLevels())
+                    .buildSharded()
+                    .getShard(0);
+            ShardedMultiLevelCache<Long, Long> sharded = new CacheBuilder<Long, Long>()
+                    .setLevels(2)
+                    .setShards(SHARDS)
+                    .addShardedLevel(L1_CAPACITY, capacity -> new LRUEvictionPolicy<>())
+                    .addShardedLevel(L2_CAPACITY, capacity -> new LRUEvictionPolicy<>())
+                    .setPromotionStrategy(new PromoteToAllLowerLevels())
+                    .buildSharded();
+            double singleOps = runner.run(threads, (threadId, iteration) -> {
+                Long key = keys[(int) ((iteration * 31 + threadId * 7919L) & (keys.length - 1))];
+                if (ThreadLocalRandom.current().nextInt(100) < 80) {
+                    single.get(key);
+                } else {
+                    single.put(key, key);
+                }
+            });
+            double shardedOps = runner.run(threads, (threadId, iteration) -> {
+                Long key = keys[(int) ((iteration * 31 + threadId * 7919L) & (keys.length - 1))];
+                if (ThreadLocalRandom.current().nextInt(100) < 80) {
+                    sharded.get(key);
+                } else {
+                    sharded.put(key, key);
+                }
+            });
+            System.out.printf("%-8d %-10s %,15.0f%n", threads, "single", singleOps);
+            System.out.printf("%-8d %-10s %,15.0f%n", threads, "sharded", shardedOps);
+            sharded.close();
+        }
+    }
+}
@@ -2,20 +2,59 @@ package cache.src.builder;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
 
+import cache.src.core.CacheLevel;
 import cache.src.core.ICacheLevel;
 import cache.src.core.MultiLevelCache;
+import cache.src.core.ReadMode;
+import cache.src.core.ShardedMultiLevelCache;
+import cache.src.core.Weigher;
+import cache.src.eviction.IEvictionPolicy;
+import cache.src.invalidation.InvalidationBus;
+import cache.src.offheap.Serializer;
 import cache.src.population.IPopulationStrategy;
+import cache.src.population.IWriteStrategy;
+import cache.src.population.write.WriteToAllLevels;
 
 public class CacheBuilder<K, V> {
+    // Recipe for a level that every shard builds its own copy of
+    private static class ShardedLevelSpec<K, V> {
+        final long maxWeight;
+        final Weigher<K, V> weigher;
+        final LongFunction<IEvictionPolicy<K>> policyFactory;
+
+        ShardedLevelSpec(long maxWeight, Weigher<K, V> weigher, LongFunction<IEvictionPolicy<K>> policyFactory) {
+            this.maxWeight = maxWeight;
+            this.weigher = weigher;
+            this.policyFactory = policyFactory;
+        }
+    }
+
     private int levels;
     private List<ICacheLevel<K, V>> cacheLevels;
-    private IPopulationStrategy promotionStrategy;
+    private Supplier<? extends IPopulationStrategy> promotionStrategyFactory;
+    private ReadMode readMode;
+    private IWriteStrategy writeStrategy;
+    private boolean recordStats;
+    private int shards;
+    private List<ShardedLevelSpec<K, V>> shardedLevels;
+    private long rebalanceIntervalMillis;
+    private InvalidationBus<K> invalidationBus;
+    private Serializer<K, V> snapshotSerializer;
+    private int snapshotKeysPerLevel;
 
     public CacheBuilder() {
         this.levels = 0;
         this.cacheLevels = new ArrayList<>();
-        this.promotionStrategy = null;
+        this.promotionStrategyFactory = null;
+        this.readMode = ReadMode.STRIPED;
+        this.writeStrategy = new WriteToAllLevels();
+        this.shards = 1;
+        this.shardedLevels = new ArrayList<>();
+        this.rebalanceIntervalMillis = 0;
     }
 
     public CacheBuilder<K, V> setLevels(int levels) {
@@ -31,8 +70,104 @@ public class CacheBuilder<K, V> {
         return this;
     }
 
+    /**
+     * Adds a CacheLevel bounded by total weight instead of entry count.
+     */
+    public CacheBuilder<K, V> addCacheLevel(long maxWeight, Weigher<K, V> weigher,
+            IEvictionPolicy<K> evictionPolicy) {
+        return addCacheLevel(new CacheLevel<>(maxWeight, weigher, evictionPolicy));
+    }
+
+    /**
+     * Uses this one strategy instance. A sharded cache shares it across all
+     * shards, so stateful strategies should go through
+     * {@link #setPromotionStrategyFactory} instead.
+     */
     public CacheBuilder<K, V> setPromotionStrategy(IPopulationStrategy promotionStrategy) {
-        this.promotionStrategy = promotionStrategy;
+        this.promotionStrategyFactory = promotionStrategy == null ? null : () -> promotionStrategy;
+        return this;
+    }
+
+    /**
+     * Calls the factory once per built cache, and once per shard for
+     * buildSharded, so strategies like PromoteOnFrequency keep their counts
+     * and lock per shard.
+     */
+    public CacheBuilder<K, V> setPromotionStrategyFactory(
+            Supplier<? extends IPopulationStrategy> promotionStrategyFactory) {
+        this.promotionStrategyFactory = promotionStrategyFactory;
+        return this;
+    }
+
+    public CacheBuilder<K, V> setReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+        return this;
+    }
+
+    public CacheBuilder<K, V> setWriteStrategy(IWriteStrategy writeStrategy) {
+        this.writeStrategy = writeStrategy;
+        return this;
+    }
+
+    /**
+     * Enables hit, miss, promotion and load counters plus get/put latency
+     * histograms, read through {@link MultiLevelCache#stats()}.
+     */
+    public CacheBuilder<K, V> recordStats() {
+        this.recordStats = true;
+        return this;
+    }
+
+    public CacheBuilder<K, V> setShards(int shards) {
+        this.shards = shards;
+        return this;
+    }
+
+    /**
+     * Adds a count bounded level to a sharded cache. The capacity is the total
+     * across shards; the policy factory is called once per shard with that
+     * shard's share.
+     */
+    public CacheBuilder<K, V> addShardedLevel(int capacity, LongFunction<IEvictionPolicy<K>> policyFactory) {
+        return addShardedLevel(capacity, Weigher.singleton(), policyFactory);
+    }
+
+    public CacheBuilder<K, V> addShardedLevel(long maxWeight, Weigher<K, V> weigher,
+            LongFunction<IEvictionPolicy<K>> policyFactory) {
+        if (this.shardedLevels.size() >= this.levels) {
+            throw new IllegalStateException("Cannot add more levels than specified");
+        }
+        this.shardedLevels.add(new ShardedLevelSpec<>(maxWeight, weigher, policyFactory));
+        return this;
+    }
+
+    /**
+     * Rebalances shard capacity on a background thread at this interval. Off by default.
+     */
+    public CacheBuilder<K, V> setRebalanceInterval(long interval, TimeUnit unit) {
+        this.rebalanceIntervalMillis = unit.toMillis(interval);
+        return this;
+    }
+
+    /**
+     * Broadcasts this cache's writes on the bus and applies invalidations
+     * received from other processes to the non shared levels.
+     */
+    public CacheBuilder<K, V> setInvalidationBus(InvalidationBus<K> invalidationBus) {
+        this.invalidationBus = invalidationBus;
+        return this;
+    }
+
+    /**
+     * Enables snapshot and warmFrom on caches from build(), saving up to
+     * keysPerLevel of each level's hottest entries.
+     */
+    public CacheBuilder<K, V> setSnapshotSerializer(Serializer<K, V> serializer, int keysPerLevel) {
+        if (keysPerLevel <= 0) {
+            throw new IllegalArgumentException("Keys per level must be positive");
+        }
+        this.snapshotSerializer = serializer;
+        this.snapshotKeysPerLevel = keysPerLevel;
         return this;
     }
 
@@ -40,10 +175,72 @@ public class CacheBuilder<K, V> {
         if (this.cacheLevels.size() != this.levels) {
             throw new IllegalStateException("Number of added levels does not match specified levels");
         }
-        if (this.promotionStrategy == null) {
+        validateStrategies();
+        MultiLevelCache<K, V> cache = new MultiLevelCache<K, V>(new ArrayList<>(this.cacheLevels),
+                this.promotionStrategyFactory.get(), this.readMode, this.writeStrategy, this.recordStats);
+        if (this.invalidationBus != null) {
+            cache.setInvalidationBus(this.invalidationBus);
+            this.invalidationBus.addListener(cache::invalidateLocal);
+        }
+        if (this.snapshotSerializer != null) {
+            cache.setSnapshotSerializer(this.snapshotSerializer, this.snapshotKeysPerLevel);
+        }
+        return cache;
+    }
+
+    /**
+     * Builds a cache of independent shards from the levels added with
+     * addShardedLevel. Each level's capacity is split evenly, the first
+     * shards get one extra unit when it does not divide.
+     */
+    public ShardedMultiLevelCache<K, V> buildSharded() {
+        if (this.shards <= 0) {
+            throw new IllegalStateException("Shard count must be positive");
+        }
+        if (!this.cacheLevels.isEmpty()) {
+            throw new IllegalStateException("Sharded caches take levels from addShardedLevel only");
+        }
+        if (this.shardedLevels.size() != this.levels) {
+            throw new IllegalStateException("Number of added levels does not match specified levels");
+        }
+        validateStrategies();
+        List<MultiLevelCache<K, V>> shardCaches = new ArrayList<>();
+        List<List<CacheLevel<K, V>>> shardLevels = new ArrayList<>();
+        for (int s = 0; s < this.shards; s++) {
+            List<ICacheLevel<K, V>> levelsOfShard = new ArrayList<>();
+            List<CacheLevel<K, V>> resizable = new ArrayList<>();
+            for (ShardedLevelSpec<K, V> spec : this.shardedLevels) {
+                long share = spec.maxWeight / this.shards + (s < spec.maxWeight % this.shards ? 1 : 0);
+                if (share <= 0) {
+                    throw new IllegalStateException("Level capacity is smaller than the shard count");
+                }
+                CacheLevel<K, V> level = new CacheLevel<>(share, spec.weigher, spec.policyFactory.apply(share));
+                levelsOfShard.add(level);
+                resizable.add(level);
+            }
+            shardCaches.add(new MultiLevelCache<K, V>(levelsOfShard, this.promotionStrategyFactory.get(),
+                    this.readMode, this.writeStrategy, this.recordStats));
+            shardLevels.add(resizable);
+        }
+        ShardedMultiLevelCache<K, V> cache = new ShardedMultiLevelCache<>(shardCaches, shardLevels,
+                this.rebalanceIntervalMillis);
+        if (this.invalidationBus != null) {
+            cache.setInvalidationBus(this.invalidationBus);
+            this.invalidationBus.addListener(cache::invalidateLocal);
+        }
+        return cache;
+    }
+
+    private void validateStrategies() {
+        if (this.promotionStrategyFactory == null) {
             throw new IllegalStateException("Promotion strategy must be set");
         }
-        return new MultiLevelCache<K, V>(new ArrayList<>(this.cacheLevels), this.promotionStrategy);
+        if (this.readMode == null) {
+            throw new IllegalStateException("Read mode must not be null");
+        }
+        if (this.writeStrategy == null) {
+            throw new IllegalStateException("Write strategy must be set");
+        }
     }
 
 }
@@ -1,54 +1,266 @@
 package cache.src.core;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import cache.src.eviction.IEvictionPolicy;
+import cache.src.expiry.ExpiryPolicy;
+import cache.src.expiry.Ticker;
+import cache.src.expiry.TimerWheel;
+import cache.src.stats.CacheStats;
+import cache.src.stats.StatsCounter;
 
 /**
  * Operations are not thread safe on their own.
  * Caller should ensure thread safety if needed.
+ *
+ * Capacity is a maximum total weight. The count based constructor weighs every
+ * entry as 1; the weighted one lets large values count for what they cost.
+ *
+ * With an {@link ExpiryPolicy} entries also expire after write and/or access.
+ * Deadlines live in a {@link TimerWheel} that is advanced on every write.
+ * Reads check the deadline themselves, so an expired entry is never returned
+ * even if the wheel has not removed it yet.
  */
 public class CacheLevel<K, V> implements ICacheLevel<K, V> {
-    private final int capacity;
+    // Volatile so a sharded cache can move capacity between shards at runtime
+    private volatile long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final AtomicLong currentWeight;
     private final ConcurrentHashMap<K, V> cacheMap;
     private final IEvictionPolicy<K> evictionPolicy;
+    private final ExpiryPolicy expiryPolicy;
+    private final Ticker ticker;
+    private final StatsCounter statsCounter;
+    // Created on the first entry that has a deadline
+    private volatile TimerWheel<K> timerWheel;
 
     public CacheLevel(int capacity, IEvictionPolicy<K> evictionPolicy) {
-        this.capacity = capacity;
+        this(capacity, Weigher.singleton(), evictionPolicy);
+    }
+
+    public CacheLevel(int capacity, IEvictionPolicy<K> evictionPolicy, ExpiryPolicy expiryPolicy) {
+        this(capacity, Weigher.singleton(), evictionPolicy, expiryPolicy);
+    }
+
+    public CacheLevel(long maxWeight, Weigher<K, V> weigher, IEvictionPolicy<K> evictionPolicy) {
+        this(maxWeight, weigher, evictionPolicy, ExpiryPolicy.none());
+    }
+
+    public CacheLevel(long maxWeight, Weigher<K, V> weigher, IEvictionPolicy<K> evictionPolicy,
+            ExpiryPolicy expiryPolicy) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.currentWeight = new AtomicLong();
         this.cacheMap = new ConcurrentHashMap<>();
         this.evictionPolicy = evictionPolicy;
+        this.expiryPolicy = expiryPolicy;
+        this.ticker = expiryPolicy.getTicker();
+        this.statsCounter = new StatsCounter();
     }
 
     public V get(K key) {
         V value = cacheMap.get(key);
-        if (value != null) {
-            evictionPolicy.onAccess(key);
+        if (value == null) {
+            statsCounter.recordMiss();
+            return null;
+        }
+        TimerWheel<K> wheel = timerWheel;
+        if (wheel != null) {
+            long now = ticker.read();
+            if (wheel.isExpired(key, now)) {
+                statsCounter.recordMiss();
+                return null; // Removed by the next write that advances the wheel
+            }
+            if (expiryPolicy.expiresAfterAccess()) {
+                wheel.touch(key, deadline(now, expiryPolicy.getAfterAccessNanos()));
+            }
         }
+        evictionPolicy.onAccess(key);
+        statsCounter.recordHit();
         return value;
     }
 
     public void put(K key, V value) {
-        if (cacheMap.containsKey(key)) {
+        put(key, value, ExpiryPolicy.NEVER);
+    }
+
+    @Override
+    public void put(K key, V value, long maxLifetimeNanos) {
+        expireEntries();
+        long weight = weigher.weigh(key, value);
+        if (weight > maxWeight) {
+            remove(key); // Can never fit, drop any older copy so it is not served stale
+            return;
+        }
+        V previous = cacheMap.get(key);
+        if (previous != null) {
             cacheMap.put(key, value);
+            currentWeight.addAndGet(weight - weigher.weigh(key, previous));
+            scheduleExpiry(key, maxLifetimeNanos);
             evictionPolicy.onAccess(key);
+            evictUntilWithin(0);
             return;
         }
-        if (cacheMap.size() >= capacity) {
-            K evictedKey = evictionPolicy.evict();
-            if (evictedKey != null) {
-                cacheMap.remove(evictedKey);
-            }
+        if (!evictionPolicy.admit(key)) {
+            return; // Policy judged the candidate colder than what it would evict
         }
+        evictUntilWithin(weight);
         cacheMap.put(key, value);
+        currentWeight.addAndGet(weight);
+        scheduleExpiry(key, maxLifetimeNanos);
         evictionPolicy.onInsert(key);
 
     }
 
     public void remove(K key) {
-        if (cacheMap.containsKey(key)) {
-            cacheMap.remove(key);
+        V removed = cacheMap.remove(key);
+        if (removed != null) {
+            currentWeight.addAndGet(-weigher.weigh(key, removed));
+            evictionPolicy.onRemove(key);
+        }
+        TimerWheel<K> wheel = timerWheel;
+        if (wheel != null) {
+            wheel.remove(key);
+        }
+    }
+
+    @Override
+    public long remainingLifetimeNanos(K key) {
+        TimerWheel<K> wheel = timerWheel;
+        return wheel == null ? ExpiryPolicy.NEVER : wheel.remainingNanos(key, ticker.read());
+    }
+
+    /**
+     * Removes every entry whose deadline has passed. Runs on each write; call
+     * it directly to reclaim space on a level that is only read.
+     */
+    public void expireEntries() {
+        TimerWheel<K> wheel = timerWheel;
+        if (wheel != null) {
+            wheel.advance(ticker.read(), this::expire);
+        }
+    }
+
+    @Override
+    public Map<K, V> hottestEntries(int limit) {
+        Map<K, V> entries = new LinkedHashMap<>();
+        TimerWheel<K> wheel = timerWheel;
+        long now = wheel == null ? 0 : ticker.read();
+        for (K key : evictionPolicy.hottest(limit)) {
+            V value = cacheMap.get(key);
+            if (value != null && (wheel == null || !wheel.isExpired(key, now))) {
+                entries.put(key, value);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public long getCurrentWeight() {
+        return currentWeight.get();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Changes the weight bound. Shrinking evicts right away until the level
+     * fits; growing takes effect on the next insert. Policies are sized in
+     * entries, so with a custom weigher their capacity moves in proportion
+     * to the weight bound instead of being set to it.
+     */
+    public void setMaxWeight(long maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Max weight must be positive");
+        }
+        long previous = this.maxWeight;
+        this.maxWeight = maxWeight;
+        long entries = policyCapacity(previous, maxWeight);
+        if (entries > 0) {
+            evictionPolicy.setCapacity(entries);
+        }
+        evictUntilWithin(0);
+    }
+
+    // 0 when the policy is not sized from a capacity
+    private long policyCapacity(long previousWeight, long newWeight) {
+        if (weigher == Weigher.singleton()) {
+            return newWeight;
+        }
+        long current = evictionPolicy.getCapacity();
+        if (current <= 0) {
+            return 0;
+        }
+        return Math.max(1, (long) ((double) current * newWeight / previousWeight));
+    }
+
+    public int size() {
+        return cacheMap.size();
+    }
+
+    // Evicts until the level has room for incomingWeight more
+    private void evictUntilWithin(long incomingWeight) {
+        while (currentWeight.get() + incomingWeight > maxWeight) {
+            K evictedKey = evictionPolicy.evict();
+            if (evictedKey == null) {
+                return;
+            }
+            V evicted = cacheMap.remove(evictedKey);
+            if (evicted != null) {
+                currentWeight.addAndGet(-weigher.weigh(evictedKey, evicted));
+                statsCounter.recordEviction();
+            }
+            TimerWheel<K> wheel = timerWheel;
+            if (wheel != null) {
+                wheel.remove(evictedKey);
+            }
+        }
+    }
+
+    // Expired entries count as evictions, the wheel has already dropped their node
+    private void expire(K key) {
+        V removed = cacheMap.remove(key);
+        if (removed != null) {
+            currentWeight.addAndGet(-weigher.weigh(key, removed));
             evictionPolicy.onRemove(key);
+            statsCounter.recordEviction();
+        }
+    }
+
+    private void scheduleExpiry(K key, long maxLifetimeNanos) {
+        long writeNanos = Math.min(expiryPolicy.getAfterWriteNanos(), maxLifetimeNanos);
+        long accessNanos = expiryPolicy.getAfterAccessNanos();
+        TimerWheel<K> wheel = timerWheel;
+        if (writeNanos == ExpiryPolicy.NEVER && accessNanos == ExpiryPolicy.NEVER) {
+            if (wheel != null) {
+                wheel.remove(key); // Overwrite without a deadline clears the old one
+            }
+            return;
+        }
+        long now = ticker.read();
+        if (wheel == null) {
+            wheel = createTimerWheel(now);
+        }
+        wheel.schedule(key, deadline(now, writeNanos), deadline(now, accessNanos));
+    }
+
+    private synchronized TimerWheel<K> createTimerWheel(long now) {
+        if (timerWheel == null) {
+            timerWheel = new TimerWheel<>(now);
         }
+        return timerWheel;
+    }
+
+    private static long deadline(long now, long duration) {
+        return duration == ExpiryPolicy.NEVER ? ExpiryPolicy.NEVER : now + duration;
     }
 
-}
+}
\ No newline at end of file
@@ -1,5 +1,12 @@
 package cache.src.core;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import cache.src.stats.CacheStats;
+
 public interface ICacheLevel<K, V> {
     V get(K key);
 
@@ -7,4 +14,74 @@ public interface ICacheLevel<K, V> {
 
     void remove(K key);
 
+    /**
+     * Writes an entry that must not outlive maxLifetimeNanos, used when a
+     * value moves between levels so it keeps its original deadline.
+     * Levels without expiry support ignore the bound.
+     */
+    default void put(K key, V value, long maxLifetimeNanos) {
+        put(key, value);
+    }
+
+    /**
+     * Nanoseconds until key expires in this level, Long.MAX_VALUE if it never does.
+     */
+    default long remainingLifetimeNanos(K key) {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the entries found for keys, misses are left out. Levels with
+     * per call overhead (locks, I/O) override the bulk operations to pay it
+     * once per batch.
+     */
+    default Map<K, V> getAll(Collection<K> keys) {
+        Map<K, V> found = new HashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    default void putAll(Map<K, V> entries) {
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    default void removeAll(Collection<K> keys) {
+        for (K key : keys) {
+            remove(key);
+        }
+    }
+
+    /**
+     * True when other processes read and write the same entries, like a
+     * remote tier. Invalidations from other processes skip shared levels:
+     * they already hold the new value.
+     */
+    default boolean isShared() {
+        return false;
+    }
+
+    /**
+     * Counters kept by the level itself: hits, misses and evictions it made on
+     * its own. Levels that do not track anything report empty stats.
+     */
+    default CacheStats stats() {
+        return CacheStats.empty();
+    }
+
+    /**
+     * Up to limit of the entries this level would keep longest, in eviction
+     * order, for snapshots. Reading them is not an access: no stats, no
+     * recency change. Levels that cannot rank their entries return none.
+     */
+    default Map<K, V> hottestEntries(int limit) {
+        return Collections.emptyMap();
+    }
+
 }
@@ -1,88 +1,849 @@
 package cache.src.core;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
+import cache.src.invalidation.InvalidationBus;
+import cache.src.loader.AsyncCacheLoader;
+import cache.src.loader.CacheLoader;
+import cache.src.offheap.Serializer;
 import cache.src.population.IPopulationStrategy;
+import cache.src.population.IWriteStrategy;
+import cache.src.population.write.WriteToAllLevels;
+import cache.src.snapshot.CacheWarmer;
+import cache.src.snapshot.SnapshotWriter;
+import cache.src.stats.CacheStats;
+import cache.src.stats.LatencyHistogram;
+import cache.src.stats.LatencySnapshot;
+import cache.src.stats.MultiLevelCacheStats;
+import cache.src.stats.StatsCounter;
 
 public class MultiLevelCache<K, V> {
+    private static final int WARM_BATCH_SIZE = 1000;
+    private static final int WARM_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
     private final List<ICacheLevel<K, V>> levels;
     private final IPopulationStrategy promotionStrategy;
     private final int MAX_STRIPES = 64;
     private final ReentrantLock[] stripes;
+    private final ReadMode readMode;
+    private final IWriteStrategy writeStrategy;
+    // One pending load per key, concurrent misses share it
+    private final Map<K, CompletableFuture<V>> inFlightLoads;
+    private final Set<Integer> writeLevels;
+    private final Set<Integer> deferredLevels;
+    // Levels the write strategy never writes, a write drops their older copy
+    private final Set<Integer> skippedLevels;
+    // Null unless the write strategy defers some levels
+    private final WriteBehindQueue<K, V> writeBehind;
+    // Stats are opt in, when off the hot path skips the counters and the clock reads
+    private final boolean recordStats;
+    private final StatsCounter totalStats;
+    private final StatsCounter[] levelStats;
+    private final LatencyHistogram getLatency;
+    private final LatencyHistogram putLatency;
+    // One sample per lookup that promoted: time spent writing the copies into upper levels
+    private final LatencyHistogram promotionLatency;
+    // Null unless writes are broadcast to other processes
+    private volatile InvalidationBus<K> invalidationBus;
+    // Null until snapshots are configured
+    private volatile Serializer<K, V> snapshotSerializer;
+    private volatile int snapshotKeysPerLevel;
+    // Non null while a warm-up runs: keys written or removed since it started,
+    // which the warm-up must not overwrite with their older snapshot value
+    private volatile Set<K> writtenWhileWarming;
 
     public MultiLevelCache(List<ICacheLevel<K, V>> levels, IPopulationStrategy promotionStrategy) {
+        this(levels, promotionStrategy, ReadMode.STRIPED);
+    }
+
+    public MultiLevelCache(List<ICacheLevel<K, V>> levels, IPopulationStrategy promotionStrategy,
+            ReadMode readMode) {
+        this(levels, promotionStrategy, readMode, new WriteToAllLevels());
+    }
+
+    public MultiLevelCache(List<ICacheLevel<K, V>> levels, IPopulationStrategy promotionStrategy,
+            ReadMode readMode, IWriteStrategy writeStrategy) {
+        this(levels, promotionStrategy, readMode, writeStrategy, false);
+    }
+
+    public MultiLevelCache(List<ICacheLevel<K, V>> levels, IPopulationStrategy promotionStrategy,
+            ReadMode readMode, IWriteStrategy writeStrategy, boolean recordStats) {
         this.levels = levels;
         this.promotionStrategy = promotionStrategy;
+        this.readMode = readMode;
+        this.writeStrategy = writeStrategy;
+        this.inFlightLoads = new ConcurrentHashMap<>();
         this.stripes = new ReentrantLock[MAX_STRIPES];
         for (int i = 0; i < MAX_STRIPES; i++) {
             stripes[i] = new ReentrantLock();
         }
+        this.writeLevels = writeStrategy.targetLevels(levels.size());
+        this.deferredLevels = writeStrategy.deferredLevels(levels.size());
+        this.skippedLevels = new HashSet<>();
+        for (int i = 0; i < levels.size(); i++) {
+            if (!writeLevels.contains(i) && !deferredLevels.contains(i)) {
+                skippedLevels.add(i);
+            }
+        }
+        this.writeBehind = deferredLevels.isEmpty() ? null
+                : new WriteBehindQueue<>(writeStrategy.deferredBatchSize(),
+                        writeStrategy.deferredFlushIntervalMillis(), this::flushDeferred);
+        this.recordStats = recordStats;
+        this.totalStats = new StatsCounter();
+        this.levelStats = new StatsCounter[levels.size()];
+        for (int i = 0; i < levelStats.length; i++) {
+            levelStats[i] = new StatsCounter();
+        }
+        this.getLatency = new LatencyHistogram();
+        this.putLatency = new LatencyHistogram();
+        this.promotionLatency = new LatencyHistogram();
     }
 
     private ReentrantLock getLockForKey(K key) {
-        int hash = Math.abs(key.hashCode());
-        int index = hash % MAX_STRIPES;
-        return stripes[index];
+        return stripes[stripeIndex(key)];
+    }
+
+    private int stripeIndex(K key) {
+        return Math.floorMod(key.hashCode(), MAX_STRIPES);
+    }
+
+    /**
+     * Locks every stripe the keys map to, in ascending order so concurrent
+     * bulk calls cannot deadlock. Returns the locked stripe indexes.
+     */
+    private int[] lockStripes(Collection<K> keys) {
+        boolean[] needed = new boolean[MAX_STRIPES];
+        int count = 0;
+        for (K key : keys) {
+            int index = stripeIndex(key);
+            if (!needed[index]) {
+                needed[index] = true;
+                count++;
+            }
+        }
+        int[] locked = new int[count];
+        int next = 0;
+        for (int i = 0; i < MAX_STRIPES; i++) {
+            if (needed[i]) {
+                stripes[i].lock();
+                locked[next++] = i;
+            }
+        }
+        return locked;
+    }
+
+    private void unlockStripes(int[] locked) {
+        for (int i = locked.length - 1; i >= 0; i--) {
+            stripes[locked[i]].unlock();
+        }
     }
 
     public V get(K key) {
+        if (!recordStats) {
+            return lookup(key, false);
+        }
+        long start = System.nanoTime();
+        V value = lookup(key, true);
+        getLatency.record(System.nanoTime() - start);
+        return value;
+    }
+
+    private V lookup(K key, boolean record) {
+        if (readMode == ReadMode.OPTIMISTIC) {
+            return getOptimistic(key, record);
+        }
+        return getLocked(key, record);
+    }
+
+    private V getOptimistic(K key, boolean record) {
+        // An L1 hit never touches the stripe lock. It is lock free only if the
+        // L1 eviction policy records accesses without a lock (see ReadMode)
+        V value = levels.get(0).get(key);
+        if (value != null) {
+            if (record) {
+                recordLookup(0, true);
+            }
+            return value;
+        }
+        // A pending write is newer than anything the deferred levels hold
+        V pending = peekPending(key);
+        if (pending != null) {
+            if (record) {
+                recordLookup(levels.size(), true);
+            }
+            return pending;
+        }
+        for (int i = 1; i < levels.size(); i++) {
+            if (levels.get(i).get(key) != null) {
+                // Found in a lower level, re-run under the stripe lock so that
+                // promotion cannot race with a concurrent put or remove
+                return getLocked(key, record);
+            }
+        }
+        if (record) {
+            recordLookup(levels.size(), false);
+        }
+        return null;
+    }
+
+    private V getLocked(K key, boolean record) {
         ReentrantLock lock = getLockForKey(key);
         lock.lock();
         try {
             // Double check L1
             V value = levels.get(0).get(key);
             if (value != null) {
+                if (record) {
+                    recordLookup(0, true);
+                }
                 return value;
             }
+            // Read your own writes while they wait for the write-behind flush,
+            // the lower levels may still hold the value they replace
+            V pending = peekPending(key);
+            if (pending != null) {
+                if (record) {
+                    recordLookup(levels.size(), true);
+                }
+                return pending;
+            }
             for (int i = 1; i < levels.size(); i++) {
                 ICacheLevel<K, V> cache = levels.get(i);
                 value = cache.get(key);
                 if (value != null) {
+                    if (record) {
+                        recordLookup(i, true);
+                    }
                     // promote to lower levels if needed
-                    promote(key, value, i);
+                    promote(key, value, i, cache.remainingLifetimeNanos(key));
                     return value;
                 }
             }
+            if (record) {
+                recordLookup(levels.size(), false);
+            }
+            return null;
         } finally {
             lock.unlock();
         }
-        return null;
+    }
+
+    /**
+     * Returns the cached value, or loads it on a miss. Concurrent misses for
+     * the same key share a single call to the loader, which runs on the thread
+     * that missed first. Waiting threads park on a CompletableFuture rather
+     * than a monitor, so virtual threads unmount from their carrier while
+     * they wait.
+     */
+    public V get(K key, CacheLoader<K, V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            refreshIfNearExpiry(key, k -> CompletableFuture.supplyAsync(() -> loadUnchecked(loader, k)));
+            return cached;
+        }
+        CompletableFuture<V> result = load(key, k -> {
+            try {
+                return CompletableFuture.completedFuture(loader.load(k));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }, true);
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Non blocking variant of {@link #get(Object, CacheLoader)}. No thread
+     * waits for the backing store; the future completes when the loader's does.
+     * A successful non null result is written to the levels picked by the
+     * write strategy, unless a put or remove for the key happened meanwhile.
+     */
+    public CompletableFuture<V> getAsync(K key, AsyncCacheLoader<K, V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            refreshIfNearExpiry(key, loader);
+            return CompletableFuture.completedFuture(cached);
+        }
+        return load(key, loader, true);
+    }
+
+    private CompletableFuture<V> load(K key, AsyncCacheLoader<K, V> loader, boolean recheck) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlightLoads.putIfAbsent(key, load);
+        if (existing != null) {
+            return existing;
+        }
+        // A load that finished between our miss and putIfAbsent already cached the value
+        V cached = recheck ? lookup(key, false) : null;
+        if (cached != null) {
+            inFlightLoads.remove(key, load);
+            load.complete(cached);
+            return load;
+        }
+        long start = recordStats ? System.nanoTime() : 0;
+        CompletableFuture<V> source;
+        try {
+            source = loader.loadAsync(key);
+        } catch (RuntimeException e) {
+            source = CompletableFuture.failedFuture(e);
+        }
+        if (source == null) {
+            // Fail the load like a throwing loader, or the key would stay in flight forever
+            source = CompletableFuture.failedFuture(
+                    new NullPointerException("AsyncCacheLoader returned a null future for key " + key));
+        }
+        source.whenComplete((value, error) -> {
+            if (recordStats) {
+                recordLoad(value != null && error == null, System.nanoTime() - start);
+            }
+            if (error == null && value != null) {
+                writeLoaded(key, value, load);
+            } else {
+                inFlightLoads.remove(key, load);
+            }
+            if (error != null) {
+                load.completeExceptionally(error);
+            } else {
+                load.complete(value);
+            }
+        });
+        return load;
+    }
+
+    // Refresh-ahead: reload a hit whose L1 lifetime is almost over, callers keep getting the current value
+    private void refreshIfNearExpiry(K key, AsyncCacheLoader<K, V> loader) {
+        long window = writeStrategy.refreshAheadNanos();
+        if (window <= 0 || inFlightLoads.containsKey(key)) {
+            return;
+        }
+        if (levels.get(0).remainingLifetimeNanos(key) <= window) {
+            load(key, loader, false);
+        }
+    }
+
+    private static <K, V> V loadUnchecked(CacheLoader<K, V> loader, K key) {
+        try {
+            return loader.load(key);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
     }
 
     public void put(K key, V value) {
+        long start = recordStats ? System.nanoTime() : 0;
+        awaitWriteBehindCapacity();
         ReentrantLock lock = getLockForKey(key);
         lock.lock();
         try {
-            // put into all levels
-            // We could introduce a strategy here as well
-            // for deciding the write levels
-            for (ICacheLevel<K, V> cache : levels) {
-                cache.put(key, value);
-            }
+            // A load still running for this key would overwrite a newer value
+            inFlightLoads.remove(key);
+            write(key, value);
         } finally {
             lock.unlock();
         }
+        publishInvalidation(key);
+        if (recordStats) {
+            putLatency.record(System.nanoTime() - start);
+        }
     }
 
     public void remove(K key) {
         ReentrantLock lock = getLockForKey(key);
         lock.lock();
         try {
+            inFlightLoads.remove(key);
+            noteWritten(key);
+            if (writeBehind != null) {
+                writeBehind.take(key); // Drop the pending write so it cannot resurrect the key
+            }
             for (ICacheLevel<K, V> cache : levels) {
                 cache.remove(key);
             }
         } finally {
             lock.unlock();
         }
+        publishInvalidation(key);
+    }
+
+    private void writeLoaded(K key, V value, CompletableFuture<V> load) {
+        awaitWriteBehindCapacity();
+        ReentrantLock lock = getLockForKey(key);
+        lock.lock();
+        try {
+            // Only cache the result if no put or remove superseded the load
+            if (inFlightLoads.remove(key, load)) {
+                write(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bulk lookup. Each level is probed once with the keys still missing after
+     * the levels above it, and hits are promoted with one putAll per target
+     * level. In OPTIMISTIC mode L1 is probed without locks first, so a batch
+     * that hits entirely in L1 never touches a stripe.
+     */
+    public Map<K, V> getAll(Collection<K> keys) {
+        Map<K, V> result = new HashMap<>();
+        Collection<K> missing = keys;
+        if (readMode == ReadMode.OPTIMISTIC) {
+            result.putAll(levels.get(0).getAll(keys));
+            if (recordStats) {
+                levelStats[0].recordHits(result.size());
+            }
+            if (result.size() == keys.size()) {
+                if (recordStats) {
+                    totalStats.recordHits(result.size());
+                }
+                return result;
+            }
+            missing = withoutFound(keys, result);
+        }
+        int[] locked = lockStripes(missing);
+        try {
+            for (int i = 0; i < levels.size() && !missing.isEmpty(); i++) {
+                if (i == 1) {
+                    // Pending writes win over the older copies below L1
+                    missing = withPending(missing, result);
+                    if (missing.isEmpty()) {
+                        break;
+                    }
+                }
+                ICacheLevel<K, V> cache = levels.get(i);
+                Map<K, V> found = cache.getAll(missing);
+                if (recordStats) {
+                    levelStats[i].recordHits(found.size());
+                    levelStats[i].recordMisses(missing.size() - found.size());
+                }
+                if (found.isEmpty()) {
+                    continue;
+                }
+                if (i > 0) {
+                    promoteAll(found, i, cache);
+                }
+                result.putAll(found);
+                missing = withoutFound(missing, found);
+            }
+        } finally {
+            unlockStripes(locked);
+        }
+        if (recordStats) {
+            totalStats.recordHits(result.size());
+            totalStats.recordMisses(keys.size() - result.size());
+        }
+        return result;
+    }
+
+    public void putAll(Map<K, V> entries) {
+        awaitWriteBehindCapacity();
+        int[] locked = lockStripes(entries.keySet());
+        try {
+            for (K key : entries.keySet()) {
+                inFlightLoads.remove(key);
+                noteWritten(key);
+            }
+            for (int levelIndex : writeLevels) {
+                levels.get(levelIndex).putAll(entries);
+            }
+            for (int levelIndex : skippedLevels) {
+                levels.get(levelIndex).removeAll(entries.keySet());
+            }
+            if (writeBehind != null) {
+                for (Map.Entry<K, V> entry : entries.entrySet()) {
+                    writeBehind.enqueue(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            unlockStripes(locked);
+        }
+        publishInvalidations(entries.keySet());
+    }
+
+    public void invalidateAll(Collection<K> keys) {
+        int[] locked = lockStripes(keys);
+        try {
+            for (K key : keys) {
+                inFlightLoads.remove(key);
+                noteWritten(key);
+                if (writeBehind != null) {
+                    writeBehind.take(key);
+                }
+            }
+            for (ICacheLevel<K, V> cache : levels) {
+                cache.removeAll(keys);
+            }
+        } finally {
+            unlockStripes(locked);
+        }
+        publishInvalidations(keys);
+    }
+
+    /**
+     * Broadcasts every key this cache writes or removes on the bus, so other
+     * processes drop their local copies. Pair it with
+     * {@code bus.addListener(cache::invalidateLocal)} to apply theirs.
+     */
+    public void setInvalidationBus(InvalidationBus<K> invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * Drops keys from the levels private to this process, after another
+     * process changed them. Shared levels already hold the new value and are
+     * left alone. Nothing is published.
+     */
+    public void invalidateLocal(Collection<K> keys) {
+        int[] locked = lockStripes(keys);
+        try {
+            for (K key : keys) {
+                inFlightLoads.remove(key); // The load may have read the old value
+                noteWritten(key);
+            }
+            for (ICacheLevel<K, V> cache : levels) {
+                if (!cache.isShared()) {
+                    cache.removeAll(keys);
+                }
+            }
+        } finally {
+            unlockStripes(locked);
+        }
+    }
+
+    /**
+     * Enables {@link #snapshot(Path)} and {@link #warmFrom(Path)}. Up to
+     * keysPerLevel of each level's hottest entries go into a snapshot.
+     */
+    public void setSnapshotSerializer(Serializer<K, V> serializer, int keysPerLevel) {
+        if (keysPerLevel <= 0) {
+            throw new IllegalArgumentException("Keys per level must be positive");
+        }
+        this.snapshotKeysPerLevel = keysPerLevel;
+        this.snapshotSerializer = serializer;
+    }
+
+    public long snapshot(Path path) {
+        return snapshot(path, snapshotKeysPerLevel);
+    }
+
+    /**
+     * Writes the hottest keysPerLevel entries of every level to path, each
+     * level in eviction order. Shared levels are left out, they survive a
+     * restart. Reading entries for the snapshot is not an access, so live
+     * traffic keeps its recency and stats. Returns the number of entries
+     * written.
+     */
+    public long snapshot(Path path, int keysPerLevel) {
+        Serializer<K, V> serializer = requireSnapshotSerializer();
+        try (SnapshotWriter<K, V> writer = new SnapshotWriter<>(path, serializer, levels.size())) {
+            for (ICacheLevel<K, V> cache : levels) {
+                writer.writeLevel(cache.isShared() ? Collections.emptyMap() : cache.hottestEntries(keysPerLevel));
+            }
+            return writer.commit();
+        }
+    }
+
+    /**
+     * Reloads a snapshot in the background and returns at once. Entries go
+     * back into the level they were taken from, in parallel batches that hold
+     * only their own keys' stripes. A key written or removed after the
+     * warm-up started keeps its live state. The future completes with the
+     * number of entries applied, or with the read error after applying what
+     * came before it.
+     */
+    public synchronized CompletableFuture<Long> warmFrom(Path path) {
+        Serializer<K, V> serializer = requireSnapshotSerializer();
+        if (writtenWhileWarming != null) {
+            throw new IllegalStateException("A warm-up is already running");
+        }
+        writtenWhileWarming = ConcurrentHashMap.newKeySet();
+        return CacheWarmer.warm(path, serializer, WARM_BATCH_SIZE, WARM_PARALLELISM, this::warmLevel)
+                .whenComplete((applied, failure) -> writtenWhileWarming = null);
+    }
+
+    private void warmLevel(int levelIndex, Map<K, V> batch) {
+        if (levelIndex >= levels.size() || levels.get(levelIndex).isShared()) {
+            return; // Snapshot from a different layout
+        }
+        int[] locked = lockStripes(batch.keySet());
+        try {
+            Set<K> written = writtenWhileWarming;
+            if (written != null && !written.isEmpty()) {
+                batch = new LinkedHashMap<>(batch);
+                batch.keySet().removeAll(written);
+            }
+            levels.get(levelIndex).putAll(batch);
+        } finally {
+            unlockStripes(locked);
+        }
+    }
+
+    // Caller must hold the key's stripe lock
+    private void noteWritten(K key) {
+        Set<K> written = writtenWhileWarming;
+        if (written != null) {
+            written.add(key);
+        }
+    }
+
+    private Serializer<K, V> requireSnapshotSerializer() {
+        Serializer<K, V> serializer = snapshotSerializer;
+        if (serializer == null) {
+            throw new IllegalStateException("Snapshots need a serializer, see setSnapshotSerializer");
+        }
+        return serializer;
+    }
+
+    private void publishInvalidation(K key) {
+        InvalidationBus<K> bus = invalidationBus;
+        if (bus != null) {
+            bus.invalidate(key);
+        }
+    }
+
+    private void publishInvalidations(Collection<K> keys) {
+        InvalidationBus<K> bus = invalidationBus;
+        if (bus != null) {
+            bus.invalidateAll(keys);
+        }
+    }
+
+    private V peekPending(K key) {
+        return writeBehind == null ? null : writeBehind.peek(key);
+    }
+
+    // Caller must hold the stripes of every key in missing
+    private Collection<K> withPending(Collection<K> missing, Map<K, V> result) {
+        if (writeBehind == null) {
+            return missing;
+        }
+        Map<K, V> pending = new HashMap<>();
+        for (K key : missing) {
+            V value = writeBehind.peek(key);
+            if (value != null) {
+                pending.put(key, value);
+            }
+        }
+        if (pending.isEmpty()) {
+            return missing;
+        }
+        if (recordStats) {
+            // Served below every level, like a single get of a pending write
+            for (int i = 1; i < levels.size(); i++) {
+                levelStats[i].recordMisses(pending.size());
+            }
+        }
+        result.putAll(pending);
+        return withoutFound(missing, pending);
+    }
+
+    private List<K> withoutFound(Collection<K> keys, Map<K, V> found) {
+        List<K> missing = new ArrayList<>(keys.size() - Math.min(found.size(), keys.size()));
+        for (K key : keys) {
+            if (!found.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        return missing;
+    }
+
+    // Caller must hold the stripes of every key in found
+    private void promoteAll(Map<K, V> found, int currentLevel, ICacheLevel<K, V> source) {
+        long start = recordStats ? System.nanoTime() : 0;
+        int promoted = 0;
+        // Entries with a deadline keep it, the rest go out in one batch per target level
+        Map<Integer, Map<K, V>> batches = new HashMap<>();
+        for (Map.Entry<K, V> entry : found.entrySet()) {
+            K key = entry.getKey();
+            Set<Integer> targetLevels = promotionStrategy.targetLevels(key, levels.size(), currentLevel);
+            if (targetLevels.isEmpty()) {
+                continue;
+            }
+            promoted++;
+            long remaining = source.remainingLifetimeNanos(key);
+            if (remaining != Long.MAX_VALUE) {
+                writePromoted(targetLevels, key, entry.getValue(), remaining);
+                continue;
+            }
+            for (int levelIndex : targetLevels) {
+                batches.computeIfAbsent(levelIndex, index -> new HashMap<>()).put(key, entry.getValue());
+            }
+        }
+        for (Map.Entry<Integer, Map<K, V>> batch : batches.entrySet()) {
+            levels.get(batch.getKey()).putAll(batch.getValue());
+        }
+        if (recordStats && promoted > 0) {
+            levelStats[currentLevel].recordPromotions(promoted);
+            promotionLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Point in time counters. Per level hits, misses and promotions are
+     * counted by this cache when stats are recorded; evictions always come
+     * from the level itself. Loads only appear in the total: a load runs
+     * after every level missed, so it belongs to no single level. Subtract
+     * two snapshots with {@link MultiLevelCacheStats#minus} to get the
+     * activity in between.
+     */
+    public MultiLevelCacheStats stats() {
+        List<CacheStats> perLevel = new ArrayList<>(levels.size());
+        long evictions = 0;
+        for (int i = 0; i < levels.size(); i++) {
+            CacheStats counted = levelStats[i].snapshot();
+            long levelEvictions = levels.get(i).stats().getEvictionCount();
+            evictions += levelEvictions;
+            perLevel.add(new CacheStats(counted.getHitCount(), counted.getMissCount(), levelEvictions,
+                    counted.getPromotionCount(), 0, 0, 0));
+        }
+        CacheStats total = totalStats.snapshot();
+        long promotions = 0;
+        for (CacheStats level : perLevel) {
+            promotions += level.getPromotionCount();
+        }
+        total = new CacheStats(total.getHitCount(), total.getMissCount(), evictions, promotions,
+                total.getLoadSuccessCount(), total.getLoadFailureCount(), total.getTotalLoadTimeNanos());
+        LatencySnapshot gets = recordStats ? getLatency.snapshot() : LatencySnapshot.empty();
+        LatencySnapshot puts = recordStats ? putLatency.snapshot() : LatencySnapshot.empty();
+        LatencySnapshot promoteTimes = recordStats ? promotionLatency.snapshot() : LatencySnapshot.empty();
+        return new MultiLevelCacheStats(total, perLevel, gets, puts, promoteTimes);
+    }
+
+    // A lookup served by foundLevel missed every level above it, levels.size() means a full miss
+    private void recordLookup(int foundLevel, boolean hit) {
+        for (int i = 0; i < foundLevel; i++) {
+            levelStats[i].recordMiss();
+        }
+        if (foundLevel < levelStats.length) {
+            levelStats[foundLevel].recordHit();
+        }
+        if (hit) {
+            totalStats.recordHit();
+        } else {
+            totalStats.recordMiss();
+        }
+    }
+
+    private void recordLoad(boolean success, long loadTimeNanos) {
+        if (success) {
+            totalStats.recordLoadSuccess(loadTimeNanos);
+        } else {
+            totalStats.recordLoadFailure(loadTimeNanos);
+        }
+    }
+
+    /**
+     * Writes every pending write-behind entry to the deferred levels now.
+     * Entries whose write fails stay pending, see
+     * {@link #getWriteBehindFailure()}.
+     */
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    /**
+     * The error from the last write-behind flush that could not write every
+     * entry, or null. Failed entries are still served from the queue and
+     * retried by later flushes.
+     */
+    public RuntimeException getWriteBehindFailure() {
+        return writeBehind == null ? null : writeBehind.getFailure();
+    }
+
+    /**
+     * Flushes pending writes and stops the write-behind thread.
+     */
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    // Caller must hold the key's stripe lock
+    private void write(K key, V value) {
+        noteWritten(key);
+        for (int levelIndex : writeLevels) {
+            levels.get(levelIndex).put(key, value);
+        }
+        for (int levelIndex : skippedLevels) {
+            levels.get(levelIndex).remove(key);
+        }
+        if (writeBehind != null) {
+            writeBehind.enqueue(key, value);
+        }
+    }
+
+    private void flushDeferred(K key) {
+        ReentrantLock lock = getLockForKey(key);
+        lock.lock();
+        try {
+            V value = writeBehind.peek(key);
+            if (value == null) {
+                return; // Removed or already flushed
+            }
+            for (int levelIndex : deferredLevels) {
+                levels.get(levelIndex).put(key, value);
+            }
+            // Only dropped once written, a failed write stays queued. The
+            // stripe lock keeps a newer put from replacing it meanwhile
+            writeBehind.take(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller must not hold any stripe lock, the queue may flush on this thread
+    private void awaitWriteBehindCapacity() {
+        if (writeBehind != null) {
+            writeBehind.awaitCapacity();
+        }
+    }
+
+    // Promoted copies keep the source level's deadline so they cannot outlive it
+    private void promote(K key, V value, int currentLevel, long remainingLifetimeNanos) {
+        promoteTo(promotionStrategy.targetLevels(key, levels.size(), currentLevel), key, value, currentLevel,
+                remainingLifetimeNanos);
+    }
+
+    private void promoteTo(Set<Integer> targetLevels, K key, V value, int currentLevel,
+            long remainingLifetimeNanos) {
+        if (!recordStats || targetLevels.isEmpty()) {
+            writePromoted(targetLevels, key, value, remainingLifetimeNanos);
+            return;
+        }
+        long start = System.nanoTime();
+        writePromoted(targetLevels, key, value, remainingLifetimeNanos);
+        levelStats[currentLevel].recordPromotions(1);
+        promotionLatency.record(System.nanoTime() - start);
     }
 
-    private void promote(K key, V value, int currentLevel) {
-        Set<Integer> targetLevels = promotionStrategy.targetLevels(levels.size(), currentLevel);
+    private void writePromoted(Set<Integer> targetLevels, K key, V value, long remainingLifetimeNanos) {
         for (int levelIndex : targetLevels) {
             ICacheLevel<K, V> cache = levels.get(levelIndex);
-            cache.put(key, value);
+            cache.put(key, value, remainingLifetimeNanos);
         }
     }
 }
@@ -0,0 +1,15 @@
+package cache.src.core;
+
+/**
+ * How {@link MultiLevelCache#get} synchronizes reads.
+ * STRIPED takes the key's stripe lock for the whole lookup.
+ * OPTIMISTIC probes levels without locking and only takes the stripe lock
+ * when a lower level hit has to be promoted. An L1 hit is only lock free if
+ * the L1 eviction policy records accesses without a lock, as
+ * BufferedLRUEvictionPolicy does; LRUEvictionPolicy takes its list lock on
+ * every hit.
+ */
+public enum ReadMode {
+    STRIPED,
+    OPTIMISTIC
+}
@@ -0,0 +1,298 @@
+package cache.src.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import cache.src.invalidation.InvalidationBus;
+import cache.src.loader.AsyncCacheLoader;
+import cache.src.loader.CacheLoader;
+import cache.src.stats.MultiLevelCacheStats;
+
+/**
+ * Facade over N independent MultiLevelCache shards. A key always maps to the
+ * same shard, and every shard has its own levels, eviction policies and
+ * stripe locks, so threads working on different shards never share state.
+ *
+ * Each level's total capacity is split evenly across shards. With uneven
+ * traffic a hot shard evicts while a cold one sits half empty, so
+ * {@link #rebalance()} moves capacity towards the shards that receive the
+ * most requests. It runs on a daemon thread when a rebalance interval is set,
+ * and can be called directly. Only {@link CacheLevel} levels can be resized;
+ * other level types keep their size.
+ */
+public class ShardedMultiLevelCache<K, V> {
+    // Every shard keeps at least this share of its even split, the rest follows traffic
+    private static final double MIN_SHARE = 0.5;
+    // Shards whose traffic share is within this factor of even are left alone
+    private static final double SKEW_THRESHOLD = 0.2;
+
+    private final List<MultiLevelCache<K, V>> shards;
+    // shardLevels.get(shard).get(level), null where the level cannot be resized
+    private final List<List<CacheLevel<K, V>>> shardLevels;
+    private final long[] levelCapacity;
+    private final long[][] lastRequests;
+    // Null unless periodic rebalancing is on
+    private final ScheduledExecutorService rebalancer;
+
+    public ShardedMultiLevelCache(List<MultiLevelCache<K, V>> shards, List<List<CacheLevel<K, V>>> shardLevels,
+            long rebalanceIntervalMillis) {
+        if (shards.isEmpty() || shards.size() != shardLevels.size()) {
+            throw new IllegalArgumentException("Every shard needs its list of levels");
+        }
+        this.shards = shards;
+        this.shardLevels = shardLevels;
+        int levelCount = shardLevels.get(0).size();
+        this.levelCapacity = new long[levelCount];
+        this.lastRequests = new long[shards.size()][levelCount];
+        for (List<CacheLevel<K, V>> levels : shardLevels) {
+            for (int i = 0; i < levelCount; i++) {
+                CacheLevel<K, V> level = levels.get(i);
+                if (level != null) {
+                    levelCapacity[i] += level.getMaxWeight();
+                }
+            }
+        }
+        if (rebalanceIntervalMillis > 0) {
+            this.rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-shard-rebalancer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rebalancer.scheduleWithFixedDelay(this::rebalance, rebalanceIntervalMillis, rebalanceIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.rebalancer = null;
+        }
+    }
+
+    public V get(K key) {
+        return shardFor(key).get(key);
+    }
+
+    public V get(K key, CacheLoader<K, V> loader) {
+        return shardFor(key).get(key, loader);
+    }
+
+    public CompletableFuture<V> getAsync(K key, AsyncCacheLoader<K, V> loader) {
+        return shardFor(key).getAsync(key, loader);
+    }
+
+    public void put(K key, V value) {
+        shardFor(key).put(key, value);
+    }
+
+    public void remove(K key) {
+        shardFor(key).remove(key);
+    }
+
+    public Map<K, V> getAll(Collection<K> keys) {
+        Map<K, V> result = new HashMap<>();
+        List<List<K>> grouped = groupByShard(keys);
+        for (int i = 0; i < grouped.size(); i++) {
+            if (!grouped.get(i).isEmpty()) {
+                result.putAll(shards.get(i).getAll(grouped.get(i)));
+            }
+        }
+        return result;
+    }
+
+    public void putAll(Map<K, V> entries) {
+        List<Map<K, V>> grouped = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            grouped.add(new HashMap<>());
+        }
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            grouped.get(shardIndex(entry.getKey())).put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < grouped.size(); i++) {
+            if (!grouped.get(i).isEmpty()) {
+                shards.get(i).putAll(grouped.get(i));
+            }
+        }
+    }
+
+    public void invalidateAll(Collection<K> keys) {
+        List<List<K>> grouped = groupByShard(keys);
+        for (int i = 0; i < grouped.size(); i++) {
+            if (!grouped.get(i).isEmpty()) {
+                shards.get(i).invalidateAll(grouped.get(i));
+            }
+        }
+    }
+
+    /**
+     * Publishes every shard's writes on the bus.
+     */
+    public void setInvalidationBus(InvalidationBus<K> invalidationBus) {
+        for (MultiLevelCache<K, V> shard : shards) {
+            shard.setInvalidationBus(invalidationBus);
+        }
+    }
+
+    /**
+     * Routes invalidations from other processes to the shards owning the keys.
+     */
+    public void invalidateLocal(Collection<K> keys) {
+        List<List<K>> grouped = groupByShard(keys);
+        for (int i = 0; i < grouped.size(); i++) {
+            if (!grouped.get(i).isEmpty()) {
+                shards.get(i).invalidateLocal(grouped.get(i));
+            }
+        }
+    }
+
+    public void flush() {
+        for (MultiLevelCache<K, V> shard : shards) {
+            shard.flush();
+        }
+    }
+
+    public void close() {
+        if (rebalancer != null) {
+            rebalancer.shutdownNow();
+        }
+        for (MultiLevelCache<K, V> shard : shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * Stats summed over all shards.
+     */
+    public MultiLevelCacheStats stats() {
+        MultiLevelCacheStats total = shards.get(0).stats();
+        for (int i = 1; i < shards.size(); i++) {
+            total = total.plus(shards.get(i).stats());
+        }
+        return total;
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public MultiLevelCache<K, V> getShard(int index) {
+        return shards.get(index);
+    }
+
+    /**
+     * Current capacity of the given level in each shard, 0 where the level is not resizable.
+     */
+    public long[] levelCapacities(int level) {
+        long[] capacities = new long[shards.size()];
+        for (int s = 0; s < shards.size(); s++) {
+            CacheLevel<K, V> cacheLevel = shardLevels.get(s).get(level);
+            capacities[s] = cacheLevel == null ? 0 : cacheLevel.getMaxWeight();
+        }
+        return capacities;
+    }
+
+    /**
+     * Splits each level's total capacity by the requests every shard's level
+     * received since the last call. Half of an even split is always kept so a
+     * shard that went quiet can warm back up. Shrinking shards are resized
+     * first, so the total never exceeds the configured capacity.
+     */
+    public synchronized void rebalance() {
+        int shardCount = shards.size();
+        for (int level = 0; level < levelCapacity.length; level++) {
+            long[] requests = new long[shardCount];
+            long totalRequests = 0;
+            boolean resizable = true;
+            for (int s = 0; s < shardCount; s++) {
+                CacheLevel<K, V> cacheLevel = shardLevels.get(s).get(level);
+                if (cacheLevel == null) {
+                    resizable = false;
+                    break;
+                }
+                long now = cacheLevel.stats().getRequestCount();
+                requests[s] = now - lastRequests[s][level];
+                lastRequests[s][level] = now;
+                totalRequests += requests[s];
+            }
+            if (!resizable || totalRequests == 0 || !isSkewed(level, requests, totalRequests)) {
+                continue;
+            }
+            resize(level, targetCapacities(levelCapacity[level], requests, totalRequests));
+        }
+    }
+
+    // Whether some shard's capacity share is off from its traffic share by more than the threshold
+    private boolean isSkewed(int level, long[] requests, long totalRequests) {
+        for (int s = 0; s < requests.length; s++) {
+            double trafficShare = (double) requests[s] / totalRequests;
+            double capacityShare = (double) shardLevels.get(s).get(level).getMaxWeight() / levelCapacity[level];
+            if (Math.abs(trafficShare - capacityShare) > SKEW_THRESHOLD * capacityShare) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] targetCapacities(long total, long[] requests, long totalRequests) {
+        int shardCount = requests.length;
+        long floor = (long) (total * MIN_SHARE / shardCount);
+        long spread = total - floor * shardCount;
+        long[] targets = new long[shardCount];
+        long assigned = 0;
+        for (int s = 0; s < shardCount; s++) {
+            targets[s] = Math.max(1, floor + (long) ((double) spread * requests[s] / totalRequests));
+            assigned += targets[s];
+        }
+        // Rounding leftovers go to the busiest shard
+        int busiest = 0;
+        for (int s = 1; s < shardCount; s++) {
+            if (requests[s] > requests[busiest]) {
+                busiest = s;
+            }
+        }
+        targets[busiest] += total - assigned;
+        return targets;
+    }
+
+    private void resize(int level, long[] targets) {
+        for (int s = 0; s < targets.length; s++) {
+            CacheLevel<K, V> cacheLevel = shardLevels.get(s).get(level);
+            if (targets[s] < cacheLevel.getMaxWeight()) {
+                cacheLevel.setMaxWeight(targets[s]);
+            }
+        }
+        for (int s = 0; s < targets.length; s++) {
+            CacheLevel<K, V> cacheLevel = shardLevels.get(s).get(level);
+            if (targets[s] > cacheLevel.getMaxWeight()) {
+                cacheLevel.setMaxWeight(targets[s]);
+            }
+        }
+    }
+
+    private MultiLevelCache<K, V> shardFor(K key) {
+        return shards.get(shardIndex(key));
+    }
+
+    /**
+     * Uses the high bits of a multiplicative hash, so shard choice does not
+     * correlate with the low bits MultiLevelCache uses to pick a stripe.
+     */
+    private int shardIndex(K key) {
+        long mixed = (key.hashCode() * 0x9E3779B9L) & 0xFFFFFFFFL;
+        return (int) ((mixed * shards.size()) >>> 32);
+    }
+
+    private List<List<K>> groupByShard(Collection<K> keys) {
+        List<List<K>> grouped = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            grouped.add(new ArrayList<>());
+        }
+        for (K key : keys) {
+            grouped.get(shardIndex(key)).add(key);
+        }
+        return grouped;
+    }
+}
@@ -0,0 +1,26 @@
+package cache.src.core;
+
+/**
+ * Computes the weight of an entry, typically its size in bytes.
+ * Weights must be non negative and must not change while the entry is cached.
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+    long weigh(K key, V value);
+
+    /**
+     * Weighs every entry as 1, so the weight bound is an entry count. Always
+     * returns the same instance, levels compare against it.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> Weigher<K, V> singleton() {
+        return (Weigher<K, V>) Singleton.INSTANCE;
+    }
+
+    final class Singleton {
+        private static final Weigher<Object, Object> INSTANCE = (key, value) -> 1;
+
+        private Singleton() {
+        }
+    }
+}
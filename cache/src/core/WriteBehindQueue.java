@@ -0,0 +1,102 @@
+package cache.src.core;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Pending writes for the deferred levels, coalesced per key so a key written
+ * many times between flushes costs one lower level write. A daemon thread
+ * flushes on a fixed interval, or as soon as a batch worth of keys is pending.
+ * The flush callback owns locking and takes each key with {@link #take} once
+ * it is written. A key whose write fails stays pending and is retried by the
+ * next flush.
+ */
+class WriteBehindQueue<K, V> {
+    // Writers flush on their own thread once this many batches are pending
+    private static final int MAX_PENDING_BATCHES = 16;
+
+    private final Map<K, V> pending;
+    private final int batchSize;
+    private final int maxPending;
+    private final Consumer<K> flushKey;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushQueued;
+    // Last flush error, cleared by the next flush that writes every key
+    private volatile RuntimeException failure;
+
+    WriteBehindQueue(int batchSize, long flushIntervalMillis, Consumer<K> flushKey) {
+        this.pending = new ConcurrentHashMap<>();
+        this.batchSize = batchSize;
+        this.maxPending = (int) Math.min(Integer.MAX_VALUE, (long) batchSize * MAX_PENDING_BATCHES);
+        this.flushKey = flushKey;
+        this.flushQueued = new AtomicBoolean();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    void enqueue(K key, V value) {
+        pending.put(key, value);
+        if (pending.size() >= batchSize && flushQueued.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * Backpressure for writers, called before they take a stripe lock. When
+     * the flusher has fallen far behind, or the deferred levels keep
+     * failing, the writer flushes on its own thread so pending writes cannot
+     * grow without bound.
+     */
+    void awaitCapacity() {
+        if (pending.size() >= maxPending) {
+            flush();
+        }
+    }
+
+    V peek(K key) {
+        return pending.get(key);
+    }
+
+    V take(K key) {
+        return pending.remove(key);
+    }
+
+    // Never throws, an exception escaping the scheduled task would cancel it
+    void flush() {
+        flushQueued.set(false);
+        RuntimeException failed = null;
+        for (K key : new ArrayList<>(pending.keySet())) {
+            try {
+                flushKey.accept(key);
+            } catch (RuntimeException e) {
+                failed = e; // The key stays pending for the next flush
+            }
+        }
+        failure = failed;
+    }
+
+    RuntimeException getFailure() {
+        return failure;
+    }
+
+    void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
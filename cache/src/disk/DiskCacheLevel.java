@@ -0,0 +1,399 @@
+package cache.src.disk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import cache.src.core.ICacheLevel;
+import cache.src.offheap.Serializer;
+import cache.src.stats.CacheStats;
+import cache.src.stats.StatsCounter;
+
+/**
+ * Persistent cache level backed by a log structured set of memory mapped
+ * segment files. Every put or remove is appended to the active segment and
+ * the in memory index points at the latest record for each key. Reads
+ * deserialize straight from a slice of the mapping, without copying into an
+ * intermediate array.
+ *
+ * On startup the index is rebuilt by replaying every segment in order, so the
+ * level comes back warm after a restart. A background task rewrites the live
+ * records of segments that are mostly garbage. When the directory grows past
+ * its byte budget the oldest segment is dropped, which makes the tier FIFO
+ * once it is full.
+ *
+ * Thread safe: reads share a read lock, writes and compaction take the write lock.
+ */
+public class DiskCacheLevel<K, V> implements ICacheLevel<K, V>, AutoCloseable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    private static final long COMPACTION_INTERVAL_SECONDS = 30;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static class Location {
+        final LogSegment segment;
+        final int offset;
+
+        Location(LogSegment segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Serializer<K, V> serializer;
+    private final Map<K, Location> index;
+    private final TreeMap<Long, LogSegment> segments;
+    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService compactor;
+    private final StatsCounter statsCounter = new StatsCounter();
+    // Last background compaction error, cleared by the next pass that succeeds
+    private volatile RuntimeException compactionFailure;
+    private LogSegment active;
+
+    public DiskCacheLevel(Path directory, long maxBytes, Serializer<K, V> serializer) {
+        this(directory, maxBytes, DEFAULT_SEGMENT_SIZE, serializer);
+    }
+
+    public DiskCacheLevel(Path directory, long maxBytes, int segmentSize, Serializer<K, V> serializer) {
+        if (maxBytes / segmentSize < 2) {
+            throw new IllegalArgumentException("Byte budget must hold at least two segments");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxBytes / segmentSize);
+        this.serializer = serializer;
+        this.index = new HashMap<>();
+        this.segments = new TreeMap<>();
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open disk cache at " + directory, e);
+        }
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "disk-cache-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactInBackground, COMPACTION_INTERVAL_SECONDS,
+                COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public V get(K key) {
+        rwLock.readLock().lock();
+        try {
+            return read(key);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<K> keys) {
+        Map<K, V> found = new HashMap<>();
+        rwLock.readLock().lock();
+        try {
+            for (K key : keys) {
+                V value = read(key);
+                if (value != null) {
+                    found.put(key, value);
+                }
+            }
+        } finally {
+            rwLock.readLock().unlock();
+        }
+        return found;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        byte[] keyBytes = serializer.serializeKey(key);
+        byte[] valueBytes = serializer.serializeValue(value);
+        rwLock.writeLock().lock();
+        try {
+            write(key, keyBytes, valueBytes);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<K, V> entries) {
+        rwLock.writeLock().lock();
+        try {
+            for (Map.Entry<K, V> entry : entries.entrySet()) {
+                K key = entry.getKey();
+                write(key, serializer.serializeKey(key), serializer.serializeValue(entry.getValue()));
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        rwLock.writeLock().lock();
+        try {
+            delete(key);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<K> keys) {
+        rwLock.writeLock().lock();
+        try {
+            for (K key : keys) {
+                delete(key);
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        rwLock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * Rewrites sealed segments whose garbage ratio passed the threshold.
+     * Runs on the background compactor and can also be called directly.
+     */
+    public void compact() {
+        List<LogSegment> candidates = new ArrayList<>();
+        rwLock.readLock().lock();
+        try {
+            for (LogSegment segment : segments.values()) {
+                if (segment != active && segment.garbageRatio() >= COMPACTION_THRESHOLD) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            rwLock.readLock().unlock();
+        }
+        // One segment per write lock hold so readers are not starved
+        for (LogSegment segment : candidates) {
+            rwLock.writeLock().lock();
+            try {
+                if (segments.containsKey(segment.id()) && segment != active) {
+                    rewrite(segment);
+                }
+            } finally {
+                rwLock.writeLock().unlock();
+            }
+        }
+        compactionFailure = null;
+    }
+
+    /**
+     * The error that stopped the last background compaction, or null if it
+     * succeeded. Until a later pass succeeds, garbage is not reclaimed and
+     * the level fills up with dead records.
+     */
+    public RuntimeException getCompactionFailure() {
+        return compactionFailure;
+    }
+
+    // An exception escaping a scheduled task would cancel it silently
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            compactionFailure = e; // Retried on the next run
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        rwLock.writeLock().lock();
+        try {
+            for (LogSegment segment : segments.values()) {
+                segment.flush();
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Caller must hold the read lock
+    private V read(K key) {
+        Location location = index.get(key);
+        if (location == null) {
+            statsCounter.recordMiss();
+            return null;
+        }
+        statsCounter.recordHit();
+        return serializer.deserializeValue(location.segment.value(location.offset));
+    }
+
+    // Caller must hold the write lock
+    private void write(K key, byte[] keyBytes, byte[] valueBytes) {
+        if (LogSegment.HEADER_BYTES + keyBytes.length + valueBytes.length > segmentSize) {
+            delete(key); // Too large to cache, make sure no stale copy survives
+            return;
+        }
+        replace(key, append(keyBytes, valueBytes));
+    }
+
+    // Caller must hold the write lock
+    private void delete(K key) {
+        if (!index.containsKey(key)) {
+            return;
+        }
+        Location tombstone = append(serializer.serializeKey(key), null);
+        tombstone.segment.markGarbage(tombstone.segment.recordSizeAt(tombstone.offset));
+        replace(key, null);
+    }
+
+    // Caller must hold the write lock
+    private Location append(byte[] keyBytes, byte[] valueBytes) {
+        int offset = active.append(keyBytes, valueBytes);
+        if (offset < 0) {
+            roll();
+            offset = active.append(keyBytes, valueBytes);
+        }
+        return new Location(active, offset);
+    }
+
+    // Caller must hold the write lock
+    private void replace(K key, Location location) {
+        Location previous = location == null ? index.remove(key) : index.put(key, location);
+        if (previous != null) {
+            previous.segment.markGarbage(previous.segment.recordSizeAt(previous.offset));
+        }
+    }
+
+    // Caller must hold the write lock
+    private void roll() {
+        try {
+            active.flush();
+            active = openSegment(active.id() + 1);
+            while (segments.size() > maxSegments) {
+                dropOldest();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll disk cache segment", e);
+        }
+    }
+
+    // Caller must hold the write lock
+    private void dropOldest() throws IOException {
+        LogSegment oldest = segments.pollFirstEntry().getValue();
+        Iterator<Location> locations = index.values().iterator();
+        while (locations.hasNext()) {
+            if (locations.next().segment == oldest) {
+                locations.remove();
+                statsCounter.recordEviction();
+            }
+        }
+        oldest.delete();
+    }
+
+    // Caller must hold the write lock
+    private void rewrite(LogSegment segment) {
+        // A tombstone only matters while an older segment may still hold the key
+        boolean olderSegmentExists = segments.firstKey() < segment.id();
+        int offset = 0;
+        while (offset < segment.writePosition()) {
+            int size = segment.recordSizeAt(offset);
+            K key = serializer.deserializeKey(segment.key(offset));
+            ByteBuffer value = segment.value(offset);
+            Location current = index.get(key);
+            if (value != null && current != null && current.segment == segment && current.offset == offset) {
+                index.put(key, append(toBytes(segment.key(offset)), toBytes(value)));
+            } else if (value == null && current == null && olderSegmentExists) {
+                Location tombstone = append(toBytes(segment.key(offset)), null);
+                tombstone.segment.markGarbage(size);
+            }
+            offset += size;
+        }
+        segments.remove(segment.id());
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete compacted segment", e);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            LogSegment segment = openSegment(id);
+            replay(segment);
+            active = segment;
+        }
+        if (active == null) {
+            active = openSegment(0);
+        }
+    }
+
+    private void replay(LogSegment segment) {
+        int offset = 0;
+        int size;
+        while ((size = segment.validRecordSize(offset)) > 0) {
+            K key = serializer.deserializeKey(segment.key(offset));
+            if (segment.value(offset) == null) {
+                segment.markGarbage(size);
+                replace(key, null);
+            } else {
+                replace(key, new Location(segment, offset));
+            }
+            offset += size;
+        }
+        segment.setWritePosition(offset);
+    }
+
+    private LogSegment openSegment(long id) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        LogSegment segment = LogSegment.open(id, file, segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
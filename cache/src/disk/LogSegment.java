@@ -0,0 +1,157 @@
+package cache.src.disk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * One fixed size, memory mapped file of the append only log.
+ *
+ * Record layout: [int crc][int keyLength][int valueLength][key][value].
+ * A valueLength of -1 marks a tombstone. The crc covers everything after it,
+ * so a record torn by a crash fails the check and ends the replay.
+ * Appends are single writer, the owning level serializes them.
+ */
+class LogSegment {
+    static final int HEADER_BYTES = 12;
+    static final int TOMBSTONE = -1;
+
+    private final long id;
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private long garbageBytes;
+
+    private LogSegment(long id, Path file, MappedByteBuffer buffer) {
+        this.id = id;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static LogSegment open(long id, Path file, int segmentSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new LogSegment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    /**
+     * Returns the offset of the new record, or -1 if it does not fit.
+     */
+    int append(byte[] key, byte[] value) {
+        int valueLength = value == null ? TOMBSTONE : value.length;
+        int size = recordSize(key.length, valueLength);
+        if (writePosition + size > buffer.capacity()) {
+            return -1;
+        }
+        int offset = writePosition;
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.putInt(key.length);
+        view.putInt(valueLength);
+        view.put(key);
+        if (value != null) {
+            view.put(value);
+        }
+        buffer.putInt(offset, checksum(offset, size));
+        writePosition += size;
+        return offset;
+    }
+
+    /**
+     * Validates the record at offset and returns its size, or -1 if the log
+     * ends here (zero fill or a torn write).
+     */
+    int validRecordSize(int offset) {
+        if (offset + HEADER_BYTES > buffer.capacity()) {
+            return -1;
+        }
+        int keyLength = buffer.getInt(offset + 4);
+        int valueLength = buffer.getInt(offset + 8);
+        if (keyLength <= 0 || valueLength < TOMBSTONE) {
+            return -1;
+        }
+        long size = (long) recordSize(keyLength, valueLength);
+        if (offset + size > buffer.capacity()) {
+            return -1;
+        }
+        return buffer.getInt(offset) == checksum(offset, (int) size) ? (int) size : -1;
+    }
+
+    ByteBuffer key(int offset) {
+        int keyLength = buffer.getInt(offset + 4);
+        return slice(offset + HEADER_BYTES, keyLength);
+    }
+
+    /**
+     * Zero copy view of the value, or null for a tombstone.
+     */
+    ByteBuffer value(int offset) {
+        int keyLength = buffer.getInt(offset + 4);
+        int valueLength = buffer.getInt(offset + 8);
+        if (valueLength == TOMBSTONE) {
+            return null;
+        }
+        return slice(offset + HEADER_BYTES + keyLength, valueLength);
+    }
+
+    int recordSizeAt(int offset) {
+        return recordSize(buffer.getInt(offset + 4), buffer.getInt(offset + 8));
+    }
+
+    void markGarbage(int bytes) {
+        garbageBytes += bytes;
+    }
+
+    double garbageRatio() {
+        return writePosition == 0 ? 0 : (double) garbageBytes / writePosition;
+    }
+
+    void setWritePosition(int writePosition) {
+        this.writePosition = writePosition;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    long id() {
+        return id;
+    }
+
+    long sizeOnDisk() {
+        return buffer.capacity();
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    // The mapping itself is released when the buffer is garbage collected
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private ByteBuffer slice(int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(position + length).position(position);
+        return view.slice();
+    }
+
+    private int checksum(int offset, int size) {
+        CRC32 crc = new CRC32();
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + size).position(offset + 4);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private static int recordSize(int keyLength, int valueLength) {
+        return HEADER_BYTES + keyLength + Math.max(valueLength, 0);
+    }
+}
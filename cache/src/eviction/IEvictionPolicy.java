@@ -1,5 +1,8 @@
 package cache.src.eviction;
 
+import java.util.Collections;
+import java.util.List;
+
 public interface IEvictionPolicy<K> {
     void onAccess(K key);
 
@@ -8,4 +11,38 @@ public interface IEvictionPolicy<K> {
     void onRemove(K key);
 
     K evict();
-}
\ No newline at end of file
+
+    /**
+     * Called before a new key is inserted. Returning false rejects the insert,
+     * which lets frequency based policies keep a cold candidate from pushing
+     * out a hotter victim.
+     */
+    default boolean admit(K candidate) {
+        return true;
+    }
+
+    /**
+     * Up to limit keys the policy would evict last, listed in eviction order:
+     * the first one would go first. Does not count as an access. Policies
+     * without a usable order return an empty list.
+     */
+    default List<K> hottest(int limit) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Called when the owning level's capacity changes at runtime. Policies
+     * whose structure is sized from the capacity resize it here; the default
+     * ignores the change.
+     */
+    default void setCapacity(long capacity) {
+    }
+
+    /**
+     * Number of entries the policy is sized for, 0 for policies that are not
+     * sized from a capacity.
+     */
+    default long getCapacity() {
+        return 0;
+    }
+}
@@ -0,0 +1,215 @@
+package cache.src.eviction.lru;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cache.src.eviction.IEvictionPolicy;
+
+/**
+ * LRU that records accesses into striped lock free ring buffers and replays
+ * them onto the recency list in batches. Reads only pay for a CAS on their own
+ * stripe, the list lock is taken once per batch instead of once per access.
+ * When a buffer is full the access is dropped, so ordering is approximate
+ * under heavy contention. Inserts, removes and evictions drain all buffers
+ * first so they always see the latest recorded order.
+ */
+public class BufferedLRUEvictionPolicy<K> implements IEvictionPolicy<K> {
+    private static final int BUFFER_COUNT = 16;
+    private static final int BUFFER_SIZE = 32;
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+    private final Node<K> head;
+    private final Node<K> tail;
+    private final Map<K, Node<K>> nodeMap;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReadBuffer<K>[] readBuffers;
+
+    @SuppressWarnings("unchecked")
+    public BufferedLRUEvictionPolicy() {
+        head = new Node<>(null); // Dummy head
+        tail = new Node<>(null); // Dummy tail
+        head.next = tail;
+        tail.prev = head;
+        nodeMap = new HashMap<>();
+        readBuffers = (ReadBuffer<K>[]) new ReadBuffer<?>[BUFFER_COUNT];
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    @Override
+    public void onAccess(K key) {
+        ReadBuffer<K> buffer = readBuffers[bufferIndex()];
+        int pending = buffer.offer(key);
+        if (pending < 0 || pending >= DRAIN_THRESHOLD) {
+            tryDrain();
+        }
+    }
+
+    @Override
+    public void onInsert(K key) {
+        lock.lock();
+        try {
+            drainBuffers();
+            Node<K> node = nodeMap.get(key);
+            if (node == null) {
+                addToFront(key);
+            } else {
+                moveToFront(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onRemove(K key) {
+        lock.lock();
+        try {
+            drainBuffers();
+            Node<K> node = nodeMap.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public K evict() {
+        lock.lock();
+        try {
+            drainBuffers();
+            if (tail.prev == head) {
+                return null; // List is empty
+            }
+            Node<K> victim = tail.prev;
+            unlink(victim);
+            nodeMap.remove(victim.key);
+            return victim.key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<K> hottest(int limit) {
+        lock.lock();
+        try {
+            drainBuffers();
+            List<K> keys = new ArrayList<>(Math.min(limit, nodeMap.size()));
+            for (Node<K> node = head.next; node != tail && keys.size() < limit; node = node.next) {
+                keys.add(node.key);
+            }
+            Collections.reverse(keys);
+            return keys;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int bufferIndex() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id ^ (id >>> 16)) & (BUFFER_COUNT - 1));
+    }
+
+    private void tryDrain() {
+        if (!lock.tryLock()) {
+            return; // Whoever holds the lock drains before releasing
+        }
+        try {
+            drainBuffers();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller must hold lock
+    private void drainBuffers() {
+        for (ReadBuffer<K> buffer : readBuffers) {
+            buffer.drainTo(this);
+        }
+    }
+
+    // Caller must hold lock
+    private void applyAccess(K key) {
+        Node<K> node = nodeMap.get(key);
+        if (node != null) {
+            moveToFront(node);
+        }
+    }
+
+    private void addToFront(K key) {
+        Node<K> node = new Node<>(key);
+        linkFirst(node);
+        nodeMap.put(key, node);
+    }
+
+    private void moveToFront(Node<K> node) {
+        unlink(node);
+        linkFirst(node);
+    }
+
+    private void linkFirst(Node<K> node) {
+        node.next = head.next;
+        node.prev = head;
+        head.next.prev = node;
+        head.next = node;
+    }
+
+    private void unlink(Node<K> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+    }
+
+    /**
+     * Bounded multi producer, single consumer ring. Producers claim a slot with
+     * a CAS on writeCounter; the consumer runs under the policy lock.
+     */
+    private static class ReadBuffer<K> {
+        private static final int MASK = BUFFER_SIZE - 1;
+        private final AtomicReferenceArray<K> slots = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+
+        /**
+         * Returns the number of pending entries after the offer, or -1 if the
+         * buffer was full and the access was dropped.
+         */
+        int offer(K key) {
+            long write = writeCounter.get();
+            long size = write - readCounter;
+            if (size >= BUFFER_SIZE) {
+                return -1;
+            }
+            if (!writeCounter.compareAndSet(write, write + 1)) {
+                return -1; // Lost the race to another reader, drop this access
+            }
+            slots.lazySet((int) (write & MASK), key);
+            return (int) size + 1;
+        }
+
+        void drainTo(BufferedLRUEvictionPolicy<K> policy) {
+            long read = readCounter;
+            long write = writeCounter.get();
+            while (read < write) {
+                int index = (int) (read & MASK);
+                K key = slots.get(index);
+                if (key == null) {
+                    break; // Slot claimed but not yet published
+                }
+                slots.lazySet(index, null);
+                policy.applyAccess(key);
+                read++;
+            }
+            readCounter = read;
+        }
+    }
+}
@@ -1,21 +1,14 @@
 package cache.src.eviction.lru;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import cache.src.eviction.IEvictionPolicy;
 
-class Node<K> {
-    K key;
-    Node<K> prev;
-    Node<K> next;
-
-    Node(K key) {
-        this.key = key;
-    }
-}
-
 public class LRUEvictionPolicy<K> implements IEvictionPolicy<K> {
     private Node<K> head;
     private Node<K> tail;
@@ -116,4 +109,19 @@ public class LRUEvictionPolicy<K> implements IEvictionPolicy<K> {
             rwLock.writeLock().unlock();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<K> hottest(int limit) {
+        rwLock.readLock().lock();
+        try {
+            List<K> keys = new ArrayList<>(Math.min(limit, nodeMap.size()));
+            for (Node<K> node = head.next; node != tail && keys.size() < limit; node = node.next) {
+                keys.add(node.key);
+            }
+            Collections.reverse(keys);
+            return keys;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package cache.src.eviction.lru;
+
+/**
+ * Entry of the doubly linked recency list shared by the LRU policies.
+ */
+class Node<K> {
+    K key;
+    Node<K> prev;
+    Node<K> next;
+
+    Node(K key) {
+        this.key = key;
+    }
+}
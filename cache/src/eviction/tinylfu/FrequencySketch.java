@@ -0,0 +1,117 @@
+package cache.src.eviction.tinylfu;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch with 4 bit counters packed sixteen to a long.
+ * Every key maps to one counter in each of four rows. Once the number of
+ * increments reaches the sample size, all counters are halved so old
+ * popularity fades out.
+ * Counters are updated with a CAS per word, so increments and reads need no
+ * external lock. Halving is done by one thread at a time and may lose the
+ * odd concurrent increment, which the sketch tolerates anyway.
+ */
+public class FrequencySketch<K> {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    public FrequencySketch(int expectedSize) {
+        this(expectedSize, 10 * Math.max(expectedSize, 16));
+    }
+
+    /**
+     * sampleSize is the number of increments after which every counter is
+     * halved, i.e. the length of the window frequencies are measured over.
+     */
+    public FrequencySketch(int expectedSize, int sampleSize) {
+        int size = tableSizeFor(Math.max(expectedSize, 16));
+        this.table = new AtomicLongArray(size);
+        this.tableMask = size - 1;
+        this.sampleSize = Math.max(sampleSize, 1);
+    }
+
+    public int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, counterAt(indexOf(hash, row), counterOffset(hash, row)));
+        }
+        return frequency;
+    }
+
+    public void increment(K key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            added |= incrementAt(indexOf(hash, row), counterOffset(hash, row));
+        }
+        if (added && additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    // Whether the table is already as large as one built for expectedSize
+    boolean covers(int expectedSize) {
+        return tableSizeFor(Math.max(expectedSize, 16)) <= table.length();
+    }
+
+    private int counterAt(int index, int offset) {
+        return (int) ((table.get(index) >>> (offset << 2)) & 0xfL);
+    }
+
+    private boolean incrementAt(int index, int offset) {
+        int shift = offset << 2;
+        long mask = 0xfL << shift;
+        while (true) {
+            long word = table.get(index);
+            if ((word & mask) == mask) {
+                return false; // Saturated
+            }
+            if (table.compareAndSet(index, word, word + (1L << shift))) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void reset() {
+        if (additions.get() < sampleSize) {
+            return; // Another thread already halved
+        }
+        for (int i = 0; i < table.length(); i++) {
+            long word;
+            do {
+                word = table.get(i);
+            } while (!table.compareAndSet(i, word, (word >>> 1) & RESET_MASK));
+        }
+        additions.updateAndGet(n -> n >>> 1);
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private int counterOffset(int hash, int row) {
+        return ((hash >>> (row << 3)) & 0x3) + (row << 2);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = Integer.highestOneBit(n - 1) << 1;
+        return size <= 0 ? 1 << 30 : size;
+    }
+}
@@ -0,0 +1,326 @@
+package cache.src.eviction.tinylfu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cache.src.eviction.IEvictionPolicy;
+
+/**
+ * Window TinyLFU.
+ * New keys enter a small LRU window. When the window overflows its oldest key
+ * becomes a candidate for the main region, a segmented LRU split into
+ * probation and protected. The candidate only gets in if the frequency sketch
+ * says it is hotter than the probation victim, otherwise the candidate itself
+ * is evicted. Keys hit while in probation move to protected.
+ *
+ * With a window of 0% every new key has to beat the main victim straight
+ * away, in which case {@link #admit} rejects cold inserts before they reach
+ * the CacheLevel.
+ */
+public class WTinyLFUEvictionPolicy<K> implements IEvictionPolicy<K> {
+    private static final double DEFAULT_WINDOW_PERCENT = 0.01;
+    private static final double PROTECTED_PERCENT = 0.80;
+
+    private enum Region {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private static class Node<K> {
+        final K key;
+        Region region;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key, Region region) {
+            this.key = key;
+            this.region = region;
+        }
+    }
+
+    private static class AccessOrderList<K> {
+        final Node<K> head = new Node<>(null, null);
+        final Node<K> tail = new Node<>(null, null);
+        int size;
+
+        AccessOrderList() {
+            head.next = tail;
+            tail.prev = head;
+        }
+
+        void addFirst(Node<K> node) {
+            node.next = head.next;
+            node.prev = head;
+            head.next.prev = node;
+            head.next = node;
+            size++;
+        }
+
+        void remove(Node<K> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            size--;
+        }
+
+        void moveToFront(Node<K> node) {
+            remove(node);
+            addFirst(node);
+        }
+
+        Node<K> last() {
+            return tail.prev == head ? null : tail.prev;
+        }
+    }
+
+    private final double windowPercent;
+    private int capacity;
+    private int windowCapacity;
+    private int protectedCapacity;
+    // Replaced when the capacity grows, read without the lock by onAccess
+    private volatile FrequencySketch<K> sketch;
+    private final Map<K, Node<K>> nodeMap;
+    private final AccessOrderList<K> window;
+    private final AccessOrderList<K> probation;
+    private final AccessOrderList<K> protectedList;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public WTinyLFUEvictionPolicy(int capacity) {
+        this(capacity, DEFAULT_WINDOW_PERCENT);
+    }
+
+    public WTinyLFUEvictionPolicy(int capacity, double windowPercent) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (windowPercent < 0 || windowPercent >= 1) {
+            throw new IllegalArgumentException("Window percent must be in [0, 1)");
+        }
+        this.windowPercent = windowPercent;
+        sizeRegions(capacity);
+        this.sketch = new FrequencySketch<>(capacity);
+        this.nodeMap = new HashMap<>();
+        this.window = new AccessOrderList<>();
+        this.probation = new AccessOrderList<>();
+        this.protectedList = new AccessOrderList<>();
+    }
+
+    @Override
+    public boolean admit(K candidate) {
+        lock.lock();
+        try {
+            sketch.increment(candidate);
+            if (windowCapacity > 0 || nodeMap.size() < capacity) {
+                return true;
+            }
+            Node<K> victim = mainVictim();
+            return victim == null || sketch.frequency(candidate) > sketch.frequency(victim.key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onAccess(K key) {
+        // The sketch is lock free, so frequency is always recorded; only the
+        // reorder is skipped when another thread holds the lock
+        sketch.increment(key);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            Node<K> node = nodeMap.get(key);
+            if (node == null) {
+                return;
+            }
+            switch (node.region) {
+                case WINDOW:
+                    window.moveToFront(node);
+                    break;
+                case PROBATION:
+                    probation.remove(node);
+                    node.region = Region.PROTECTED;
+                    protectedList.addFirst(node);
+                    demoteProtectedOverflow();
+                    break;
+                case PROTECTED:
+                    protectedList.moveToFront(node);
+                    break;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onInsert(K key) {
+        lock.lock();
+        try {
+            if (nodeMap.containsKey(key)) {
+                onAccess(key);
+                return;
+            }
+            if (windowCapacity == 0) {
+                insert(key, Region.PROBATION, probation);
+                return;
+            }
+            insert(key, Region.WINDOW, window);
+            // Window overflow without an eviction means the level still has
+            // room, so the window's oldest key moves to main for free
+            spillWindowOverflow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onRemove(K key) {
+        lock.lock();
+        try {
+            Node<K> node = nodeMap.remove(key);
+            if (node != null) {
+                listFor(node.region).remove(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public K evict() {
+        lock.lock();
+        try {
+            Node<K> candidate = window.size >= windowCapacity ? window.last() : null;
+            Node<K> victim = mainVictim();
+            Node<K> evicted;
+            if (candidate == null) {
+                evicted = victim != null ? victim : window.last();
+            } else if (victim == null) {
+                evicted = candidate;
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                // Candidate wins, it moves to probation and the victim leaves
+                window.remove(candidate);
+                candidate.region = Region.PROBATION;
+                probation.addFirst(candidate);
+                evicted = victim;
+            } else {
+                evicted = candidate;
+            }
+            if (evicted == null) {
+                return null;
+            }
+            listFor(evicted.region).remove(evicted);
+            nodeMap.remove(evicted.key);
+            return evicted.key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Resizes the window and protected regions to the new capacity, moving
+     * overflow down to probation. The sketch is only replaced when the new
+     * capacity needs a larger table; the new one starts empty and relearns
+     * frequencies, while shrinking keeps the old one.
+     */
+    @Override
+    public void setCapacity(long newCapacity) {
+        int capped = (int) Math.min(Math.max(newCapacity, 1), Integer.MAX_VALUE);
+        lock.lock();
+        try {
+            if (!sketch.covers(capped)) {
+                sketch = new FrequencySketch<>(capped);
+            }
+            sizeRegions(capped);
+            spillWindowOverflow();
+            demoteProtectedOverflow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getCapacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Protected keys rank hottest, then the window, then probation, each list
+     * from its most recent end. Approximate: the real victim also depends on
+     * the sketch.
+     */
+    @Override
+    public List<K> hottest(int limit) {
+        lock.lock();
+        try {
+            List<K> keys = new ArrayList<>(Math.min(limit, nodeMap.size()));
+            collectRecent(protectedList, keys, limit);
+            collectRecent(window, keys, limit);
+            collectRecent(probation, keys, limit);
+            Collections.reverse(keys);
+            return keys;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <K> void collectRecent(AccessOrderList<K> list, List<K> keys, int limit) {
+        for (Node<K> node = list.head.next; node != list.tail && keys.size() < limit; node = node.next) {
+            keys.add(node.key);
+        }
+    }
+
+    private void sizeRegions(int newCapacity) {
+        this.capacity = newCapacity;
+        int windowSize = (int) (newCapacity * windowPercent);
+        this.windowCapacity = windowPercent > 0 ? Math.max(1, windowSize) : 0;
+        this.protectedCapacity = (int) ((newCapacity - windowCapacity) * PROTECTED_PERCENT);
+    }
+
+    private void insert(K key, Region region, AccessOrderList<K> list) {
+        Node<K> node = new Node<>(key, region);
+        list.addFirst(node);
+        nodeMap.put(key, node);
+    }
+
+    private Node<K> mainVictim() {
+        Node<K> victim = probation.last();
+        return victim != null ? victim : protectedList.last();
+    }
+
+    private void spillWindowOverflow() {
+        while (window.size > windowCapacity) {
+            Node<K> node = window.last();
+            window.remove(node);
+            node.region = Region.PROBATION;
+            probation.addFirst(node);
+        }
+    }
+
+    private void demoteProtectedOverflow() {
+        while (protectedList.size > protectedCapacity) {
+            Node<K> node = protectedList.last();
+            protectedList.remove(node);
+            node.region = Region.PROBATION;
+            probation.addFirst(node);
+        }
+    }
+
+    private AccessOrderList<K> listFor(Region region) {
+        switch (region) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectedList;
+        }
+    }
+}
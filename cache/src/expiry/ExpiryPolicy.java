@@ -0,0 +1,71 @@
+package cache.src.expiry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per level expiry settings. An entry expires after write once it is older
+ * than the write duration, and after access once it was not read for the
+ * access duration, whichever comes first. Either can be disabled.
+ */
+public final class ExpiryPolicy {
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private static final ExpiryPolicy NONE = new ExpiryPolicy(NEVER, NEVER, Ticker.system());
+
+    private final long afterWriteNanos;
+    private final long afterAccessNanos;
+    private final Ticker ticker;
+
+    private ExpiryPolicy(long afterWriteNanos, long afterAccessNanos, Ticker ticker) {
+        this.afterWriteNanos = afterWriteNanos;
+        this.afterAccessNanos = afterAccessNanos;
+        this.ticker = ticker;
+    }
+
+    public static ExpiryPolicy none() {
+        return NONE;
+    }
+
+    public static ExpiryPolicy afterWrite(long duration, TimeUnit unit) {
+        return new ExpiryPolicy(toNanos(duration, unit), NEVER, Ticker.system());
+    }
+
+    public static ExpiryPolicy afterAccess(long duration, TimeUnit unit) {
+        return new ExpiryPolicy(NEVER, toNanos(duration, unit), Ticker.system());
+    }
+
+    public ExpiryPolicy andAfterWrite(long duration, TimeUnit unit) {
+        return new ExpiryPolicy(toNanos(duration, unit), afterAccessNanos, ticker);
+    }
+
+    public ExpiryPolicy andAfterAccess(long duration, TimeUnit unit) {
+        return new ExpiryPolicy(afterWriteNanos, toNanos(duration, unit), ticker);
+    }
+
+    public ExpiryPolicy withTicker(Ticker ticker) {
+        return new ExpiryPolicy(afterWriteNanos, afterAccessNanos, ticker);
+    }
+
+    public long getAfterWriteNanos() {
+        return afterWriteNanos;
+    }
+
+    public long getAfterAccessNanos() {
+        return afterAccessNanos;
+    }
+
+    public Ticker getTicker() {
+        return ticker;
+    }
+
+    public boolean expiresAfterAccess() {
+        return afterAccessNanos != NEVER;
+    }
+
+    private static long toNanos(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Expiry duration must be positive");
+        }
+        return unit.toNanos(duration);
+    }
+}
@@ -0,0 +1,13 @@
+package cache.src.expiry;
+
+/**
+ * Source of monotonic nanosecond time, replaceable in tests.
+ */
+@FunctionalInterface
+public interface Ticker {
+    long read();
+
+    static Ticker system() {
+        return System::nanoTime;
+    }
+}
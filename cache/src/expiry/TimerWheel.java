@@ -0,0 +1,209 @@
+package cache.src.expiry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for entry expiry.
+ * Each level is a ring of buckets whose span grows by powers of two (about a
+ * second, a minute, an hour, a day, then an overflow bucket). An entry lands
+ * in the coarsest-fitting bucket. When time passes a bucket it is drained:
+ * due entries expire, the rest cascade down to finer levels. Scheduling,
+ * rescheduling and removal are O(1), expiring is O(1) amortized per entry.
+ *
+ * Reads never take the lock. An access only bumps the node's volatile access
+ * deadline. The node then fires early from its old bucket and is rescheduled
+ * instead of expired.
+ */
+public class TimerWheel<K> {
+    private static final int[] BUCKETS = { 64, 64, 32, 4, 1 };
+    private static final long[] SPANS = {
+            1L << 30, // 1.07s
+            1L << 36, // 1.14m
+            1L << 42, // 1.22h
+            1L << 46, // 0.81d
+            1L << 48, // 3.26d
+            1L << 48 };
+    private static final int[] SHIFT = new int[SPANS.length];
+
+    static {
+        for (int i = 0; i < SPANS.length; i++) {
+            SHIFT[i] = Long.numberOfTrailingZeros(SPANS[i]);
+        }
+    }
+
+    static final class Node<K> {
+        final K key;
+        final long writeDeadline;
+        volatile long accessDeadline;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key, long writeDeadline, long accessDeadline) {
+            this.key = key;
+            this.writeDeadline = writeDeadline;
+            this.accessDeadline = accessDeadline;
+        }
+
+        long deadline() {
+            return Math.min(writeDeadline, accessDeadline);
+        }
+    }
+
+    private final Node<K>[][] wheel;
+    private final Map<K, Node<K>> nodes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long now) {
+        this.nanos = now;
+        this.nodes = new ConcurrentHashMap<>();
+        this.wheel = (Node<K>[][]) new Node<?>[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = (Node<K>[]) new Node<?>[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                Node<K> sentinel = new Node<>(null, ExpiryPolicy.NEVER, ExpiryPolicy.NEVER);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Schedules key with the given absolute deadlines, replacing any earlier schedule.
+     */
+    public void schedule(K key, long writeDeadline, long accessDeadline) {
+        Node<K> node = new Node<>(key, writeDeadline, accessDeadline);
+        lock.lock();
+        try {
+            Node<K> previous = nodes.put(key, node);
+            if (previous != null) {
+                unlink(previous);
+            }
+            link(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lock free access deadline bump, the node is moved lazily when its bucket fires.
+     */
+    public void touch(K key, long accessDeadline) {
+        Node<K> node = nodes.get(key);
+        if (node != null) {
+            node.accessDeadline = accessDeadline;
+        }
+    }
+
+    public boolean isExpired(K key, long now) {
+        Node<K> node = nodes.get(key);
+        return node != null && node.deadline() - now <= 0;
+    }
+
+    /**
+     * Nanoseconds until key expires, or {@link ExpiryPolicy#NEVER} if it is not scheduled.
+     */
+    public long remainingNanos(K key, long now) {
+        Node<K> node = nodes.get(key);
+        return node == null ? ExpiryPolicy.NEVER : Math.max(0, node.deadline() - now);
+    }
+
+    public void remove(K key) {
+        if (!nodes.containsKey(key)) {
+            return;
+        }
+        lock.lock();
+        try {
+            Node<K> node = nodes.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the wheel to now and passes every key that expired to onExpire.
+     */
+    public void advance(long now, Consumer<K> onExpire) {
+        lock.lock();
+        try {
+            long previous = nanos;
+            nanos = now;
+            for (int i = 0; i < SHIFT.length - 1; i++) {
+                long previousTicks = previous >>> SHIFT[i];
+                long currentTicks = now >>> SHIFT[i];
+                if (currentTicks - previousTicks <= 0) {
+                    break;
+                }
+                expire(i, previousTicks, currentTicks - previousTicks, now, onExpire);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller must hold lock
+    private void expire(int level, long previousTicks, long delta, long now, Consumer<K> onExpire) {
+        Node<K>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            Node<K> sentinel = buckets[i & mask];
+            Node<K> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node<K> next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.deadline() - now <= 0) {
+                    if (nodes.remove(node.key, node)) {
+                        onExpire.accept(node.key);
+                    }
+                } else {
+                    link(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    // Caller must hold lock
+    private void link(Node<K> node) {
+        Node<K> sentinel = findBucket(node.deadline());
+        node.next = sentinel;
+        node.prev = sentinel.prev;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    // Caller must hold lock
+    private void unlink(Node<K> node) {
+        if (node.next != null) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    private Node<K> findBucket(long deadline) {
+        long duration = deadline - nanos;
+        int last = BUCKETS.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = deadline >>> SHIFT[i];
+                return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+}
@@ -0,0 +1,31 @@
+package cache.src.invalidation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Transport for caches living in the same JVM, and for tests. Every bus
+ * sharing the instance receives every message, synchronously on the
+ * publishing thread.
+ */
+public class InProcessTransport implements InvalidationTransport {
+    private final List<Consumer<byte[]>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(byte[] message) {
+        for (Consumer<byte[]> listener : listeners) {
+            listener.accept(message);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<byte[]> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        listeners.clear();
+    }
+}
@@ -0,0 +1,199 @@
+package cache.src.invalidation;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import cache.src.offheap.Serializer;
+
+/**
+ * Broadcasts key invalidations to the other processes sharing a cache.
+ * Invalidated keys collect in a set and go out once per flush interval, so a
+ * key written a thousand times between flushes costs one entry in one
+ * message. A flush is split into as many messages as the transport's size
+ * limit requires.
+ *
+ * Message layout: [long senderId][int keyCount] then [int keyLength][key] per key.
+ * Messages carrying this bus's own sender id are ignored on receipt.
+ */
+public class InvalidationBus<K> implements AutoCloseable {
+    private static final int HEADER_BYTES = 8 + 4;
+
+    private final InvalidationTransport transport;
+    private final Serializer<K, ?> serializer;
+    private final long senderId;
+    private final Set<K> pending;
+    private final List<Consumer<Collection<K>>> listeners;
+    private final ScheduledExecutorService flusher;
+    private final LongAdder publishedMessages = new LongAdder();
+    private final LongAdder publishedKeys = new LongAdder();
+    private final LongAdder receivedKeys = new LongAdder();
+    private final LongAdder droppedKeys = new LongAdder();
+    // Last error that dropped invalidations, the flusher carries on after it
+    private volatile RuntimeException lastFailure;
+
+    public InvalidationBus(InvalidationTransport transport, Serializer<K, ?> serializer, long flushInterval,
+            TimeUnit unit) {
+        this.transport = transport;
+        this.serializer = serializer;
+        this.senderId = ThreadLocalRandom.current().nextLong();
+        this.pending = ConcurrentHashMap.newKeySet();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, unit.toMillis(flushInterval));
+        flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        transport.subscribe(this::receive);
+    }
+
+    /**
+     * Queues key for the next flush.
+     */
+    public void invalidate(K key) {
+        pending.add(key);
+    }
+
+    public void invalidateAll(Collection<K> keys) {
+        pending.addAll(keys);
+    }
+
+    /**
+     * Registers a callback for keys invalidated by other processes.
+     */
+    public void addListener(Consumer<Collection<K>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Publishes every pending invalidation now. Never throws: a key that
+     * cannot be serialized or a message the transport rejects is dropped,
+     * counted in {@link #getDroppedKeys()} and kept in
+     * {@link #getLastFailure()}, so the scheduled flusher keeps running.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int limit = transport.maxMessageBytes();
+        List<byte[]> batch = new ArrayList<>();
+        int batchBytes = HEADER_BYTES;
+        for (K key : new ArrayList<>(pending)) {
+            pending.remove(key);
+            byte[] keyBytes;
+            try {
+                keyBytes = serializer.serializeKey(key);
+            } catch (RuntimeException e) {
+                drop(1, e);
+                continue;
+            }
+            if (HEADER_BYTES + 4 + keyBytes.length > limit) {
+                continue; // Can never fit, the key is left to expire on the other side
+            }
+            if (batchBytes + 4 + keyBytes.length > limit) {
+                send(batch, batchBytes);
+                batch.clear();
+                batchBytes = HEADER_BYTES;
+            }
+            batch.add(keyBytes);
+            batchBytes += 4 + keyBytes.length;
+        }
+        if (!batch.isEmpty()) {
+            send(batch, batchBytes);
+        }
+    }
+
+    public long getPublishedMessages() {
+        return publishedMessages.sum();
+    }
+
+    public long getPublishedKeys() {
+        return publishedKeys.sum();
+    }
+
+    public long getReceivedKeys() {
+        return receivedKeys.sum();
+    }
+
+    public long getDroppedKeys() {
+        return droppedKeys.sum();
+    }
+
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Publishes what is pending and stops the flusher. The transport is
+     * closed too, since the bus owns it.
+     */
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+        transport.close();
+    }
+
+    private void send(List<byte[]> keys, int messageBytes) {
+        ByteBuffer message = ByteBuffer.allocate(messageBytes);
+        message.putLong(senderId).putInt(keys.size());
+        for (byte[] key : keys) {
+            message.putInt(key.length).put(key);
+        }
+        try {
+            transport.publish(message.array());
+        } catch (RuntimeException e) {
+            drop(keys.size(), e);
+            return;
+        }
+        publishedMessages.increment();
+        publishedKeys.add(keys.size());
+    }
+
+    private void drop(int keyCount, RuntimeException cause) {
+        droppedKeys.add(keyCount);
+        lastFailure = cause;
+    }
+
+    private void receive(byte[] bytes) {
+        ByteBuffer message = ByteBuffer.wrap(bytes);
+        List<K> keys;
+        try {
+            if (message.getLong() == senderId) {
+                return;
+            }
+            int count = message.getInt();
+            keys = new ArrayList<>(Math.max(0, Math.min(count, bytes.length / 4)));
+            for (int i = 0; i < count; i++) {
+                int length = message.getInt();
+                ByteBuffer key = message.slice();
+                key.limit(length);
+                message.position(message.position() + length);
+                keys.add(serializer.deserializeKey(key));
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return; // Truncated or foreign message
+        }
+        receivedKeys.add(keys.size());
+        for (Consumer<Collection<K>> listener : listeners) {
+            try {
+                listener.accept(keys);
+            } catch (RuntimeException e) {
+                lastFailure = e; // The other listeners still get the keys
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package cache.src.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries encoded invalidation batches between processes. A transport only
+ * moves opaque messages; {@link InvalidationBus} does the encoding,
+ * coalescing and filtering of its own messages.
+ *
+ * Delivery is best effort. A lost message leaves a stale entry until it is
+ * evicted or expires, which is why local levels should still have a TTL.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+    void publish(byte[] message);
+
+    void subscribe(Consumer<byte[]> listener);
+
+    /**
+     * Largest message the transport can carry in one piece.
+     */
+    default int maxMessageBytes() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    void close();
+}
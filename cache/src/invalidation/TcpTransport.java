@@ -0,0 +1,192 @@
+package cache.src.invalidation;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Sends length-prefixed messages over one TCP connection per peer. Nothing
+ * is lost while a connection is up. If the send to a peer fails, that
+ * message is dropped and the connection is reopened on the next publish.
+ * Connects time out after {@link #CONNECT_TIMEOUT_MILLIS}, and a peer that
+ * could not be reached is skipped for {@link #RECONNECT_BACKOFF_MILLIS}, so
+ * a dead peer cannot stall publishing to the others.
+ * Listens on the loopback interface only.
+ */
+public class TcpTransport implements InvalidationTransport {
+    public static final int CONNECT_TIMEOUT_MILLIS = 250;
+    public static final long RECONNECT_BACKOFF_MILLIS = 1_000;
+    private static final int MAX_MESSAGE_BYTES = 16 << 20;
+
+    private final ServerSocketChannel serverChannel;
+    private final Map<InetSocketAddress, SocketChannel> connections = new ConcurrentHashMap<>();
+    // System.nanoTime before which a peer that failed is not dialled again
+    private final Map<InetSocketAddress, Long> retryAt = new ConcurrentHashMap<>();
+    private final List<InetSocketAddress> peers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<byte[]>> listeners = new CopyOnWriteArrayList<>();
+    private final List<SocketChannel> accepted = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Listens on the given loopback port, 0 picks a free one.
+     */
+    public TcpTransport(int port) {
+        try {
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not listen for invalidations on port " + port, e);
+        }
+        Thread acceptor = new Thread(this::accept, "invalidation-tcp-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort());
+    }
+
+    public void addPeer(InetSocketAddress peer) {
+        peers.add(peer);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        ByteBuffer frame = ByteBuffer.allocate(4 + message.length);
+        frame.putInt(message.length).put(message).flip();
+        for (InetSocketAddress peer : peers) {
+            SocketChannel connection = connections.get(peer);
+            try {
+                if (connection == null || !connection.isOpen()) {
+                    Long retry = retryAt.get(peer);
+                    if (retry != null && System.nanoTime() - retry < 0) {
+                        continue; // Dropped, the peer failed recently
+                    }
+                    connection = connect(peer);
+                    connections.put(peer, connection);
+                }
+                // Publishes come from one flusher thread, but keep frames whole if that changes
+                synchronized (connection) {
+                    ByteBuffer view = frame.duplicate();
+                    while (view.hasRemaining()) {
+                        connection.write(view);
+                    }
+                }
+            } catch (IOException e) {
+                closeQuietly(connections.remove(peer));
+                retryAt.put(peer, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RECONNECT_BACKOFF_MILLIS));
+            }
+        }
+    }
+
+    private static SocketChannel connect(InetSocketAddress peer) throws IOException {
+        SocketChannel connection = SocketChannel.open();
+        try {
+            connection.socket().connect(peer, CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+        return connection;
+    }
+
+    @Override
+    public void subscribe(Consumer<byte[]> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public int maxMessageBytes() {
+        return MAX_MESSAGE_BYTES;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(serverChannel);
+        for (SocketChannel connection : connections.values()) {
+            closeQuietly(connection);
+        }
+        for (SocketChannel connection : accepted) {
+            closeQuietly(connection);
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                SocketChannel connection = serverChannel.accept();
+                accepted.add(connection);
+                Thread reader = new Thread(() -> read(connection), "invalidation-tcp-reader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                return; // Closed
+            }
+        }
+    }
+
+    private void read(SocketChannel connection) {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try {
+            while (true) {
+                header.clear();
+                readFully(connection, header);
+                int length = header.getInt(0);
+                if (length < 0 || length > MAX_MESSAGE_BYTES) {
+                    throw new IOException("Malformed invalidation frame");
+                }
+                byte[] message = new byte[length];
+                readFully(connection, ByteBuffer.wrap(message));
+                for (Consumer<byte[]> listener : listeners) {
+                    try {
+                        listener.accept(message);
+                    } catch (RuntimeException e) {
+                        // A failing listener must not stop this connection or the other listeners
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Peer went away or sent a malformed frame
+        } finally {
+            // Whatever ends the loop, a connection nobody reads must not stay open
+            accepted.remove(connection);
+            closeQuietly(connection);
+        }
+    }
+
+    private static void readFully(SocketChannel connection, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (connection.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+}
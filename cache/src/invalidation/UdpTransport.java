@@ -0,0 +1,108 @@
+package cache.src.invalidation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Sends each message as one datagram to every peer. Cheap and connectionless,
+ * but a datagram can be dropped, so it suits caches that also expire
+ * entries. Binds to the loopback interface only.
+ */
+public class UdpTransport implements InvalidationTransport {
+    // Stays below the 65507 byte UDP payload limit
+    private static final int MAX_DATAGRAM_BYTES = 60_000;
+
+    private final DatagramChannel channel;
+    private final List<InetSocketAddress> peers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<byte[]>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread receiver;
+
+    /**
+     * Binds to the given loopback port, 0 picks a free one.
+     */
+    public UdpTransport(int port) {
+        try {
+            this.channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not bind invalidation socket on port " + port, e);
+        }
+        this.receiver = new Thread(this::receive, "invalidation-udp-" + getPort());
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    public int getPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort());
+    }
+
+    public void addPeer(InetSocketAddress peer) {
+        peers.add(peer);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        for (InetSocketAddress peer : peers) {
+            try {
+                channel.send(ByteBuffer.wrap(message), peer);
+            } catch (IOException e) {
+                // Best effort, the other peers still get the message
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<byte[]> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public int maxMessageBytes() {
+        return MAX_DATAGRAM_BYTES;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Receiver exits on the closed channel
+        }
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+        while (true) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                byte[] message = new byte[buffer.remaining()];
+                buffer.get(message);
+                for (Consumer<byte[]> listener : listeners) {
+                    try {
+                        listener.accept(message);
+                    } catch (RuntimeException e) {
+                        // A failing listener must not stop the receiver or the other listeners
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                // Skip the bad datagram and keep listening
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package cache.src.loader;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non blocking variant of {@link CacheLoader}. The returned future completes
+ * when the backing store answers, no cache thread waits on it. Returning
+ * null instead of a future fails the load with a NullPointerException.
+ */
+@FunctionalInterface
+public interface AsyncCacheLoader<K, V> {
+    CompletableFuture<V> loadAsync(K key);
+}
@@ -0,0 +1,10 @@
+package cache.src.loader;
+
+/**
+ * Loads a value from the backing store on a cache miss.
+ * Returning null means the key does not exist and nothing is cached.
+ */
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+    V load(K key) throws Exception;
+}
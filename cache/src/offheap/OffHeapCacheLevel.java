@@ -0,0 +1,376 @@
+package cache.src.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import cache.src.core.ICacheLevel;
+import cache.src.stats.CacheStats;
+import cache.src.stats.StatsCounter;
+
+/**
+ * Cache level that keeps serialized entries in slab allocated off heap memory.
+ * The only heap state is an open addressing index of primitive arrays, so the
+ * number of entries does not add GC pressure.
+ *
+ * Entry layout inside a slot: [int keyLength][int valueLength][key][value].
+ *
+ * Capacity is in bytes. When a size class is full, entries of that class are
+ * evicted with a CLOCK sweep over the index until a slot frees up. If the
+ * class owns no slab at all, a slab with no live entries is moved to it, or
+ * failing that one slab is emptied and moved. Values
+ * larger than one slab are not cached.
+ *
+ * Unlike CacheLevel every operation is thread safe: reads share a read lock,
+ * writes take the write lock.
+ */
+public class OffHeapCacheLevel<K, V> implements ICacheLevel<K, V> {
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private static final int HEADER_BYTES = 8;
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int INITIAL_INDEX_SIZE = 1 << 10;
+
+    private final SlabAllocator allocator;
+    private final Serializer<K, V> serializer;
+    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private final StatsCounter statsCounter = new StatsCounter();
+
+    // Open addressing index, slot i holds addresses[i], hashes[i] and referenced[i]
+    private long[] addresses;
+    private int[] hashes;
+    private byte[] referenced;
+    private int size;
+    private int tombstones;
+    private int clockHand;
+    private long usedBytes;
+
+    public OffHeapCacheLevel(long capacityBytes, Serializer<K, V> serializer) {
+        this(SlabAllocator.direct(capacityBytes, DEFAULT_SLAB_SIZE), serializer);
+    }
+
+    public OffHeapCacheLevel(SlabAllocator allocator, Serializer<K, V> serializer) {
+        this.allocator = allocator;
+        this.serializer = serializer;
+        this.addresses = new long[INITIAL_INDEX_SIZE];
+        this.hashes = new int[INITIAL_INDEX_SIZE];
+        this.referenced = new byte[INITIAL_INDEX_SIZE];
+    }
+
+    @Override
+    public V get(K key) {
+        byte[] keyBytes = serializer.serializeKey(key);
+        int hash = hash(keyBytes);
+        rwLock.readLock().lock();
+        try {
+            return read(hash, keyBytes);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<K> keys) {
+        Map<K, V> found = new HashMap<>();
+        rwLock.readLock().lock();
+        try {
+            for (K key : keys) {
+                byte[] keyBytes = serializer.serializeKey(key);
+                V value = read(hash(keyBytes), keyBytes);
+                if (value != null) {
+                    found.put(key, value);
+                }
+            }
+        } finally {
+            rwLock.readLock().unlock();
+        }
+        return found;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        byte[] keyBytes = serializer.serializeKey(key);
+        byte[] valueBytes = serializer.serializeValue(value);
+        rwLock.writeLock().lock();
+        try {
+            write(keyBytes, valueBytes);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<K, V> entries) {
+        rwLock.writeLock().lock();
+        try {
+            for (Map.Entry<K, V> entry : entries.entrySet()) {
+                write(serializer.serializeKey(entry.getKey()), serializer.serializeValue(entry.getValue()));
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        byte[] keyBytes = serializer.serializeKey(key);
+        rwLock.writeLock().lock();
+        try {
+            delete(keyBytes);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<K> keys) {
+        rwLock.writeLock().lock();
+        try {
+            for (K key : keys) {
+                delete(serializer.serializeKey(key));
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        rwLock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    public long usedBytes() {
+        rwLock.readLock().lock();
+        try {
+            return usedBytes;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    public long capacityBytes() {
+        return allocator.capacityBytes();
+    }
+
+    // Caller must hold the read lock
+    private V read(int hash, byte[] keyBytes) {
+        int slot = find(hash, keyBytes);
+        if (slot < 0) {
+            statsCounter.recordMiss();
+            return null;
+        }
+        statsCounter.recordHit();
+        referenced[slot] = 1; // Benign race, CLOCK only needs a hint
+        long address = addresses[slot];
+        ByteBuffer view = allocator.buffer(address).duplicate();
+        int offset = allocator.offset(address);
+        int keyLength = view.getInt(offset);
+        int valueLength = view.getInt(offset + 4);
+        int valueStart = offset + HEADER_BYTES + keyLength;
+        view.limit(valueStart + valueLength).position(valueStart);
+        return serializer.deserializeValue(view);
+    }
+
+    // Caller must hold the write lock
+    private void write(byte[] keyBytes, byte[] valueBytes) {
+        int hash = hash(keyBytes);
+        int entrySize = HEADER_BYTES + keyBytes.length + valueBytes.length;
+        int existing = find(hash, keyBytes);
+        if (existing >= 0) {
+            long address = addresses[existing];
+            if (allocator.sizeClassOfAddress(address) == allocator.sizeClassOf(entrySize)) {
+                writeEntry(address, keyBytes, valueBytes);
+                referenced[existing] = 1;
+                return;
+            }
+            removeSlot(existing);
+        }
+        long address = allocateOrEvict(entrySize);
+        if (address == EMPTY) {
+            return; // Too large for a slab, or nothing of this size class to evict
+        }
+        writeEntry(address, keyBytes, valueBytes);
+        usedBytes += allocator.slotSize(address);
+        insert(hash, address);
+    }
+
+    // Caller must hold the write lock
+    private void delete(byte[] keyBytes) {
+        int slot = find(hash(keyBytes), keyBytes);
+        if (slot >= 0) {
+            removeSlot(slot);
+        }
+    }
+
+    private long allocateOrEvict(int entrySize) {
+        long address = allocator.allocate(entrySize);
+        if (address != EMPTY) {
+            return address;
+        }
+        int sizeClass = allocator.sizeClassOf(entrySize);
+        if (sizeClass < 0) {
+            return EMPTY;
+        }
+        // CLOCK sweep restricted to entries of the same size class. Two full
+        // turns are enough to clear every reference bit once.
+        int steps = addresses.length * 2;
+        while (steps-- > 0) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) & (addresses.length - 1);
+            long candidate = addresses[slot];
+            if (candidate == EMPTY || candidate == TOMBSTONE
+                    || allocator.sizeClassOfAddress(candidate) != sizeClass) {
+                continue;
+            }
+            if (referenced[slot] != 0) {
+                referenced[slot] = 0;
+                continue;
+            }
+            removeSlot(slot);
+            statsCounter.recordEviction();
+            return allocator.allocate(entrySize);
+        }
+        return reassignSlab(entrySize, sizeClass);
+    }
+
+    /**
+     * Nothing of the wanted size class is left to evict, every slab went to
+     * other classes. Hand over a slab whose entries are all gone, or else
+     * empty the slab under the clock hand.
+     */
+    private long reassignSlab(int entrySize, int sizeClass) {
+        int emptySlab = allocator.emptySlab();
+        if (emptySlab >= 0) {
+            allocator.reassign(emptySlab, sizeClass);
+            return allocator.allocate(entrySize);
+        }
+        for (int i = 0; i < addresses.length; i++) {
+            int slot = (clockHand + i) & (addresses.length - 1);
+            long candidate = addresses[slot];
+            if (candidate == EMPTY || candidate == TOMBSTONE) {
+                continue;
+            }
+            int slab = allocator.slabOf(candidate);
+            for (int j = 0; j < addresses.length; j++) {
+                long address = addresses[j];
+                if (address != EMPTY && address != TOMBSTONE && allocator.slabOf(address) == slab) {
+                    removeSlot(j);
+                    statsCounter.recordEviction();
+                }
+            }
+            allocator.reassign(slab, sizeClass);
+            return allocator.allocate(entrySize);
+        }
+        return EMPTY;
+    }
+
+    private void writeEntry(long address, byte[] keyBytes, byte[] valueBytes) {
+        ByteBuffer view = allocator.buffer(address).duplicate();
+        view.position(allocator.offset(address));
+        view.putInt(keyBytes.length);
+        view.putInt(valueBytes.length);
+        view.put(keyBytes);
+        view.put(valueBytes);
+    }
+
+    private int find(int hash, byte[] keyBytes) {
+        int mask = addresses.length - 1;
+        int slot = hash & mask;
+        while (addresses[slot] != EMPTY) {
+            if (addresses[slot] != TOMBSTONE && hashes[slot] == hash && keyEquals(addresses[slot], keyBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(long address, byte[] keyBytes) {
+        ByteBuffer buffer = allocator.buffer(address);
+        int offset = allocator.offset(address);
+        if (buffer.getInt(offset) != keyBytes.length) {
+            return false;
+        }
+        int keyStart = offset + HEADER_BYTES;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (buffer.get(keyStart + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int hash, long address) {
+        if ((size + tombstones + 1) * 2 > addresses.length) {
+            rehash(size * 4 > addresses.length ? addresses.length * 2 : addresses.length);
+        }
+        int mask = addresses.length - 1;
+        int slot = hash & mask;
+        while (addresses[slot] != EMPTY && addresses[slot] != TOMBSTONE) {
+            slot = (slot + 1) & mask;
+        }
+        if (addresses[slot] == TOMBSTONE) {
+            tombstones--;
+        }
+        addresses[slot] = address;
+        hashes[slot] = hash;
+        referenced[slot] = 0;
+        size++;
+    }
+
+    private void removeSlot(int slot) {
+        long address = addresses[slot];
+        usedBytes -= allocator.slotSize(address);
+        allocator.free(address);
+        addresses[slot] = TOMBSTONE;
+        referenced[slot] = 0;
+        size--;
+        tombstones++;
+    }
+
+    private void rehash(int newLength) {
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        byte[] oldReferenced = referenced;
+        addresses = new long[newLength];
+        hashes = new int[newLength];
+        referenced = new byte[newLength];
+        tombstones = 0;
+        clockHand = 0;
+        int mask = newLength - 1;
+        for (int i = 0; i < oldAddresses.length; i++) {
+            long address = oldAddresses[i];
+            if (address == EMPTY || address == TOMBSTONE) {
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (addresses[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            addresses[slot] = address;
+            hashes[slot] = oldHashes[i];
+            referenced[slot] = oldReferenced[i];
+        }
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = 1;
+        for (byte b : bytes) {
+            h = 31 * h + b;
+        }
+        return h ^ (h >>> 16);
+    }
+}
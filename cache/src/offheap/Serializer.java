@@ -0,0 +1,18 @@
+package cache.src.offheap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts keys and values to and from the bytes stored off heap.
+ * Equal keys must serialize to identical bytes. Deserializers receive a
+ * buffer whose position and limit bound exactly the bytes written.
+ */
+public interface Serializer<K, V> {
+    byte[] serializeKey(K key);
+
+    K deserializeKey(ByteBuffer buffer);
+
+    byte[] serializeValue(V value);
+
+    V deserializeValue(ByteBuffer buffer);
+}
@@ -0,0 +1,199 @@
+package cache.src.offheap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Memcached style slab allocator over direct or memory mapped buffers.
+ * Memory is split into fixed size slabs. A slab is handed to a size class the
+ * first time that class runs out of slots, then carved into equal slots of
+ * that class. Size classes are powers of two from 64 bytes up to the slab size.
+ *
+ * Addresses pack (slab + 1) in the high 32 bits and the slot offset in the low
+ * 32 bits, so 0 is never a valid address.
+ * Not thread safe, callers guard it with their own lock.
+ */
+public class SlabAllocator {
+    private static final int MIN_SLOT_SHIFT = 6; // 64 bytes
+
+    private final ByteBuffer[] slabs;
+    private final int[] slabClass;
+    private final int[] liveSlots;
+    private final int slabSize;
+    private final LongStack[] freeSlots;
+    private int nextUnassignedSlab;
+
+    private SlabAllocator(ByteBuffer[] slabs, int slabSize) {
+        this.slabs = slabs;
+        this.slabSize = slabSize;
+        this.slabClass = new int[slabs.length];
+        this.liveSlots = new int[slabs.length];
+        int classCount = Integer.numberOfTrailingZeros(slabSize) - MIN_SLOT_SHIFT + 1;
+        this.freeSlots = new LongStack[classCount];
+        for (int i = 0; i < classCount; i++) {
+            freeSlots[i] = new LongStack();
+        }
+    }
+
+    public static SlabAllocator direct(long capacityBytes, int slabSize) {
+        int slabCount = slabCount(capacityBytes, slabSize);
+        ByteBuffer[] slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            slabs[i] = ByteBuffer.allocateDirect(slabSize);
+        }
+        return new SlabAllocator(slabs, slabSize);
+    }
+
+    public static SlabAllocator mapped(Path file, long capacityBytes, int slabSize) {
+        int slabCount = slabCount(capacityBytes, slabSize);
+        ByteBuffer[] slabs = new ByteBuffer[slabCount];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < slabCount; i++) {
+                slabs[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * slabSize, slabSize);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map slab file " + file, e);
+        }
+        return new SlabAllocator(slabs, slabSize);
+    }
+
+    private static int slabCount(long capacityBytes, int slabSize) {
+        if (Integer.bitCount(slabSize) != 1 || slabSize < (1 << MIN_SLOT_SHIFT)) {
+            throw new IllegalArgumentException("Slab size must be a power of two of at least 64 bytes");
+        }
+        long count = capacityBytes / slabSize;
+        if (count < 1 || count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity must hold between 1 and 2^31 slabs");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Returns an address for a slot of at least size bytes, or 0 if the size
+     * class has no free slot and no unassigned slab is left.
+     */
+    public long allocate(int size) {
+        int sizeClass = sizeClassOf(size);
+        if (sizeClass < 0) {
+            return 0;
+        }
+        LongStack free = freeSlots[sizeClass];
+        if (free.isEmpty()) {
+            if (nextUnassignedSlab == slabs.length) {
+                return 0;
+            }
+            carve(nextUnassignedSlab++, sizeClass);
+        }
+        long address = free.pop();
+        liveSlots[slabOf(address)]++;
+        return address;
+    }
+
+    public void free(long address) {
+        int slab = slabOf(address);
+        liveSlots[slab]--;
+        freeSlots[slabClass[slab]].push(address);
+    }
+
+    /**
+     * Returns an assigned slab with no live slot, or -1 if every assigned slab
+     * still holds at least one entry.
+     */
+    public int emptySlab() {
+        for (int slab = 0; slab < nextUnassignedSlab; slab++) {
+            if (liveSlots[slab] == 0) {
+                return slab;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves a slab to another size class. Every slot of the slab must already
+     * be free, the caller evicts its entries first.
+     */
+    public void reassign(int slab, int sizeClass) {
+        long base = (long) (slab + 1) << 32;
+        freeSlots[slabClass[slab]].removeIf(address -> (address & 0xffffffff00000000L) == base);
+        carve(slab, sizeClass);
+    }
+
+    public int slabOf(long address) {
+        return (int) (address >>> 32) - 1;
+    }
+
+    public int sizeClassOf(int size) {
+        if (size > slabSize) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_SLOT_SHIFT) - MIN_SLOT_SHIFT;
+    }
+
+    public int sizeClassOfAddress(long address) {
+        return slabClass[slabOf(address)];
+    }
+
+    public int slotSize(long address) {
+        return 1 << (slabClass[slabOf(address)] + MIN_SLOT_SHIFT);
+    }
+
+    public ByteBuffer buffer(long address) {
+        return slabs[slabOf(address)];
+    }
+
+    public int offset(long address) {
+        return (int) address;
+    }
+
+    public long capacityBytes() {
+        return (long) slabs.length * slabSize;
+    }
+
+    private void carve(int slab, int sizeClass) {
+        slabClass[slab] = sizeClass;
+        int slotSize = 1 << (sizeClass + MIN_SLOT_SHIFT);
+        long base = (long) (slab + 1) << 32;
+        // Push in reverse so slots are handed out in ascending offset order
+        for (int offset = slabSize - slotSize; offset >= 0; offset -= slotSize) {
+            freeSlots[sizeClass].push(base | offset);
+        }
+    }
+
+    private static class LongStack {
+        private long[] items = new long[16];
+        private int size;
+
+        void push(long value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        long pop() {
+            return items[--size];
+        }
+
+        void removeIf(LongPredicate predicate) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!predicate.test(items[i])) {
+                    items[kept++] = items[i];
+                }
+            }
+            size = kept;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package cache.src.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class StringSerializer implements Serializer<String, String> {
+
+    @Override
+    public byte[] serializeKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String deserializeKey(ByteBuffer buffer) {
+        return decode(buffer);
+    }
+
+    @Override
+    public byte[] serializeValue(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String deserializeValue(ByteBuffer buffer) {
+        return decode(buffer);
+    }
+
+    private String decode(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
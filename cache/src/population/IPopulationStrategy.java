@@ -4,4 +4,13 @@ import java.util.Set;
 
 public interface IPopulationStrategy {
     Set<Integer> targetLevels(int totalLevels, int currentLevel);
+
+    /**
+     * Called by MultiLevelCache for every hit below L1, with the key that was
+     * found. Strategies that decide per key, for example by how often it was
+     * read, override this. The default ignores the key.
+     */
+    default <K> Set<Integer> targetLevels(K key, int totalLevels, int currentLevel) {
+        return targetLevels(totalLevels, currentLevel);
+    }
 }
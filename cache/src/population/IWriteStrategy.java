@@ -0,0 +1,27 @@
+package cache.src.population;
+
+import java.util.Collections;
+import java.util.Set;
+
+public interface IWriteStrategy {
+    // Levels written synchronously, while the caller waits
+    Set<Integer> targetLevels(int totalLevels);
+
+    // Levels written later, in batches, by the write-behind queue
+    default Set<Integer> deferredLevels(int totalLevels) {
+        return Collections.emptySet();
+    }
+
+    default int deferredBatchSize() {
+        return 256;
+    }
+
+    default long deferredFlushIntervalMillis() {
+        return 50;
+    }
+
+    // Reload an entry in the background once its L1 lifetime drops below this, 0 disables
+    default long refreshAheadNanos() {
+        return 0;
+    }
+}
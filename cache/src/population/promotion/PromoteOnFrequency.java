@@ -0,0 +1,60 @@
+package cache.src.population.promotion;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cache.src.eviction.tinylfu.FrequencySketch;
+import cache.src.population.IPopulationStrategy;
+
+/**
+ * Promotes a key to all higher levels only once it has been hit at least
+ * hitsToPromote times below L1 within the recent window. A one-off read, like
+ * a scan, is served from the lower level and leaves L1 alone, so it cannot
+ * push out entries that are actually hot.
+ *
+ * Hits are counted in a 4 bit count-min sketch, a few bytes per tracked key.
+ * All counters are halved every windowSize hits, so old popularity fades out.
+ */
+public class PromoteOnFrequency implements IPopulationStrategy {
+    private static final int MAX_HITS = 15;
+
+    private final int hitsToPromote;
+    private final FrequencySketch<Object> sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PromoteToAllLowerLevels promoteToAll = new PromoteToAllLowerLevels();
+
+    /**
+     * @param hitsToPromote lower level hits needed before promotion, 1 to 15
+     * @param windowSize    lower level hits after which counts are halved
+     */
+    public PromoteOnFrequency(int hitsToPromote, int windowSize) {
+        if (hitsToPromote < 1 || hitsToPromote > MAX_HITS) {
+            throw new IllegalArgumentException("hitsToPromote must be between 1 and " + MAX_HITS);
+        }
+        this.hitsToPromote = hitsToPromote;
+        this.sketch = new FrequencySketch<>(windowSize, windowSize);
+    }
+
+    /**
+     * Without a key there is nothing to count, so this behaves like PromoteToAllLowerLevels.
+     */
+    @Override
+    public Set<Integer> targetLevels(int totalLevels, int currentLevel) {
+        return promoteToAll.targetLevels(totalLevels, currentLevel);
+    }
+
+    @Override
+    public <K> Set<Integer> targetLevels(K key, int totalLevels, int currentLevel) {
+        int frequency;
+        lock.lock();
+        try {
+            sketch.increment(key);
+            frequency = sketch.frequency(key);
+        } finally {
+            lock.unlock();
+        }
+        return frequency >= hitsToPromote ? promoteToAll.targetLevels(totalLevels, currentLevel)
+                : Collections.emptySet();
+    }
+}
@@ -0,0 +1,49 @@
+package cache.src.population.write;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import cache.src.population.IWriteStrategy;
+
+/**
+ * Wraps another write strategy and turns on refresh-ahead: a loader backed
+ * read that hits an entry close to expiry returns it and reloads it in the
+ * background, so hot keys never fall out of the cache.
+ */
+public class RefreshAhead implements IWriteStrategy {
+    private final IWriteStrategy delegate;
+    private final long refreshAheadNanos;
+
+    public RefreshAhead(IWriteStrategy delegate, long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Refresh window must be positive");
+        }
+        this.delegate = delegate;
+        this.refreshAheadNanos = unit.toNanos(window);
+    }
+
+    @Override
+    public Set<Integer> targetLevels(int totalLevels) {
+        return delegate.targetLevels(totalLevels);
+    }
+
+    @Override
+    public Set<Integer> deferredLevels(int totalLevels) {
+        return delegate.deferredLevels(totalLevels);
+    }
+
+    @Override
+    public int deferredBatchSize() {
+        return delegate.deferredBatchSize();
+    }
+
+    @Override
+    public long deferredFlushIntervalMillis() {
+        return delegate.deferredFlushIntervalMillis();
+    }
+
+    @Override
+    public long refreshAheadNanos() {
+        return refreshAheadNanos;
+    }
+}
@@ -0,0 +1,49 @@
+package cache.src.population.write;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import cache.src.population.IWriteStrategy;
+
+// L1 is written synchronously, deeper levels asynchronously in coalesced batches
+public class WriteBehind implements IWriteStrategy {
+    private final int batchSize;
+    private final long flushIntervalMillis;
+
+    public WriteBehind() {
+        this(256, 50, TimeUnit.MILLISECONDS);
+    }
+
+    public WriteBehind(int batchSize, long flushInterval, TimeUnit unit) {
+        if (batchSize <= 0 || flushInterval <= 0) {
+            throw new IllegalArgumentException("Batch size and flush interval must be positive");
+        }
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = Math.max(1, unit.toMillis(flushInterval));
+    }
+
+    @Override
+    public Set<Integer> targetLevels(int totalLevels) {
+        return Set.of(0);
+    }
+
+    @Override
+    public Set<Integer> deferredLevels(int totalLevels) {
+        Set<Integer> levels = new HashSet<>();
+        for (int i = 1; i < totalLevels; i++) {
+            levels.add(i);
+        }
+        return levels;
+    }
+
+    @Override
+    public int deferredBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public long deferredFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+}
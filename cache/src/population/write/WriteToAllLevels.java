@@ -0,0 +1,17 @@
+package cache.src.population.write;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import cache.src.population.IWriteStrategy;
+
+public class WriteToAllLevels implements IWriteStrategy {
+    @Override
+    public Set<Integer> targetLevels(int totalLevels) {
+        Set<Integer> levels = new HashSet<>();
+        for (int i = 0; i < totalLevels; i++) {
+            levels.add(i);
+        }
+        return levels;
+    }
+}
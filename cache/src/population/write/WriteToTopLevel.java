@@ -0,0 +1,13 @@
+package cache.src.population.write;
+
+import java.util.Set;
+
+import cache.src.population.IWriteStrategy;
+
+// Write-through to L1 only, lower levels are filled by promotion and loads
+public class WriteToTopLevel implements IWriteStrategy {
+    @Override
+    public Set<Integer> targetLevels(int totalLevels) {
+        return Set.of(0);
+    }
+}
@@ -0,0 +1,227 @@
+package cache.src.primitive;
+
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+import cache.src.stats.CacheStats;
+import cache.src.stats.StatsCounter;
+
+/**
+ * Count bounded cache level for primitive long keys. Nothing is boxed and no
+ * per entry node exists: entries live in parallel arrays indexed by an entry
+ * id, and an open addressing table of ints maps a key to its entry id.
+ *
+ * Eviction is CLOCK over the entry arrays. A hit only sets the entry's
+ * reference bit, so a get allocates nothing and takes no exclusive lock. Reads
+ * run under an optimistic StampedLock stamp and retry under the read lock only
+ * if a write overlapped. Writes take the write lock.
+ *
+ * All storage is allocated up front for the given capacity. Use
+ * {@link #asCacheLevel()} to plug the level into a MultiLevelCache.
+ */
+public class LongKeyCacheLevel<V> {
+    private static final int EMPTY = 0;
+
+    private final int capacity;
+    private final StampedLock lock = new StampedLock();
+    private final StatsCounter statsCounter = new StatsCounter();
+
+    // Entry arrays, entry i holds keys[i], values[i] and referenced[i]; values[i] is null when free
+    private final long[] keys;
+    private final Object[] values;
+    private final byte[] referenced;
+    private final int[] freeEntries;
+    private int freeCount;
+
+    // Open addressing table of entry id + 1, EMPTY marks an unused slot
+    private final int[] table;
+    private final int mask;
+    private final int shift;
+
+    private int size;
+    private int clockHand;
+
+    public LongKeyCacheLevel(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.referenced = new byte[capacity];
+        this.freeEntries = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            freeEntries[i] = capacity - 1 - i;
+        }
+        this.freeCount = capacity;
+        // At most half full, keeps linear probe chains short
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity - 1)) << 2;
+        this.table = new int[tableSize];
+        this.mask = tableSize - 1;
+        this.shift = 64 - Integer.numberOfTrailingZeros(tableSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        int entry = find(key);
+        Object value = entry < 0 ? null : values[entry];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                entry = find(key);
+                value = entry < 0 ? null : values[entry];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (value == null) {
+            statsCounter.recordMiss();
+            return null;
+        }
+        referenced[entry] = 1; // Benign race, CLOCK only needs a hint
+        statsCounter.recordHit();
+        return (V) value;
+    }
+
+    public void put(long key, V value) {
+        Objects.requireNonNull(value, "value");
+        long stamp = lock.writeLock();
+        try {
+            int entry = find(key);
+            if (entry >= 0) {
+                values[entry] = value;
+                referenced[entry] = 1;
+                return;
+            }
+            if (freeCount == 0) {
+                evict();
+            }
+            entry = freeEntries[--freeCount];
+            keys[entry] = key;
+            values[entry] = value;
+            referenced[entry] = 0;
+            int slot = home(key);
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(key);
+            if (slot >= 0) {
+                removeAt(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * View of this level as an ICacheLevel&lt;Long, V&gt;. Keys are unboxed at the
+     * boundary, the level itself still stores them as primitives.
+     */
+    public LongKeyCacheLevelAdapter<V> asCacheLevel() {
+        return new LongKeyCacheLevelAdapter<>(this);
+    }
+
+    // Entry id for key, or -1. Safe under an optimistic stamp: every index stays in range
+    private int find(long key) {
+        int slot = home(key);
+        for (int probes = 0; probes <= mask; probes++) {
+            int entry = table[slot] - 1;
+            if (entry < 0) {
+                return -1;
+            }
+            if (keys[entry] == key) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Caller must hold the write lock
+    private int findSlot(long key) {
+        int slot = home(key);
+        while (table[slot] != EMPTY) {
+            if (keys[table[slot] - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Caller must hold the write lock
+    private void evict() {
+        while (true) {
+            int entry = clockHand;
+            clockHand = clockHand + 1 == capacity ? 0 : clockHand + 1;
+            if (values[entry] == null) {
+                continue;
+            }
+            if (referenced[entry] != 0) {
+                referenced[entry] = 0;
+                continue;
+            }
+            removeAt(findSlot(keys[entry]));
+            statsCounter.recordEviction();
+            return;
+        }
+    }
+
+    /**
+     * Frees the entry in slot and closes the gap with backward shift
+     * deletion, so the table never needs tombstones.
+     * Caller must hold the write lock.
+     */
+    private void removeAt(int slot) {
+        int entry = table[slot] - 1;
+        values[entry] = null;
+        referenced[entry] = 0;
+        freeEntries[freeCount++] = entry;
+        size--;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (table[next] != EMPTY) {
+            int home = home(keys[table[next] - 1]);
+            // Move the entry back if the hole lies between its home slot and where it sits
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = EMPTY;
+    }
+
+    private int home(long key) {
+        // Fibonacci hashing, the high bits of the product are well mixed
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
@@ -0,0 +1,51 @@
+package cache.src.primitive;
+
+import cache.src.core.ICacheLevel;
+import cache.src.stats.CacheStats;
+
+/**
+ * Exposes a {@link LongKeyCacheLevel} as an ICacheLevel&lt;Long, V&gt; so it can
+ * sit in a MultiLevelCache next to the other levels. The level has no expiry
+ * support, so an entry promoted with a finite lifetime is not cached here:
+ * it would be served after it expired in the level it came from.
+ */
+public class LongKeyCacheLevelAdapter<V> implements ICacheLevel<Long, V> {
+    private final LongKeyCacheLevel<V> level;
+
+    public LongKeyCacheLevelAdapter(LongKeyCacheLevel<V> level) {
+        this.level = level;
+    }
+
+    @Override
+    public V get(Long key) {
+        return level.get(key);
+    }
+
+    @Override
+    public void put(Long key, V value) {
+        level.put(key, value);
+    }
+
+    @Override
+    public void put(Long key, V value, long maxLifetimeNanos) {
+        if (maxLifetimeNanos == Long.MAX_VALUE) {
+            level.put(key, value);
+        } else {
+            level.remove(key); // Drop any older copy, reads fall through to the level with the deadline
+        }
+    }
+
+    @Override
+    public void remove(Long key) {
+        level.remove(key);
+    }
+
+    @Override
+    public CacheStats stats() {
+        return level.stats();
+    }
+
+    public LongKeyCacheLevel<V> unwrap() {
+        return level;
+    }
+}
@@ -0,0 +1,223 @@
+package cache.src.remote;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import cache.src.core.CacheLevel;
+import cache.src.eviction.lru.LRUEvictionPolicy;
+
+/**
+ * Small embedded cache node speaking {@link Protocol} over NIO. One selector
+ * thread accepts connections, parses frames and answers them in order, so
+ * the store needs no locking. Entries are raw bytes in a CacheLevel bounded
+ * by total key plus value size and evicted LRU.
+ *
+ * Binds to the loopback interface only. Several instances in one JVM stand in
+ * for separate nodes in tests and benchmarks.
+ */
+public class CacheServer implements AutoCloseable {
+    private static final int READ_BUFFER_BYTES = 64 << 10;
+
+    private static final class Client {
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        final Deque<ByteBuffer> out = new ArrayDeque<>();
+    }
+
+    // ByteBuffer keys compare by content, wrapping the key bytes is enough
+    private final CacheLevel<ByteBuffer, byte[]> store;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread ioThread;
+    private volatile boolean running = true;
+
+    public CacheServer(long maxBytes) {
+        this(0, maxBytes);
+    }
+
+    /**
+     * Starts a node on the given loopback port, 0 picks a free one.
+     */
+    public CacheServer(int port, long maxBytes) {
+        this.store = new CacheLevel<>(maxBytes, (key, value) -> key.remaining() + value.length,
+                new LRUEvictionPolicy<>());
+        try {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start cache server on port " + port, e);
+        }
+        this.ioThread = new Thread(this::run, "cache-server-" + getPort());
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort());
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        disconnect(key); // One broken client must not stop the node
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cache server selector failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                disconnect(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Client());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Client client = (Client) key.attachment();
+        if (channel.read(client.in) < 0) {
+            disconnect(key);
+            return;
+        }
+        client.in.flip();
+        boolean grown = false;
+        while (client.in.remaining() >= 4) {
+            int length = client.in.getInt(client.in.position());
+            if (length < Protocol.REQUEST_HEADER_BYTES || length > Protocol.MAX_FRAME_BYTES) {
+                disconnect(key);
+                return;
+            }
+            if (client.in.remaining() < 4 + length) {
+                if (client.in.capacity() < 4 + length) {
+                    // Frame larger than the buffer, move the partial frame into one that fits
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    larger.put(client.in);
+                    client.in = larger;
+                    grown = true;
+                }
+                break;
+            }
+            client.in.getInt();
+            client.out.add(handle(client.in, length));
+        }
+        if (!grown) {
+            client.in.compact();
+        }
+        write(key);
+    }
+
+    // Consumes one request frame body and returns its response
+    private ByteBuffer handle(ByteBuffer in, int length) {
+        byte op = in.get();
+        long requestId = in.getLong();
+        int keyLength = in.getInt();
+        int valueLength = length - Protocol.REQUEST_HEADER_BYTES - keyLength;
+        if (keyLength < 0 || valueLength < 0) {
+            in.position(in.position() + length - Protocol.REQUEST_HEADER_BYTES);
+            return Protocol.response(requestId, Protocol.ERROR, null);
+        }
+        byte[] keyBytes = new byte[keyLength];
+        in.get(keyBytes);
+        ByteBuffer storeKey = ByteBuffer.wrap(keyBytes);
+        switch (op) {
+            case Protocol.GET: {
+                byte[] value = store.get(storeKey);
+                return Protocol.response(requestId, value == null ? Protocol.NOT_FOUND : Protocol.OK, value);
+            }
+            case Protocol.PUT: {
+                byte[] value = new byte[valueLength];
+                in.get(value);
+                store.put(storeKey, value);
+                return Protocol.response(requestId, Protocol.OK, null);
+            }
+            case Protocol.REMOVE:
+                store.remove(storeKey);
+                return Protocol.response(requestId, Protocol.OK, null);
+            default:
+                in.position(in.position() + valueLength);
+                return Protocol.response(requestId, Protocol.ERROR, null);
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Client client = (Client) key.attachment();
+        // Gathering write, every response from one read goes out in a single syscall
+        channel.write(client.out.toArray(new ByteBuffer[0]));
+        while (!client.out.isEmpty() && !client.out.peek().hasRemaining()) {
+            client.out.poll();
+        }
+        // Socket buffer full, resume when writable
+        key.interestOps(client.out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void disconnect(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Nothing left to clean up
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cache.src.remote;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring with virtual nodes. Every node is placed at
+ * virtualNodes points on a 64 bit ring, and a key belongs to the first point
+ * at or after its hash. Adding or removing a node only moves the keys
+ * between its points and their predecessors, about 1/N of the keyspace.
+ *
+ * Lookups binary search an immutable sorted array and take no lock.
+ * Membership changes rebuild the array and publish it through a volatile.
+ */
+public class ConsistentHashRing<N> {
+    private static final class Snapshot<N> {
+        final long[] points;
+        final List<N> owners;
+
+        Snapshot(long[] points, List<N> owners) {
+            this.points = points;
+            this.owners = owners;
+        }
+    }
+
+    private final int virtualNodes;
+    // Node -> its name, used to place its virtual points
+    private final Map<N, String> nodes = new LinkedHashMap<>();
+    private volatile Snapshot<N> snapshot = new Snapshot<>(new long[0], new ArrayList<>());
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Need at least one virtual node per node");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Adds node under a stable name. The name, not the object, decides where
+     * the node sits, so every process that uses the same names agrees on
+     * which node owns a key.
+     */
+    public synchronized void addNode(N node, String name) {
+        nodes.put(node, name);
+        rebuild();
+    }
+
+    public synchronized void removeNode(N node) {
+        if (nodes.remove(node) != null) {
+            rebuild();
+        }
+    }
+
+    public N nodeFor(byte[] key) {
+        Snapshot<N> current = snapshot;
+        if (current.points.length == 0) {
+            throw new IllegalStateException("Hash ring has no nodes");
+        }
+        int index = Arrays.binarySearch(current.points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (index == current.points.length) {
+            index = 0; // Wrap around the ring
+        }
+        return current.owners.get(index);
+    }
+
+    public synchronized int nodeCount() {
+        return nodes.size();
+    }
+
+    private void rebuild() {
+        TreeMap<Long, N> ring = new TreeMap<>();
+        for (Map.Entry<N, String> node : nodes.entrySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // On the rare collision the earlier node keeps the point
+                ring.putIfAbsent(hash((node.getValue() + "#" + i).getBytes(StandardCharsets.UTF_8)), node.getKey());
+            }
+        }
+        long[] points = new long[ring.size()];
+        List<N> owners = new ArrayList<>(ring.size());
+        int i = 0;
+        for (Map.Entry<Long, N> point : ring.entrySet()) {
+            points[i++] = point.getKey();
+            owners.add(point.getValue());
+        }
+        snapshot = new Snapshot<>(points, owners);
+    }
+
+    // 64 bit FNV-1a finished with the MurmurHash3 mixer so nearby inputs spread over the ring
+    static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,170 @@
+package cache.src.remote;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One pipelined connection to a {@link CacheServer}. Any number of threads
+ * may send at once; each request is written under a short lock and its
+ * future is queued in send order. A reader thread completes the futures as
+ * responses arrive, which the server sends in the same order. No caller ever
+ * waits for another caller's round trip.
+ *
+ * A failed connection fails every pending and later request.
+ */
+class PeerConnection implements AutoCloseable {
+    private static final class Pending {
+        final long requestId;
+        final CompletableFuture<byte[]> future;
+
+        Pending(long requestId, CompletableFuture<byte[]> future) {
+            this.requestId = requestId;
+            this.future = future;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final SocketChannel channel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Thread reader;
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+    PeerConnection(InetSocketAddress address, int connectTimeoutMillis) {
+        this.address = address;
+        SocketChannel opened = null;
+        try {
+            opened = SocketChannel.open();
+            opened.socket().connect(address, connectTimeoutMillis);
+            opened.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            closeQuietly(opened);
+            throw new UncheckedIOException("Could not connect to cache peer " + address, e);
+        }
+        this.channel = opened;
+        this.reader = new Thread(this::readResponses, "cache-peer-" + address.getPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Sends one request. The future completes with the value, null when the
+     * key was not found, or an empty array for acknowledged writes.
+     */
+    CompletableFuture<byte[]> send(byte op, byte[] key, byte[] value) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        long requestId = nextRequestId.incrementAndGet();
+        ByteBuffer frame = Protocol.request(op, requestId, key, value);
+        writeLock.lock();
+        try {
+            // Queue before writing so the reader can never see a response without its future
+            pending.add(new Pending(requestId, future));
+            while (failure.get() == null && frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            writeLock.unlock();
+        }
+        if (failure.get() != null) {
+            failPending(); // Raced with a failure that drained the queue before our add
+        }
+        return future;
+    }
+
+    InetSocketAddress address() {
+        return address;
+    }
+
+    boolean isOpen() {
+        return failure.get() == null;
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Connection to " + address + " closed"));
+    }
+
+    private void readResponses() {
+        ByteBuffer header = ByteBuffer.allocate(4 + Protocol.RESPONSE_HEADER_BYTES);
+        try {
+            while (true) {
+                header.clear();
+                readFully(header);
+                header.flip();
+                int length = header.getInt();
+                long requestId = header.getLong();
+                byte status = header.get();
+                int valueLength = length - Protocol.RESPONSE_HEADER_BYTES;
+                if (valueLength < 0 || length > Protocol.MAX_FRAME_BYTES) {
+                    throw new IOException("Malformed response frame from " + address);
+                }
+                byte[] value = new byte[valueLength];
+                readFully(ByteBuffer.wrap(value));
+                Pending request = pending.poll();
+                if (request == null || request.requestId != requestId) {
+                    throw new IOException("Out of order response from " + address);
+                }
+                if (status == Protocol.OK) {
+                    request.future.complete(value);
+                } else if (status == Protocol.NOT_FOUND) {
+                    request.future.complete(null);
+                } else {
+                    request.future.completeExceptionally(new IOException("Cache peer " + address
+                            + " rejected request " + requestId));
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Cache peer " + address + " closed the connection");
+            }
+        }
+    }
+
+    // Lock free so it can interrupt a writer blocked on a dead peer by closing the channel
+    private void fail(IOException cause) {
+        failure.compareAndSet(null, cause);
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+        failPending();
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Never connected
+        }
+    }
+
+    private void failPending() {
+        Pending request;
+        while ((request = pending.poll()) != null) {
+            request.future.completeExceptionally(failure.get());
+        }
+    }
+}
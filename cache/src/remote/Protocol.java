@@ -0,0 +1,54 @@
+package cache.src.remote;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format shared by {@link CacheServer} and {@link PeerConnection}.
+ * Every frame starts with its length, excluding the length field itself.
+ *
+ * Request:  [int length][byte op][long requestId][int keyLength][key][value]
+ * Response: [int length][long requestId][byte status][value]
+ *
+ * The value runs to the end of the frame and is empty for GET, REMOVE and
+ * write acknowledgements. The server answers a connection's requests in the
+ * order it received them, so a client may pipeline without waiting.
+ */
+final class Protocol {
+    static final byte GET = 1;
+    static final byte PUT = 2;
+    static final byte REMOVE = 3;
+
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte ERROR = 2;
+
+    static final int REQUEST_HEADER_BYTES = 1 + 8 + 4;
+    static final int RESPONSE_HEADER_BYTES = 8 + 1;
+    static final int MAX_FRAME_BYTES = 64 << 20;
+
+    private Protocol() {
+    }
+
+    static ByteBuffer request(byte op, long requestId, byte[] key, byte[] value) {
+        int valueLength = value == null ? 0 : value.length;
+        int length = REQUEST_HEADER_BYTES + key.length + valueLength;
+        ByteBuffer frame = ByteBuffer.allocate(4 + length);
+        frame.putInt(length).put(op).putLong(requestId).putInt(key.length).put(key);
+        if (value != null) {
+            frame.put(value);
+        }
+        frame.flip();
+        return frame;
+    }
+
+    static ByteBuffer response(long requestId, byte status, byte[] value) {
+        int valueLength = value == null ? 0 : value.length;
+        ByteBuffer frame = ByteBuffer.allocate(4 + RESPONSE_HEADER_BYTES + valueLength);
+        frame.putInt(RESPONSE_HEADER_BYTES + valueLength).putLong(requestId).put(status);
+        if (value != null) {
+            frame.put(value);
+        }
+        frame.flip();
+        return frame;
+    }
+}
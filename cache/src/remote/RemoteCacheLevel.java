@@ -0,0 +1,220 @@
+package cache.src.remote;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import cache.src.core.ICacheLevel;
+import cache.src.offheap.Serializer;
+
+/**
+ * Cache level shared by several processes, backed by a set of
+ * {@link CacheServer} nodes. Keys are placed on nodes with a consistent hash
+ * ring over their serialized bytes, so every process that lists the same
+ * peers agrees on where a key lives.
+ *
+ * Each peer gets one pipelined connection. Single key calls wait only for
+ * their own response; bulk calls send every request first and then collect
+ * the answers, so a batch costs about one round trip per node.
+ *
+ * The tier is best effort like any cache: an unreachable peer or a timeout
+ * reads as a miss and drops the write. A broken connection is reopened on
+ * the next call to that peer by one caller, with the request timeout as the
+ * connect timeout; other callers read a miss meanwhile instead of queueing
+ * behind the connect. A peer that refused or timed out is not dialled again
+ * for {@link #RECONNECT_BACKOFF_MILLIS}.
+ */
+public class RemoteCacheLevel<K, V> implements ICacheLevel<K, V>, AutoCloseable {
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 1_000;
+    public static final long RECONNECT_BACKOFF_MILLIS = 500;
+
+    private final Serializer<K, V> serializer;
+    private final ConsistentHashRing<InetSocketAddress> ring;
+    private final Map<InetSocketAddress, PeerConnection> connections;
+    // Peers some thread is currently connecting to
+    private final Set<InetSocketAddress> connecting = ConcurrentHashMap.newKeySet();
+    // System.nanoTime before which a peer that failed to connect is not retried
+    private final Map<InetSocketAddress, Long> retryAt = new ConcurrentHashMap<>();
+    private final long timeoutNanos;
+    private final int connectTimeoutMillis;
+    private volatile boolean closed;
+
+    public RemoteCacheLevel(List<InetSocketAddress> peers, Serializer<K, V> serializer) {
+        this(peers, serializer, DEFAULT_VIRTUAL_NODES, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public RemoteCacheLevel(List<InetSocketAddress> peers, Serializer<K, V> serializer, int virtualNodes,
+            long timeout, TimeUnit unit) {
+        if (peers.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one peer");
+        }
+        this.serializer = serializer;
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        this.connections = new ConcurrentHashMap<>();
+        this.timeoutNanos = unit.toNanos(timeout);
+        // Socket connect treats 0 as no timeout
+        this.connectTimeoutMillis = (int) Math.max(1, Math.min(unit.toMillis(timeout), Integer.MAX_VALUE));
+        for (InetSocketAddress peer : peers) {
+            addPeer(peer);
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        byte[] keyBytes = serializer.serializeKey(key);
+        byte[] value = await(send(Protocol.GET, keyBytes, null), System.nanoTime() + timeoutNanos);
+        return value == null ? null : serializer.deserializeValue(ByteBuffer.wrap(value));
+    }
+
+    @Override
+    public void put(K key, V value) {
+        byte[] keyBytes = serializer.serializeKey(key);
+        await(send(Protocol.PUT, keyBytes, serializer.serializeValue(value)), System.nanoTime() + timeoutNanos);
+    }
+
+    @Override
+    public void remove(K key) {
+        byte[] keyBytes = serializer.serializeKey(key);
+        await(send(Protocol.REMOVE, keyBytes, null), System.nanoTime() + timeoutNanos);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<K> keys) {
+        Map<K, CompletableFuture<byte[]>> responses = new LinkedHashMap<>();
+        for (K key : keys) {
+            responses.put(key, send(Protocol.GET, serializer.serializeKey(key), null));
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        Map<K, V> found = new HashMap<>();
+        for (Map.Entry<K, CompletableFuture<byte[]>> response : responses.entrySet()) {
+            byte[] value = await(response.getValue(), deadline);
+            if (value != null) {
+                found.put(response.getKey(), serializer.deserializeValue(ByteBuffer.wrap(value)));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void putAll(Map<K, V> entries) {
+        List<CompletableFuture<byte[]>> acks = new ArrayList<>(entries.size());
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            acks.add(send(Protocol.PUT, serializer.serializeKey(entry.getKey()),
+                    serializer.serializeValue(entry.getValue())));
+        }
+        awaitAll(acks);
+    }
+
+    @Override
+    public void removeAll(Collection<K> keys) {
+        List<CompletableFuture<byte[]>> acks = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            acks.add(send(Protocol.REMOVE, serializer.serializeKey(key), null));
+        }
+        awaitAll(acks);
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    /**
+     * Adds a node to the ring. About 1/N of the keys move to it and read as
+     * misses until they are written again.
+     */
+    public void addPeer(InetSocketAddress peer) {
+        ring.addNode(peer, peer.getHostString() + ":" + peer.getPort());
+    }
+
+    public void removePeer(InetSocketAddress peer) {
+        ring.removeNode(peer);
+        PeerConnection connection = connections.remove(peer);
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (PeerConnection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    private CompletableFuture<byte[]> send(byte op, byte[] keyBytes, byte[] valueBytes) {
+        InetSocketAddress peer = ring.nodeFor(keyBytes);
+        try {
+            return connectionTo(peer).send(op, keyBytes, valueBytes);
+        } catch (UncheckedIOException e) {
+            return CompletableFuture.failedFuture(e); // Peer down, the caller sees a miss
+        }
+    }
+
+    private PeerConnection connectionTo(InetSocketAddress peer) {
+        PeerConnection connection = connections.get(peer);
+        if (connection != null && connection.isOpen()) {
+            return connection;
+        }
+        Long retry = retryAt.get(peer);
+        if (retry != null && System.nanoTime() - retry < 0) {
+            throw unavailable(peer, "is backing off after a failed connect");
+        }
+        if (!connecting.add(peer)) {
+            throw unavailable(peer, "is being connected by another caller");
+        }
+        try {
+            PeerConnection fresh = new PeerConnection(peer, connectTimeoutMillis);
+            retryAt.remove(peer);
+            connections.put(peer, fresh);
+            if (closed) {
+                fresh.close(); // Raced with close(), which may already have swept the map
+            }
+            return fresh;
+        } catch (UncheckedIOException e) {
+            retryAt.put(peer, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RECONNECT_BACKOFF_MILLIS));
+            throw e;
+        } finally {
+            connecting.remove(peer);
+        }
+    }
+
+    private static UncheckedIOException unavailable(InetSocketAddress peer, String reason) {
+        return new UncheckedIOException(new IOException("Cache peer " + peer + " " + reason));
+    }
+
+    private void awaitAll(List<CompletableFuture<byte[]>> acks) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (CompletableFuture<byte[]> ack : acks) {
+            await(ack, deadline);
+        }
+    }
+
+    // Response bytes, or null on a miss, failure or timeout
+    private static byte[] await(CompletableFuture<byte[]> response, long deadline) {
+        try {
+            return response.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+}
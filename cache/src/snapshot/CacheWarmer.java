@@ -0,0 +1,125 @@
+package cache.src.snapshot;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cache.src.offheap.Serializer;
+
+/**
+ * Loads a snapshot back in the background. One thread reads the file and cuts
+ * each level into batches; a small pool applies the batches in parallel. At
+ * most two batches per worker are read ahead, so memory stays bounded however
+ * large the snapshot is. Nothing here blocks the caller: {@link #warm}
+ * returns at once with a future of the number of entries applied.
+ */
+public final class CacheWarmer {
+    /**
+     * Applies one batch of entries read from the given level.
+     */
+    public interface BatchSink<K, V> {
+        void accept(int level, Map<K, V> batch);
+    }
+
+    private static final AtomicInteger WARM_IDS = new AtomicInteger();
+
+    private CacheWarmer() {
+    }
+
+    public static <K, V> CompletableFuture<Long> warm(Path path, Serializer<K, V> serializer, int batchSize,
+            int parallelism, BatchSink<K, V> sink) {
+        if (batchSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Batch size and parallelism must be positive");
+        }
+        int warmId = WARM_IDS.incrementAndGet();
+        AtomicInteger workerIds = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "cache-warm-" + warmId + "-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        Thread reader = new Thread(() -> read(path, serializer, batchSize, parallelism, sink, workers, result),
+                "cache-warm-" + warmId + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+        return result;
+    }
+
+    private static <K, V> void read(Path path, Serializer<K, V> serializer, int batchSize, int parallelism,
+            BatchSink<K, V> sink, ExecutorService workers, CompletableFuture<Long> result) {
+        Batcher<K, V> batcher = new Batcher<>(batchSize, parallelism, sink, workers);
+        Throwable readFailure = null;
+        try (SnapshotReader<K, V> snapshot = new SnapshotReader<>(path, serializer)) {
+            snapshot.forEach(batcher);
+        } catch (RuntimeException e) {
+            readFailure = e; // Batches read before the failure still go in
+        }
+        batcher.submitBatch();
+        Throwable failure = readFailure;
+        CompletableFuture.allOf(batcher.pending.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, batchFailure) -> {
+                    workers.shutdown();
+                    Throwable cause = failure != null ? failure : batchFailure;
+                    if (cause != null) {
+                        result.completeExceptionally(cause);
+                    } else {
+                        result.complete(batcher.applied.get());
+                    }
+                });
+    }
+
+    // Runs on the reader thread only, apart from the counters
+    private static class Batcher<K, V> implements SnapshotReader.EntryHandler<K, V> {
+        private final int batchSize;
+        private final BatchSink<K, V> sink;
+        private final ExecutorService workers;
+        private final Semaphore readAhead;
+        private final AtomicLong applied = new AtomicLong();
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+        private int level = -1;
+        private Map<K, V> batch = new LinkedHashMap<>();
+
+        Batcher(int batchSize, int parallelism, BatchSink<K, V> sink, ExecutorService workers) {
+            this.batchSize = batchSize;
+            this.sink = sink;
+            this.workers = workers;
+            this.readAhead = new Semaphore(parallelism * 2);
+        }
+
+        @Override
+        public void accept(int entryLevel, K key, V value) {
+            if (entryLevel != level || batch.size() == batchSize) {
+                submitBatch();
+                level = entryLevel;
+            }
+            batch.put(key, value);
+        }
+
+        void submitBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<K, V> full = batch;
+            int fullLevel = level;
+            batch = new LinkedHashMap<>();
+            readAhead.acquireUninterruptibly();
+            pending.add(CompletableFuture.runAsync(() -> {
+                try {
+                    sink.accept(fullLevel, full);
+                    applied.addAndGet(full.size());
+                } finally {
+                    readAhead.release();
+                }
+            }, workers));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cache.src.snapshot;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Layout of a cache snapshot file:
+ *
+ * <pre>
+ * [int magic][byte version][varint levelCount]
+ * per level: [varint entryCount] ([varint keyLen][key][varint valueLen][value])*
+ * </pre>
+ *
+ * Entries of a level are in eviction order, the hottest last. Lengths are
+ * unsigned LEB128 varints, so small keys and values cost one byte of framing.
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x4D4C4353; // "MLCS"
+    static final byte VERSION = 1;
+    // Guards against allocating from a corrupt length
+    static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private SnapshotFormat() {
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt snapshot: varint longer than 5 bytes");
+    }
+}
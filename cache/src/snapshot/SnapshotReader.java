@@ -0,0 +1,93 @@
+package cache.src.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import cache.src.offheap.Serializer;
+
+/**
+ * Reads a file written by {@link SnapshotWriter} one entry at a time, so a
+ * large snapshot is never held in memory at once.
+ */
+public class SnapshotReader<K, V> implements AutoCloseable {
+    /**
+     * Receives each entry with the index of the level it was taken from.
+     */
+    public interface EntryHandler<K, V> {
+        void accept(int level, K key, V value);
+    }
+
+    private final Path path;
+    private final Serializer<K, V> serializer;
+    private final DataInputStream in;
+    private final int levelCount;
+
+    public SnapshotReader(Path path, Serializer<K, V> serializer) {
+        this.path = path;
+        this.serializer = serializer;
+        try {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+            if (in.readInt() != SnapshotFormat.MAGIC) {
+                throw new IOException("Not a cache snapshot");
+            }
+            byte version = in.readByte();
+            if (version != SnapshotFormat.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            this.levelCount = SnapshotFormat.readVarInt(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open snapshot " + path, e);
+        }
+    }
+
+    public int levelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Hands every entry to handler, level by level in file order. A
+     * truncated or corrupt file throws after the entries before the damage
+     * were handed over.
+     */
+    public long forEach(EntryHandler<K, V> handler) {
+        long read = 0;
+        try {
+            for (int level = 0; level < levelCount; level++) {
+                int count = SnapshotFormat.readVarInt(in);
+                for (int i = 0; i < count; i++) {
+                    K key = serializer.deserializeKey(ByteBuffer.wrap(readRecord()));
+                    V value = serializer.deserializeValue(ByteBuffer.wrap(readRecord()));
+                    handler.accept(level, key, value);
+                    read++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read snapshot " + path + " after " + read + " entries", e);
+        }
+        return read;
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close snapshot " + path, e);
+        }
+    }
+
+    private byte[] readRecord() throws IOException {
+        int length = SnapshotFormat.readVarInt(in);
+        if (length < 0 || length > SnapshotFormat.MAX_RECORD_BYTES) {
+            throw new IOException("Corrupt snapshot: record length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
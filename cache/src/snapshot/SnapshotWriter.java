@@ -0,0 +1,100 @@
+package cache.src.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import cache.src.offheap.Serializer;
+
+/**
+ * Streams levels into a temporary file next to the target and moves it into
+ * place on {@link #commit}, so a crash mid write never leaves a torn snapshot
+ * where the next start would read it. Closing without committing deletes the
+ * temporary file.
+ */
+public class SnapshotWriter<K, V> implements AutoCloseable {
+    private final Path target;
+    private final Path temp;
+    private final Serializer<K, V> serializer;
+    private final int levelCount;
+    private final DataOutputStream out;
+    private int levelsWritten;
+    private long entriesWritten;
+    private boolean committed;
+
+    public SnapshotWriter(Path target, Serializer<K, V> serializer, int levelCount) {
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.serializer = serializer;
+        this.levelCount = levelCount;
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024));
+            out.writeInt(SnapshotFormat.MAGIC);
+            out.writeByte(SnapshotFormat.VERSION);
+            SnapshotFormat.writeVarInt(out, levelCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create snapshot " + temp, e);
+        }
+    }
+
+    /**
+     * Appends the next level's entries, iterated in eviction order.
+     */
+    public void writeLevel(Map<K, V> entries) {
+        if (levelsWritten == levelCount) {
+            throw new IllegalStateException("All " + levelCount + " levels already written");
+        }
+        try {
+            SnapshotFormat.writeVarInt(out, entries.size());
+            for (Map.Entry<K, V> entry : entries.entrySet()) {
+                writeRecord(serializer.serializeKey(entry.getKey()));
+                writeRecord(serializer.serializeValue(entry.getValue()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + temp, e);
+        }
+        levelsWritten++;
+        entriesWritten += entries.size();
+    }
+
+    /**
+     * Flushes and replaces the target with the new snapshot. Returns the
+     * number of entries written.
+     */
+    public long commit() {
+        if (levelsWritten != levelCount) {
+            throw new IllegalStateException("Wrote " + levelsWritten + " of " + levelCount + " levels");
+        }
+        try {
+            out.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not commit snapshot " + target, e);
+        }
+        committed = true;
+        return entriesWritten;
+    }
+
+    @Override
+    public void close() {
+        if (committed) {
+            return;
+        }
+        try {
+            out.close();
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete partial snapshot " + temp, e);
+        }
+    }
+
+    private void writeRecord(byte[] bytes) throws IOException {
+        SnapshotFormat.writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+}
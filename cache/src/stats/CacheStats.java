@@ -0,0 +1,107 @@
+package cache.src.stats;
+
+/**
+ * Immutable point in time view of cache counters. Snapshots taken at two
+ * moments can be subtracted with {@link #minus} to get the activity in between.
+ */
+public final class CacheStats {
+    private static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long promotionCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTimeNanos;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long promotionCount,
+            long loadSuccessCount, long loadFailureCount, long totalLoadTimeNanos) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.promotionCount = promotionCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTimeNanos = totalLoadTimeNanos;
+    }
+
+    public static CacheStats empty() {
+        return EMPTY;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    public double getHitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getPromotionCount() {
+        return promotionCount;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return totalLoadTimeNanos;
+    }
+
+    public double getAverageLoadPenaltyNanos() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) totalLoadTimeNanos / loads;
+    }
+
+    /**
+     * Counter values accumulated since the earlier snapshot.
+     */
+    public CacheStats minus(CacheStats earlier) {
+        return new CacheStats(
+                Math.max(0, hitCount - earlier.hitCount),
+                Math.max(0, missCount - earlier.missCount),
+                Math.max(0, evictionCount - earlier.evictionCount),
+                Math.max(0, promotionCount - earlier.promotionCount),
+                Math.max(0, loadSuccessCount - earlier.loadSuccessCount),
+                Math.max(0, loadFailureCount - earlier.loadFailureCount),
+                Math.max(0, totalLoadTimeNanos - earlier.totalLoadTimeNanos));
+    }
+
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(
+                hitCount + other.hitCount,
+                missCount + other.missCount,
+                evictionCount + other.evictionCount,
+                promotionCount + other.promotionCount,
+                loadSuccessCount + other.loadSuccessCount,
+                loadFailureCount + other.loadFailureCount,
+                totalLoadTimeNanos + other.totalLoadTimeNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount + ", misses=" + missCount + ", hitRate="
+                + String.format("%.4f", getHitRate()) + ", evictions=" + evictionCount + ", promotions="
+                + promotionCount + ", loadSuccess=" + loadSuccessCount + ", loadFailure=" + loadFailureCount
+                + ", totalLoadTimeNanos=" + totalLoadTimeNanos + "}";
+    }
+}
@@ -0,0 +1,101 @@
+package cache.src.stats;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}. Percentiles report the upper
+ * bound of the bucket they fall in.
+ */
+public final class LatencySnapshot {
+    private static final LatencySnapshot EMPTY = new LatencySnapshot(new long[LatencyHistogram.BUCKET_COUNT]);
+
+    private final long[] counts;
+    private final long totalCount;
+
+    LatencySnapshot(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        this.totalCount = total;
+    }
+
+    public static LatencySnapshot empty() {
+        return EMPTY;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Latency in nanoseconds at the given percentile, 0 to 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100.0 * totalCount);
+        rank = Math.max(rank, 1);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBoundOf(i);
+            }
+        }
+        return LatencyHistogram.upperBoundOf(counts.length - 1);
+    }
+
+    public long getMaxValue() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                return LatencyHistogram.upperBoundOf(i);
+            }
+        }
+        return 0;
+    }
+
+    public double getMean() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                long upper = LatencyHistogram.upperBoundOf(i);
+                long lower = i == 0 ? 0 : LatencyHistogram.upperBoundOf(i - 1) + 1;
+                sum += counts[i] * (lower + upper) / 2.0;
+            }
+        }
+        return sum / totalCount;
+    }
+
+    /**
+     * Recordings made since the earlier snapshot.
+     */
+    public LatencySnapshot minus(LatencySnapshot earlier) {
+        long[] delta = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            delta[i] = Math.max(0, counts[i] - earlier.counts[i]);
+        }
+        return new LatencySnapshot(delta);
+    }
+
+    /**
+     * Combined distribution of two snapshots, e.g. from different shards.
+     */
+    public LatencySnapshot plus(LatencySnapshot other) {
+        long[] sum = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            sum[i] = counts[i] + other.counts[i];
+        }
+        return new LatencySnapshot(sum);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{count=" + totalCount + ", p50=" + getValueAtPercentile(50) + "ns, p99="
+                + getValueAtPercentile(99) + "ns, p999=" + getValueAtPercentile(99.9) + "ns, max="
+                + getMaxValue() + "ns}";
+    }
+}
@@ -0,0 +1,92 @@
+package cache.src.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of a MultiLevelCache. levels.get(i) counts hits served by level i,
+ * misses at level i, promotions out of level i and the level's own evictions;
+ * its load fields are always zero. total counts whole-cache hits, misses and
+ * loads. Promotion latency has one sample per lookup that promoted, covering
+ * the writes into the upper levels.
+ */
+public final class MultiLevelCacheStats {
+    private final CacheStats total;
+    private final List<CacheStats> levels;
+    private final LatencySnapshot getLatency;
+    private final LatencySnapshot putLatency;
+    private final LatencySnapshot promotionLatency;
+
+    public MultiLevelCacheStats(CacheStats total, List<CacheStats> levels, LatencySnapshot getLatency,
+            LatencySnapshot putLatency, LatencySnapshot promotionLatency) {
+        this.total = total;
+        this.levels = Collections.unmodifiableList(new ArrayList<>(levels));
+        this.getLatency = getLatency;
+        this.putLatency = putLatency;
+        this.promotionLatency = promotionLatency;
+    }
+
+    public CacheStats getTotal() {
+        return total;
+    }
+
+    public List<CacheStats> getLevels() {
+        return levels;
+    }
+
+    public CacheStats getLevel(int index) {
+        return levels.get(index);
+    }
+
+    public LatencySnapshot getGetLatency() {
+        return getLatency;
+    }
+
+    public LatencySnapshot getPutLatency() {
+        return putLatency;
+    }
+
+    public LatencySnapshot getPromotionLatency() {
+        return promotionLatency;
+    }
+
+    /**
+     * Activity since the earlier snapshot, for feeding rate based dashboards.
+     */
+    public MultiLevelCacheStats minus(MultiLevelCacheStats earlier) {
+        List<CacheStats> levelDelta = new ArrayList<>();
+        for (int i = 0; i < levels.size(); i++) {
+            CacheStats before = i < earlier.levels.size() ? earlier.levels.get(i) : CacheStats.empty();
+            levelDelta.add(levels.get(i).minus(before));
+        }
+        return new MultiLevelCacheStats(total.minus(earlier.total), levelDelta,
+                getLatency.minus(earlier.getLatency), putLatency.minus(earlier.putLatency),
+                promotionLatency.minus(earlier.promotionLatency));
+    }
+
+    /**
+     * Sum of two snapshots level by level, used to aggregate shards.
+     */
+    public MultiLevelCacheStats plus(MultiLevelCacheStats other) {
+        List<CacheStats> levelSum = new ArrayList<>();
+        for (int i = 0; i < Math.max(levels.size(), other.levels.size()); i++) {
+            CacheStats mine = i < levels.size() ? levels.get(i) : CacheStats.empty();
+            CacheStats theirs = i < other.levels.size() ? other.levels.get(i) : CacheStats.empty();
+            levelSum.add(mine.plus(theirs));
+        }
+        return new MultiLevelCacheStats(total.plus(other.total), levelSum, getLatency.plus(other.getLatency),
+                putLatency.plus(other.putLatency), promotionLatency.plus(other.promotionLatency));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MultiLevelCacheStats{total=").append(total);
+        for (int i = 0; i < levels.size(); i++) {
+            builder.append(", L").append(i + 1).append('=').append(levels.get(i));
+        }
+        return builder.append(", get=").append(getLatency).append(", put=").append(putLatency)
+                .append(", promotion=").append(promotionLatency).append('}')
+                .toString();
+    }
+}
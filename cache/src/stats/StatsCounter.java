@@ -0,0 +1,56 @@
+package cache.src.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe recorder behind {@link CacheStats}. Every counter is a striped
+ * LongAdder, so concurrent recording does not contend on a single cache line.
+ */
+public class StatsCounter {
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder promotionCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    public void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    public void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    public void recordEviction() {
+        evictionCount.increment();
+    }
+
+    public void recordPromotions(int count) {
+        promotionCount.add(count);
+    }
+
+    public void recordLoadSuccess(long loadTimeNanos) {
+        loadSuccessCount.increment();
+        totalLoadTimeNanos.add(loadTimeNanos);
+    }
+
+    public void recordLoadFailure(long loadTimeNanos) {
+        loadFailureCount.increment();
+        totalLoadTimeNanos.add(loadTimeNanos);
+    }
+
+    public CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), promotionCount.sum(),
+                loadSuccessCount.sum(), loadFailureCount.sum(), totalLoadTimeNanos.sum());
+    }
+}
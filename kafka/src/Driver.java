@@ -1,12 +1,13 @@
 package kafka.src;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import kafka.src.broker.Broker;
 import kafka.src.consumer.ConsumerGroup;
-import kafka.src.message.Message;
+import kafka.src.message.Record;
 import kafka.src.strategy.partition.HashedPartitionStrategy;
 import kafka.src.strategy.partition.IPartitionStrategy;
 import kafka.src.strategy.partition.RoundRobinStrategy;
@@ -41,16 +42,16 @@ public class Driver {
             broker.subscribe("group1", "orders");
             broker.subscribe("group2", "notifications");
 
-            int offset1 = broker.publishToTopic("orders", "order123", "Order details for order123");
+            long offset1 = broker.publishToTopic("orders", "order123", "Order details for order123");
             System.out.println("Message published to partition: " + offset1);
 
-            int offset2 = broker.publishToTopic("notifications", "user456", "Notification for user456");
+            long offset2 = broker.publishToTopic("notifications", "user456", "Notification for user456");
             System.out.println("Message published to partition: " + offset2);
 
-            int offset3 = broker.publishToTopic("orders", "order789", "Order details for order789");
+            long offset3 = broker.publishToTopic("orders", "order789", "Order details for order789");
             System.out.println("Message published to partition: " + offset3);
 
-            int offset4 = broker.publishToTopic("notifications", "user123", "Notification for user123");
+            long offset4 = broker.publishToTopic("notifications", "user123", "Notification for user123");
             System.out.println("Message published to partition: " + offset4);
         } catch (Exception e) {
             e.printStackTrace();
@@ -60,11 +61,12 @@ public class Driver {
         for (String groupId : consumerIds.keySet()) {
             ConsumerGroup group = consumerGroups.get(groupId);
             for (String consumerId : consumerIds.get(groupId)) {
-                List<Message> messages = group.poll(consumerId);
-                if (!messages.isEmpty()) {
-                    for (Message msg : messages) {
-                        System.out.println("Consumer " + consumerId + " received message: " + msg.getMessage()
-                                + " at offset " + msg.getOffset());
+                List<Record> records = group.poll(consumerId);
+                if (!records.isEmpty()) {
+                    for (Record record : records) {
+                        System.out.println("Consumer " + consumerId + " received message: "
+                                + new String(record.getValue(), StandardCharsets.UTF_8)
+                                + " at offset " + record.getOffset());
 
                     }
                 } else {
@@ -72,5 +74,7 @@ public class Driver {
                 }
             }
         }
+
+        broker.close();
     }
 }
\ No newline at end of file
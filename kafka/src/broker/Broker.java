@@ -1,36 +1,130 @@
 package kafka.src.broker;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
+import kafka.src.consumer.CompactedOffsetStore;
 import kafka.src.consumer.ConsumerGroup;
+import kafka.src.consumer.IOffsetStore;
+import kafka.src.message.RecordBatch;
+import kafka.src.storage.LogConfig;
 import kafka.src.strategy.distribution.RoundRobinDistribution;
 import kafka.src.strategy.partition.IPartitionStrategy;
 import kafka.src.topic.Partition;
 import kafka.src.topic.Topic;
 
 public class Broker {
+    private static final long RETENTION_CHECK_INTERVAL_MILLIS = 60_000;
+    private static final String OFFSETS_DIRECTORY = "__consumer_offsets";
+
     private final Map<String, Topic> topics;
     private final Map<String, ConsumerGroup> consumerGroups;
+    private final LogConfig logConfig;
+    private final IOffsetStore offsetStore;
+    private final ScheduledExecutorService retentionScheduler;
+    // Set when the broker made its own log directory, deleted again on close
+    private Path temporaryDirectory;
 
+    /**
+     * Broker whose partition logs live in a fresh temporary directory, which
+     * is deleted on close.
+     */
     public Broker() {
+        this(LogConfig.defaults(createTempLogDirectory()));
+        this.temporaryDirectory = logConfig.getDirectory();
+    }
+
+    /**
+     * Broker whose partition logs live under logConfig's directory, one
+     * subdirectory per partition. Topics created again after a restart pick
+     * up the messages already there, and consumer groups resume from their
+     * committed offsets.
+     */
+    public Broker(LogConfig logConfig) {
         topics = new ConcurrentHashMap<>();
         consumerGroups = new ConcurrentHashMap<>();
+        this.logConfig = logConfig;
+        this.offsetStore = new CompactedOffsetStore(logConfig.getDirectory().resolve(OFFSETS_DIRECTORY));
+        // Rolls also enforce retention, this covers partitions that stopped receiving writes
+        retentionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kafka-log-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retentionScheduler.scheduleWithFixedDelay(this::enforceRetention, RETENTION_CHECK_INTERVAL_MILLIS,
+                RETENTION_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static Path createTempLogDirectory() {
+        try {
+            return Files.createTempDirectory("kafka-logs");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create log directory", e);
+        }
     }
 
     public void createTopic(String topicName, int numPartitions, IPartitionStrategy partitionStrategy) {
-        Topic newTopic = new Topic(topicName, numPartitions, partitionStrategy);
+        Topic newTopic = new Topic(topicName, numPartitions, partitionStrategy, logConfig);
         topics.put(topicName, newTopic);
     }
 
+    public void enforceRetention() {
+        for (Topic topic : topics.values()) {
+            for (Partition partition : topic.getPartitions()) {
+                partition.getLog().enforceRetention();
+            }
+        }
+    }
+
+    public void close() {
+        retentionScheduler.shutdownNow();
+        offsetStore.close();
+        for (Topic topic : topics.values()) {
+            topic.close();
+        }
+        if (temporaryDirectory != null) {
+            deleteDirectory(temporaryDirectory);
+        }
+    }
+
+    private static void deleteDirectory(Path path) {
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete log directory " + path, e);
+        }
+    }
+
     public ConsumerGroup addConsumerToConsumerGroup(String groupId, String consumerId) {
         ConsumerGroup consumerGroup = consumerGroups.computeIfAbsent(groupId,
-                k -> new ConsumerGroup(groupId, new RoundRobinDistribution()));
+                k -> new ConsumerGroup(groupId, new RoundRobinDistribution(), offsetStore));
         consumerGroup.addConsumer(consumerId);
         return consumerGroup;
     }
 
+    public void removeConsumerFromConsumerGroup(String groupId, String consumerId) {
+        ConsumerGroup consumerGroup = consumerGroups.get(groupId);
+        if (consumerGroup != null) {
+            consumerGroup.removeConsumer(consumerId);
+        }
+    }
+
+    public ConsumerGroup getConsumerGroup(String groupId) {
+        return consumerGroups.getOrDefault(groupId, null);
+    }
+
     public void subscribe(String groupId, String topicName) throws Exception {
         ConsumerGroup consumerGroup = consumerGroups.getOrDefault(groupId, null);
         Topic topic = topics.getOrDefault(topicName, null);
@@ -41,7 +135,7 @@ public class Broker {
         consumerGroup.subscribe(topicName, partitions);
     }
 
-    public int publishToTopic(String topicName, String key, String message) throws Exception {
+    public long publishToTopic(String topicName, String key, String message) throws Exception {
         Topic topic = topics.getOrDefault(topicName, null);
         if (topic == null) {
             throw new IllegalArgumentException("Topic does not exist");
@@ -50,4 +144,20 @@ public class Broker {
 
     }
 
+    /**
+     * Appends a producer batch to one partition under a single log lock and
+     * returns the offset of its first record.
+     */
+    public long publishBatch(String topicName, int partitionIndex, RecordBatch batch) {
+        return getTopic(topicName).getPartition(partitionIndex).append(batch);
+    }
+
+    public Topic getTopic(String topicName) {
+        Topic topic = topics.getOrDefault(topicName, null);
+        if (topic == null) {
+            throw new IllegalArgumentException("Topic does not exist");
+        }
+        return topic;
+    }
+
 }
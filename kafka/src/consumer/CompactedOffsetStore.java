@@ -0,0 +1,325 @@
+package kafka.src.consumer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+
+import kafka.src.message.CompressionType;
+import kafka.src.message.Record;
+import kafka.src.message.RecordBatch;
+import kafka.src.storage.LogConfig;
+import kafka.src.storage.LogRecords;
+import kafka.src.storage.SegmentedLog;
+
+/**
+ * Committed offsets kept in an internal log, one record per commit keyed by
+ * group and partition, the latest record per key winning. All offsets are
+ * also held in memory, which is what reads see; the log is only read back
+ * on startup.
+ *
+ * Commits are queued and a single writer thread appends everything queued
+ * as one record batch and forces it to disk once, so concurrent commits
+ * share the cost of the sync. Once the log holds several times more records
+ * than there are keys it is compacted: the live offsets are written to a
+ * fresh log that then replaces the old one by directory renames, so a crash
+ * at any point leaves one complete log to recover from.
+ */
+public class CompactedOffsetStore implements IOffsetStore {
+    private static final int SEGMENT_BYTES = 4 * 1024 * 1024;
+    private static final int RECORDS_PER_BATCH = 1000;
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 10_000;
+    private static final int COMPACTION_FACTOR = 4;
+    private static final String COMPACTED_SUFFIX = ".compacted";
+    private static final String DELETED_SUFFIX = ".deleted";
+
+    private static final class CommitRequest {
+        final String groupId;
+        final Map<String, Long> offsets;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        CommitRequest(String groupId, Map<String, Long> offsets) {
+            this.groupId = groupId;
+            this.offsets = offsets;
+        }
+    }
+
+    // Queued by close, the writer exits once it sees it
+    private static final CommitRequest STOP = new CommitRequest(null, Collections.emptyMap());
+
+    private final Path directory;
+    private final Path compactedDirectory;
+    private final Path deletedDirectory;
+    private final LogConfig config;
+    // groupId to partition id to committed offset, only durable commits
+    private final Map<String, Map<String, Long>> committed = new ConcurrentHashMap<>();
+    private final BlockingQueue<CommitRequest> requests = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final Object lifecycle = new Object();
+    // Guarded by lifecycle
+    private boolean closed;
+    private volatile RuntimeException failure;
+    // Owned by the writer thread after construction
+    private SegmentedLog log;
+    private long recordsInLog;
+
+    public CompactedOffsetStore(Path directory) {
+        this.directory = directory;
+        this.compactedDirectory = directory.resolveSibling(directory.getFileName() + COMPACTED_SUFFIX);
+        this.deletedDirectory = directory.resolveSibling(directory.getFileName() + DELETED_SUFFIX);
+        this.config = new LogConfig(directory, SEGMENT_BYTES, LogConfig.DEFAULT_INDEX_INTERVAL_BYTES,
+                LogConfig.UNLIMITED, LogConfig.UNLIMITED);
+        finishInterruptedCompaction();
+        this.log = new SegmentedLog(directory, config);
+        load();
+        this.writer = new Thread(this::runWriter, "kafka-offset-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> commit(String groupId, Map<String, Long> offsets) {
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        CommitRequest request = new CommitRequest(groupId, Map.copyOf(offsets));
+        synchronized (lifecycle) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Offset store is closed"));
+            }
+            requests.add(request);
+        }
+        return request.future;
+    }
+
+    @Override
+    public long getCommittedOffset(String groupId, String partitionId) {
+        Map<String, Long> offsets = committed.get(groupId);
+        Long offset = offsets == null ? null : offsets.get(partitionId);
+        return offset == null ? NO_OFFSET : offset;
+    }
+
+    /**
+     * Writes the commits still queued, then closes the log.
+     */
+    @Override
+    public void close() {
+        synchronized (lifecycle) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            requests.add(STOP);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    private void runWriter() {
+        List<CommitRequest> batch = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(requests.take());
+            } catch (InterruptedException e) {
+                continue; // Only close stops the writer
+            }
+            requests.drainTo(batch);
+            stopping = batch.remove(STOP);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<CommitRequest> batch) {
+        if (failure != null) {
+            fail(batch, failure);
+            return;
+        }
+        try {
+            OffsetWriter offsetWriter = new OffsetWriter(log);
+            for (CommitRequest request : batch) {
+                offsetWriter.write(request.groupId, request.offsets);
+            }
+            recordsInLog += offsetWriter.finish();
+            log.flush(); // One sync for every commit in the batch
+        } catch (RuntimeException e) {
+            fail(batch, e);
+            return;
+        }
+        for (CommitRequest request : batch) {
+            committed.computeIfAbsent(request.groupId, k -> new ConcurrentHashMap<>()).putAll(request.offsets);
+            request.future.complete(null);
+        }
+        try {
+            maybeCompact();
+        } catch (RuntimeException e) {
+            failure = e; // The log may be half swapped, refuse further commits
+        }
+    }
+
+    private static void fail(List<CommitRequest> batch, Throwable cause) {
+        for (CommitRequest request : batch) {
+            request.future.completeExceptionally(cause);
+        }
+    }
+
+    private void maybeCompact() {
+        long liveOffsets = 0;
+        for (Map<String, Long> offsets : committed.values()) {
+            liveOffsets += offsets.size();
+        }
+        if (recordsInLog < Math.max(MIN_RECORDS_BEFORE_COMPACTION, COMPACTION_FACTOR * liveOffsets)) {
+            return;
+        }
+        deleteDirectory(compactedDirectory);
+        SegmentedLog compacted = new SegmentedLog(compactedDirectory, config);
+        OffsetWriter offsetWriter = new OffsetWriter(compacted);
+        for (Map.Entry<String, Map<String, Long>> group : committed.entrySet()) {
+            offsetWriter.write(group.getKey(), group.getValue());
+        }
+        long written = offsetWriter.finish();
+        compacted.close();
+        log.close();
+        try {
+            Files.move(directory, deletedDirectory, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(compactedDirectory, directory, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not swap in compacted offsets log " + compactedDirectory, e);
+        }
+        deleteDirectory(deletedDirectory);
+        log = new SegmentedLog(directory, config);
+        recordsInLog = written;
+    }
+
+    /**
+     * The log directory is only missing between the two renames of a
+     * compaction, when the compacted copy is already complete. Otherwise a
+     * compacted copy is a partial one and is dropped.
+     */
+    private void finishInterruptedCompaction() {
+        try {
+            if (Files.exists(compactedDirectory)) {
+                if (Files.exists(directory)) {
+                    deleteDirectory(compactedDirectory);
+                } else {
+                    Files.move(compactedDirectory, directory, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover offsets log " + directory, e);
+        }
+        deleteDirectory(deletedDirectory);
+    }
+
+    private void load() {
+        long offset = log.getStartOffset();
+        while (offset < log.getEndOffset()) {
+            LogRecords records = log.read(offset, Integer.MAX_VALUE, 1024 * 1024);
+            if (records.isEmpty()) {
+                break;
+            }
+            for (Record record : records) {
+                ByteBuffer key = ByteBuffer.wrap(record.getKey());
+                String groupId = getString(key);
+                String partitionId = getString(key);
+                committed.computeIfAbsent(groupId, k -> new ConcurrentHashMap<>())
+                        .put(partitionId, ByteBuffer.wrap(record.getValue()).getLong());
+            }
+            recordsInLog += records.getCount();
+            offset = records.getNextOffset();
+        }
+    }
+
+    // Appends offset records in batches of at most RECORDS_PER_BATCH
+    private static final class OffsetWriter {
+        private final SegmentedLog target;
+        private final long timestamp = System.currentTimeMillis();
+        private RecordBatch.Builder builder = newBuilder();
+        private long written;
+
+        OffsetWriter(SegmentedLog target) {
+            this.target = target;
+        }
+
+        private static RecordBatch.Builder newBuilder() {
+            return new RecordBatch.Builder(RecordBatch.HEADER_BYTES + 4096);
+        }
+
+        void write(String groupId, Map<String, Long> offsets) {
+            for (Map.Entry<String, Long> offset : offsets.entrySet()) {
+                builder.append(timestamp, encodeKey(groupId, offset.getKey()), encodeValue(offset.getValue()),
+                        Collections.emptyList());
+                if (builder.getCount() == RECORDS_PER_BATCH) {
+                    appendBatch();
+                }
+            }
+        }
+
+        /**
+         * Appends the last partial batch and returns the records written.
+         */
+        long finish() {
+            if (builder.getCount() > 0) {
+                appendBatch();
+            }
+            return written;
+        }
+
+        private void appendBatch() {
+            target.append(builder.build(CompressionType.NONE));
+            written += builder.getCount();
+            builder = newBuilder();
+        }
+    }
+
+    // [short length][group][short length][partition], both UTF-8
+    private static byte[] encodeKey(String groupId, String partitionId) {
+        byte[] group = groupId.getBytes(StandardCharsets.UTF_8);
+        byte[] partition = partitionId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer key = ByteBuffer.allocate(4 + group.length + partition.length);
+        key.putShort((short) group.length).put(group);
+        key.putShort((short) partition.length).put(partition);
+        return key.array();
+    }
+
+    private static byte[] encodeValue(long offset) {
+        return ByteBuffer.allocate(8).putLong(offset).array();
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteDirectory(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete " + path, e);
+        }
+    }
+}
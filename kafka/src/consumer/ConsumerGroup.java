@@ -1,34 +1,55 @@
 package kafka.src.consumer;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
-import kafka.src.message.Message;
+import kafka.src.message.Record;
+import kafka.src.storage.LogRecords;
 import kafka.src.strategy.distribution.IDistributionStrategy;
 import kafka.src.topic.Partition;
 
 public class ConsumerGroup {
+    public static final int DEFAULT_MAX_POLL_RECORDS = 500;
+    public static final int DEFAULT_MAX_POLL_BYTES = 1024 * 1024;
+
     private final String groupId;
     private Map<String, List<Partition>> consumerToPartitions;
-    private final Map<String, AtomicInteger> consumedOffset;
+    // Last offset handed out per partition, ahead of the committed offset
+    private final Map<String, AtomicLong> consumedOffset;
     private final List<String> subscribedTopics;
     private final List<Partition> allPartitions;
     private final IDistributionStrategy distributionStrategy;
+    private final IOffsetStore offsetStore;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Rotates the partition each fetch starts from
+    private final AtomicInteger fetchRound = new AtomicInteger();
+    // Long polls parked in fetch, woken when the assignment changes
+    private final Set<Runnable> rebalanceListeners = ConcurrentHashMap.newKeySet();
 
-    public ConsumerGroup(String groupId, IDistributionStrategy distributionStrategy) {
+    public ConsumerGroup(String groupId, IDistributionStrategy distributionStrategy, IOffsetStore offsetStore) {
         this.groupId = groupId;
         consumerToPartitions = new ConcurrentHashMap<>();
         consumedOffset = new ConcurrentHashMap<>();
         subscribedTopics = new ArrayList<>();
         allPartitions = new ArrayList<>();
         this.distributionStrategy = distributionStrategy;
+        this.offsetStore = offsetStore;
     }
 
     public String getGroupId() {
@@ -40,6 +61,27 @@ public class ConsumerGroup {
         this.rebalance();
     }
 
+    /**
+     * Removes a departed consumer. Its partitions go to the others and are
+     * read again from the last committed offset, so nothing it fetched
+     * without committing is lost.
+     */
+    public void removeConsumer(String consumerId) {
+        lock.writeLock().lock();
+        try {
+            List<Partition> released = consumerToPartitions.remove(consumerId);
+            if (released == null) {
+                return;
+            }
+            for (Partition partition : released) {
+                resetToCommitted(partition.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        this.rebalance();
+    }
+
     public void subscribe(String topicName, List<Partition> partitions) {
         if (subscribedTopics.contains(topicName)) {
             return;
@@ -47,43 +89,264 @@ public class ConsumerGroup {
         subscribedTopics.add(topicName);
         allPartitions.addAll(partitions);
         for (Partition partition : partitions) {
-            consumedOffset.putIfAbsent(partition.getId(), new AtomicInteger(-1));
+            // Resumes where the group last committed, e.g. before a restart
+            consumedOffset.putIfAbsent(partition.getId(), new AtomicLong(committedPosition(partition.getId())));
         }
         this.rebalance();
     }
 
+    /**
+     * Reassigns partitions. A partition that changes owner restarts from its
+     * last committed offset, so the new owner sees whatever the old one had
+     * fetched but not committed.
+     */
     public void rebalance() {
         lock.writeLock().lock();
         try {
             if (consumerToPartitions.isEmpty() || allPartitions.isEmpty()) {
                 return;
             }
+            Map<String, String> previousOwners = ownersByPartition(consumerToPartitions);
             List<String> consumers = new ArrayList<>(consumerToPartitions.keySet());
             consumerToPartitions = distributionStrategy.rebalance(consumers,
                     allPartitions);
+            Map<String, String> owners = ownersByPartition(consumerToPartitions);
+            for (Map.Entry<String, String> owner : owners.entrySet()) {
+                String previous = previousOwners.get(owner.getKey());
+                if (previous != null && !previous.equals(owner.getValue())) {
+                    resetToCommitted(owner.getKey());
+                }
+            }
         } finally {
             lock.writeLock().unlock();
         }
+        for (Runnable listener : rebalanceListeners) {
+            listener.run();
+        }
     }
 
-    public List<Message> poll(String consumerId) {
-        List<Partition> partitions = consumerToPartitions.getOrDefault(consumerId, null);
-        if (partitions == null || partitions.isEmpty()) {
-            return new ArrayList<>();
+    private static Map<String, String> ownersByPartition(Map<String, List<Partition>> assignment) {
+        Map<String, String> owners = new HashMap<>();
+        for (Map.Entry<String, List<Partition>> consumer : assignment.entrySet()) {
+            for (Partition partition : consumer.getValue()) {
+                owners.put(partition.getId(), consumer.getKey());
+            }
         }
-        List<Message> messages = new ArrayList<>();
-        for (Partition partition : partitions) {
-            int lastOffSetCount = consumedOffset.getOrDefault(partition.getId(), new AtomicInteger(-1)).get();
-            Optional<Message> messageOpt = partition.getMessageAtOffset(lastOffSetCount + 1);
-            while (messageOpt.isPresent()) {
-                Message message = messageOpt.get();
-                messages.add(message);
-                lastOffSetCount = consumedOffset.get(partition.getId()).incrementAndGet();
-                messageOpt = partition.getMessageAtOffset(lastOffSetCount + 1);
+        return owners;
+    }
+
+    // consumedOffset holds the last offset handed out, one before the committed one
+    private long committedPosition(String partitionId) {
+        long committed = offsetStore.getCommittedOffset(groupId, partitionId);
+        return committed == IOffsetStore.NO_OFFSET ? -1 : committed - 1;
+    }
+
+    private void resetToCommitted(String partitionId) {
+        AtomicLong consumed = consumedOffset.get(partitionId);
+        if (consumed != null) {
+            consumed.set(committedPosition(partitionId));
+        }
+    }
+
+    /**
+     * Commits offsets, partition id to the next offset to read, typically
+     * {@link FetchResult#getNextOffsets()} once a fetch is processed. The
+     * future completes when the commit is durable. Commits from all groups
+     * are written to the offsets log together, so committing after every
+     * fetch stays cheap.
+     */
+    public CompletableFuture<Void> commitAsync(Map<String, Long> offsets) {
+        for (String partitionId : offsets.keySet()) {
+            if (!consumedOffset.containsKey(partitionId)) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("Group " + groupId
+                        + " is not subscribed to partition " + partitionId));
+            }
+        }
+        return offsetStore.commit(groupId, offsets);
+    }
+
+    public CompletableFuture<Void> commitAsync(String partitionId, long offset) {
+        return commitAsync(Map.of(partitionId, offset));
+    }
+
+    /**
+     * Commits and waits until the offsets are durable.
+     */
+    public void commitSync(Map<String, Long> offsets) {
+        try {
+            commitAsync(offsets).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    public void commit(String partitionId, long offset) {
+        commitSync(Map.of(partitionId, offset));
+    }
+
+    /**
+     * Next offset the group reads from the partition after a restart or
+     * rebalance, IOffsetStore.NO_OFFSET before the first commit.
+     */
+    public long getCommittedOffset(String partitionId) {
+        return offsetStore.getCommittedOffset(groupId, partitionId);
+    }
+
+    /**
+     * Bounded poll, about DEFAULT_MAX_POLL_RECORDS records and
+     * DEFAULT_MAX_POLL_BYTES, rounded to whole batches. Call again for the
+     * rest.
+     */
+    public List<Record> poll(String consumerId) {
+        return fetch(consumerId, DEFAULT_MAX_POLL_RECORDS, DEFAULT_MAX_POLL_BYTES).toRecords();
+    }
+
+    /**
+     * Reads a contiguous run of batches from each partition assigned to
+     * consumerId, one range read per partition, until maxRecords or maxBytes
+     * is reached across the whole fetch. Batches are returned whole, so the
+     * limits are met at batch granularity. Each call starts at the next
+     * partition in turn so a busy partition cannot starve the others. The
+     * first batch is returned even if it alone exceeds maxBytes.
+     *
+     * Runs under the read lock, so a rebalance or removeConsumer cannot reset
+     * a partition between the read and the advance. Positions move by
+     * compareAndSet from the value read, so concurrent fetches never hand out
+     * the same range twice.
+     */
+    public FetchResult fetch(String consumerId, int maxRecords, int maxBytes) {
+        lock.readLock().lock();
+        try {
+            List<Partition> partitions = consumerToPartitions.getOrDefault(consumerId, null);
+            if (partitions == null || partitions.isEmpty() || maxRecords <= 0) {
+                return FetchResult.empty();
+            }
+            Map<String, LogRecords> batches = new LinkedHashMap<>();
+            int records = 0;
+            int bytes = 0;
+            int first = Math.floorMod(fetchRound.getAndIncrement(), partitions.size());
+            for (int i = 0; i < partitions.size() && records < maxRecords && bytes < maxBytes; i++) {
+                Partition partition = partitions.get((first + i) % partitions.size());
+                LogRecords batch = advance(partition, maxRecords - records, maxBytes - bytes,
+                        records > 0 ? maxBytes - bytes : Integer.MAX_VALUE);
+                if (batch == null) {
+                    break; // Oversized first batch, left for the next fetch
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                batches.put(partition.getId(), batch);
+                records += batch.getCount();
+                bytes += batch.getSizeInBytes();
+            }
+            return records == 0 ? FetchResult.empty() : new FetchResult(batches, records, bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads from the partition's position and moves the position past what
+     * was read. Returns null, without moving, when the batch is larger than
+     * maxTakenBytes.
+     */
+    private LogRecords advance(Partition partition, int maxRecords, int maxBytes, int maxTakenBytes) {
+        AtomicLong consumed = consumedOffset.get(partition.getId());
+        while (true) {
+            long observed = consumed.get();
+            // Offsets removed by retention are skipped
+            long lastConsumed = Math.max(observed, partition.getStartOffset() - 1);
+            LogRecords batch = partition.read(lastConsumed + 1, maxRecords, maxBytes);
+            if (batch.isEmpty()) {
+                return batch;
+            }
+            if (batch.getSizeInBytes() > maxTakenBytes) {
+                return null;
+            }
+            if (consumed.compareAndSet(observed, batch.getNextOffset() - 1)) {
+                return batch;
+            }
+            // Another fetch of the same consumer moved the position first, read again from there
+        }
+    }
+
+    /**
+     * Long poll: like fetch, but when nothing is available parks until an
+     * append to one of the consumer's partitions, a rebalance, or until
+     * maxWait passes. A consumer with no partitions parks too, so callers
+     * looping on this never spin. Returns an empty result only on timeout.
+     */
+    public FetchResult fetch(String consumerId, int maxRecords, int maxBytes, long maxWait, TimeUnit unit) {
+        FetchResult result = fetch(consumerId, maxRecords, maxBytes);
+        if (!result.isEmpty() || maxWait <= 0) {
+            return result;
+        }
+        Thread waiter = Thread.currentThread();
+        AtomicBoolean signaled = new AtomicBoolean();
+        Runnable wakeUp = () -> {
+            if (!signaled.getAndSet(true)) {
+                LockSupport.unpark(waiter);
+            }
+        };
+        Set<Partition> watched = new HashSet<>();
+        rebalanceListeners.add(wakeUp);
+        try {
+            long deadline = System.nanoTime() + unit.toNanos(maxWait);
+            while (true) {
+                // Re-read after every wakeup, a rebalance may have moved partitions
+                watch(assignment(consumerId), watched, wakeUp);
+                // Checked after registering, so an append in between is not missed
+                result = fetch(consumerId, maxRecords, maxBytes);
+                long remaining = deadline - System.nanoTime();
+                if (!result.isEmpty() || remaining <= 0 || waiter.isInterrupted()) {
+                    return result;
+                }
+                if (!signaled.getAndSet(false)) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                signaled.set(false);
+            }
+        } finally {
+            rebalanceListeners.remove(wakeUp);
+            for (Partition partition : watched) {
+                partition.removeAppendListener(wakeUp);
             }
         }
+    }
+
+    private List<Partition> assignment(String consumerId) {
+        lock.readLock().lock();
+        try {
+            return consumerToPartitions.getOrDefault(consumerId, List.of());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Moves wakeUp onto the assigned partitions, off the ones given away
+    private static void watch(List<Partition> assigned, Set<Partition> watched, Runnable wakeUp) {
+        watched.removeIf(partition -> {
+            if (assigned.contains(partition)) {
+                return false;
+            }
+            partition.removeAppendListener(wakeUp);
+            return true;
+        });
+        for (Partition partition : assigned) {
+            if (watched.add(partition)) {
+                partition.addAppendListener(wakeUp);
+            }
+        }
+    }
 
-        return messages;
+    /**
+     * Push mode: a background thread long polls for consumerId and hands each
+     * non empty result to handler. Close the returned delivery to stop it.
+     */
+    public PushDelivery push(String consumerId, int maxRecords, int maxBytes, Consumer<FetchResult> handler) {
+        PushDelivery delivery = new PushDelivery(this, consumerId, maxRecords, maxBytes, handler);
+        delivery.start();
+        return delivery;
     }
 
 }
@@ -0,0 +1,73 @@
+package kafka.src.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import kafka.src.message.Record;
+import kafka.src.storage.LogRecords;
+
+/**
+ * Records returned by one fetch, a contiguous batch per partition keyed by
+ * partition id in the order they were read.
+ */
+public class FetchResult {
+    private static final FetchResult EMPTY = new FetchResult(Collections.emptyMap(), 0, 0);
+
+    private final Map<String, LogRecords> batches;
+    private final int recordCount;
+    private final int sizeInBytes;
+
+    public FetchResult(Map<String, LogRecords> batches, int recordCount, int sizeInBytes) {
+        this.batches = batches;
+        this.recordCount = recordCount;
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    static FetchResult empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    public Map<String, LogRecords> getBatches() {
+        return Collections.unmodifiableMap(batches);
+    }
+
+    /**
+     * Partition id to the offset after the last record fetched, what to
+     * commit once these records are processed.
+     */
+    public Map<String, Long> getNextOffsets() {
+        Map<String, Long> offsets = new LinkedHashMap<>();
+        for (Map.Entry<String, LogRecords> batch : batches.entrySet()) {
+            offsets.put(batch.getKey(), batch.getValue().getNextOffset());
+        }
+        return offsets;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public int getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Decodes every batch, checking each CRC.
+     */
+    public List<Record> toRecords() {
+        List<Record> records = new ArrayList<>(recordCount);
+        for (LogRecords batch : batches.values()) {
+            for (Record record : batch) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
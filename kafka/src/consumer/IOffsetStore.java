@@ -0,0 +1,29 @@
+package kafka.src.consumer;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Durable committed offsets of consumer groups. A committed offset is the
+ * next offset the group reads from a partition after a restart or when the
+ * partition moves to another consumer.
+ */
+public interface IOffsetStore extends AutoCloseable {
+    long NO_OFFSET = -1;
+
+    /**
+     * Stores offsets, partition id to offset, for groupId. The future
+     * completes once they are durable; commits made close together may be
+     * written as one batch.
+     */
+    CompletableFuture<Void> commit(String groupId, Map<String, Long> offsets);
+
+    /**
+     * Last durable commit, or NO_OFFSET if the group never committed for
+     * the partition.
+     */
+    long getCommittedOffset(String groupId, String partitionId);
+
+    @Override
+    void close();
+}
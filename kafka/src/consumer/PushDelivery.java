@@ -0,0 +1,77 @@
+package kafka.src.consumer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Delivers a consumer's messages to a handler as they arrive, from a
+ * dedicated thread blocked in a long poll. If the handler throws, delivery
+ * stops and the exception is kept in {@link #getFailure}.
+ */
+public class PushDelivery implements AutoCloseable {
+    private static final long POLL_WAIT_MILLIS = 500;
+
+    private final ConsumerGroup group;
+    private final String consumerId;
+    private final int maxRecords;
+    private final int maxBytes;
+    private final Consumer<FetchResult> handler;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile RuntimeException failure;
+
+    PushDelivery(ConsumerGroup group, String consumerId, int maxRecords, int maxBytes,
+            Consumer<FetchResult> handler) {
+        this.group = group;
+        this.consumerId = consumerId;
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.handler = handler;
+        this.thread = new Thread(this::run, "kafka-push-" + group.getGroupId() + "-" + consumerId);
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            FetchResult result = group.fetch(consumerId, maxRecords, maxBytes, POLL_WAIT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            if (result.isEmpty()) {
+                continue; // Fetched results are delivered even when closing, their offsets already moved
+            }
+            try {
+                handler.accept(result);
+            } catch (RuntimeException e) {
+                failure = e;
+                running = false;
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Stops delivery and waits for a handler call in progress to return.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package kafka.src.message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zigzag varints as used inside record batches: small magnitudes, negative
+ * ones included, take one byte.
+ */
+final class ByteUtils {
+    private ByteUtils() {
+    }
+
+    static int sizeOfVarint(int value) {
+        return sizeOfUnsigned((value << 1) ^ (value >> 31));
+    }
+
+    static int sizeOfVarlong(long value) {
+        long unsigned = (value << 1) ^ (value >> 63);
+        int bytes = 1;
+        while ((unsigned & ~0x7FL) != 0) {
+            unsigned >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private static int sizeOfUnsigned(int unsigned) {
+        int bytes = 1;
+        while ((unsigned & ~0x7F) != 0) {
+            unsigned >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes value at position and returns the position after it.
+     */
+    static int writeVarint(int value, byte[] dest, int position) {
+        int unsigned = (value << 1) ^ (value >> 31);
+        while ((unsigned & ~0x7F) != 0) {
+            dest[position++] = (byte) ((unsigned & 0x7F) | 0x80);
+            unsigned >>>= 7;
+        }
+        dest[position++] = (byte) unsigned;
+        return position;
+    }
+
+    static int writeVarlong(long value, byte[] dest, int position) {
+        long unsigned = (value << 1) ^ (value >> 63);
+        while ((unsigned & ~0x7FL) != 0) {
+            dest[position++] = (byte) ((unsigned & 0x7F) | 0x80);
+            unsigned >>>= 7;
+        }
+        dest[position++] = (byte) unsigned;
+        return position;
+    }
+
+    static int readVarint(ByteBuffer buffer) {
+        int unsigned = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new IllegalStateException("Varint is longer than 5 bytes");
+            }
+            b = buffer.get();
+            unsigned |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (unsigned >>> 1) ^ -(unsigned & 1);
+    }
+
+    static long readVarlong(ByteBuffer buffer) {
+        long unsigned = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new IllegalStateException("Varlong is longer than 10 bytes");
+            }
+            b = buffer.get();
+            unsigned |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (unsigned >>> 1) ^ -(unsigned & 1);
+    }
+}
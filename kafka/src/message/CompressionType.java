@@ -0,0 +1,82 @@
+package kafka.src.message;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec applied to the records of a whole RecordBatch. Only JDK codecs are
+ * used, DEFLATE at its fastest level since batches are compressed on the
+ * producer's send path. The ordinal is stored in the batch attributes.
+ */
+public enum CompressionType {
+    NONE {
+        @Override
+        byte[] compress(byte[] data, int offset, int length) {
+            return Arrays.copyOfRange(data, offset, offset + length);
+        }
+
+        @Override
+        ByteBuffer decompress(ByteBuffer data) {
+            return data;
+        }
+    },
+    DEFLATE {
+        @Override
+        byte[] compress(byte[] data, int offset, int length) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(data, offset, length);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        ByteBuffer decompress(ByteBuffer data) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data.duplicate());
+                byte[] result = new byte[Math.max(64, data.remaining() * 4)];
+                int filled = 0;
+                while (!inflater.finished()) {
+                    if (filled == result.length) {
+                        result = Arrays.copyOf(result, result.length * 2);
+                    }
+                    int inflated = inflater.inflate(result, filled, result.length - filled);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IllegalStateException("Compressed record batch is truncated");
+                    }
+                    filled += inflated;
+                }
+                return ByteBuffer.wrap(result, 0, filled);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt compressed record batch", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    abstract byte[] compress(byte[] data, int offset, int length);
+
+    abstract ByteBuffer decompress(ByteBuffer data);
+
+    static CompressionType forId(int id) {
+        CompressionType[] types = values();
+        if (id < 0 || id >= types.length) {
+            throw new IllegalStateException("Unknown compression type " + id);
+        }
+        return types[id];
+    }
+}
@@ -0,0 +1,23 @@
+package kafka.src.message;
+
+/**
+ * Application metadata attached to a record, e.g. a trace id. The value may
+ * be null.
+ */
+public class Header {
+    private final String key;
+    private final byte[] value;
+
+    public Header(String key, byte[] value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,45 @@
+package kafka.src.message;
+
+import java.util.List;
+
+/**
+ * One decoded record of a {@link RecordBatch}. Key and value may be null.
+ */
+public class Record {
+    private final long offset;
+    private final long timestamp;
+    private final byte[] key;
+    private final byte[] value;
+    private final List<Header> headers;
+
+    public Record(long offset, long timestamp, byte[] key, byte[] value, List<Header> headers) {
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.key = key;
+        this.value = value;
+        this.headers = headers;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Milliseconds since the epoch, set by the producer.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public List<Header> getHeaders() {
+        return headers;
+    }
+}
@@ -0,0 +1,324 @@
+package kafka.src.message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary batch of records, the unit the producer sends, the log stores and
+ * a fetch returns. The broker never decodes the records: it checks the CRC,
+ * writes the base offset and copies the bytes.
+ *
+ * <pre>
+ * [long baseOffset][int batchLength][byte magic][int crc][byte attributes]
+ * [int lastOffsetDelta][long baseTimestamp][long maxTimestamp][int recordCount]
+ * [records]
+ *
+ * record: [varint length][byte attributes][varlong timestampDelta][varint offsetDelta]
+ *         [varint keyLength][key][varint valueLength][value]
+ *         [varint headerCount] ([varint keyLength][key][varint valueLength][value])*
+ * </pre>
+ *
+ * batchLength counts the bytes after its own field. The CRC32C covers
+ * attributes to the end, so the base offset can be set without recomputing
+ * it. The low bits of the attributes hold the {@link CompressionType}; the
+ * records section is compressed as one block. Offsets and timestamps are
+ * stored as varint deltas from the batch base, lengths of -1 mean null.
+ */
+public class RecordBatch {
+    public static final int BASE_OFFSET_OFFSET = 0;
+    public static final int LENGTH_OFFSET = 8;
+    /**
+     * Bytes before batchLength starts counting.
+     */
+    public static final int LOG_OVERHEAD = 12;
+    static final int MAGIC_OFFSET = 12;
+    static final int CRC_OFFSET = 13;
+    static final int ATTRIBUTES_OFFSET = 17;
+    public static final int LAST_OFFSET_DELTA_OFFSET = 18;
+    static final int BASE_TIMESTAMP_OFFSET = 22;
+    static final int MAX_TIMESTAMP_OFFSET = 30;
+    static final int RECORD_COUNT_OFFSET = 38;
+    public static final int HEADER_BYTES = 42;
+    static final byte MAGIC = 1;
+    private static final int COMPRESSION_MASK = 0x07;
+
+    // Exactly one batch, from index 0 to the limit
+    private final ByteBuffer buffer;
+
+    private RecordBatch(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * The batch starting at buffer's position. Only the header is checked.
+     */
+    public static RecordBatch wrap(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES) {
+            throw new IllegalArgumentException("Record batch of " + buffer.remaining() + " bytes is truncated");
+        }
+        int size = sizeAt(buffer, buffer.position());
+        if (size < HEADER_BYTES || size > buffer.remaining()) {
+            throw new IllegalArgumentException("Record batch of " + size + " bytes does not match "
+                    + buffer.remaining() + " bytes received");
+        }
+        return new RecordBatch(buffer.slice(buffer.position(), size));
+    }
+
+    /**
+     * Full size of the batch whose header starts at position.
+     */
+    public static int sizeAt(ByteBuffer buffer, int position) {
+        return LOG_OVERHEAD + buffer.getInt(position + LENGTH_OFFSET);
+    }
+
+    public static long baseOffsetAt(ByteBuffer buffer, int position) {
+        return buffer.getLong(position + BASE_OFFSET_OFFSET);
+    }
+
+    public static long lastOffsetAt(ByteBuffer buffer, int position) {
+        return baseOffsetAt(buffer, position) + buffer.getInt(position + LAST_OFFSET_DELTA_OFFSET);
+    }
+
+    /**
+     * Whether the bytes at position form a whole batch with a matching CRC,
+     * e.g. to find where a log torn by a crash ends.
+     */
+    public static boolean isValidAt(ByteBuffer buffer, int position, int limit) {
+        if (position + HEADER_BYTES > limit) {
+            return false;
+        }
+        int size = sizeAt(buffer, position);
+        if (size < HEADER_BYTES || size > limit - position || buffer.get(position + MAGIC_OFFSET) != MAGIC) {
+            return false;
+        }
+        return new RecordBatch(buffer.slice(position, size)).isValid();
+    }
+
+    public long getBaseOffset() {
+        return buffer.getLong(BASE_OFFSET_OFFSET);
+    }
+
+    public long getLastOffset() {
+        return getBaseOffset() + buffer.getInt(LAST_OFFSET_DELTA_OFFSET);
+    }
+
+    public int getRecordCount() {
+        return buffer.getInt(RECORD_COUNT_OFFSET);
+    }
+
+    public long getBaseTimestamp() {
+        return buffer.getLong(BASE_TIMESTAMP_OFFSET);
+    }
+
+    public long getMaxTimestamp() {
+        return buffer.getLong(MAX_TIMESTAMP_OFFSET);
+    }
+
+    public CompressionType getCompression() {
+        return CompressionType.forId(buffer.get(ATTRIBUTES_OFFSET) & COMPRESSION_MASK);
+    }
+
+    public int getSizeInBytes() {
+        return buffer.limit();
+    }
+
+    /**
+     * The encoded batch, positioned at its first byte.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    public boolean isValid() {
+        return buffer.get(MAGIC_OFFSET) == MAGIC && headerError() == null
+                && buffer.getInt(CRC_OFFSET) == computeChecksum();
+    }
+
+    /**
+     * Throws when the header contradicts itself or the stored CRC does not
+     * match the bytes. The log derives offsets from lastOffsetDelta, so it
+     * must agree with the record count.
+     */
+    public void ensureValid() {
+        if (buffer.get(MAGIC_OFFSET) != MAGIC) {
+            throw new IllegalStateException("Record batch at offset " + getBaseOffset() + " has unknown magic "
+                    + buffer.get(MAGIC_OFFSET));
+        }
+        String error = headerError();
+        if (error != null) {
+            throw new IllegalStateException("Record batch at offset " + getBaseOffset() + " " + error);
+        }
+        if (buffer.getInt(CRC_OFFSET) != computeChecksum()) {
+            throw new IllegalStateException("Record batch at offset " + getBaseOffset() + " is corrupt, CRC mismatch");
+        }
+    }
+
+    // Null when batchLength, recordCount and lastOffsetDelta are consistent
+    private String headerError() {
+        int size = sizeAt(buffer, 0);
+        if (size != buffer.limit()) {
+            return "declares " + size + " bytes but holds " + buffer.limit();
+        }
+        int recordCount = getRecordCount();
+        int lastOffsetDelta = buffer.getInt(LAST_OFFSET_DELTA_OFFSET);
+        if (recordCount <= 0 || lastOffsetDelta != recordCount - 1) {
+            return "has lastOffsetDelta " + lastOffsetDelta + " for " + recordCount + " records";
+        }
+        return null;
+    }
+
+    private int computeChecksum() {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(ATTRIBUTES_OFFSET, buffer.limit() - ATTRIBUTES_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Checks the CRC and decodes every record.
+     */
+    public List<Record> records() {
+        ensureValid();
+        long baseOffset = getBaseOffset();
+        long baseTimestamp = getBaseTimestamp();
+        int count = getRecordCount();
+        ByteBuffer records = getCompression().decompress(buffer.slice(HEADER_BYTES, buffer.limit() - HEADER_BYTES));
+        List<Record> decoded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = ByteUtils.readVarint(records);
+            int end = records.position() + length;
+            records.get(); // Record attributes, unused
+            long timestamp = baseTimestamp + ByteUtils.readVarlong(records);
+            long offset = baseOffset + ByteUtils.readVarint(records);
+            byte[] key = readBytes(records);
+            byte[] value = readBytes(records);
+            int headerCount = ByteUtils.readVarint(records);
+            List<Header> headers = headerCount == 0 ? Collections.emptyList() : new ArrayList<>(headerCount);
+            for (int h = 0; h < headerCount; h++) {
+                String headerKey = new String(readBytes(records), StandardCharsets.UTF_8);
+                headers.add(new Header(headerKey, readBytes(records)));
+            }
+            records.position(end);
+            decoded.add(new Record(offset, timestamp, key, value, headers));
+        }
+        return decoded;
+    }
+
+    private static byte[] readBytes(ByteBuffer records) {
+        int length = ByteUtils.readVarint(records);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        records.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Encodes records into one growing array, after room for the header.
+     * Not thread safe.
+     */
+    public static class Builder {
+        private byte[] buffer;
+        private int size = HEADER_BYTES;
+        private int count;
+        private long baseTimestamp;
+        private long maxTimestamp;
+
+        public Builder(int initialCapacity) {
+            this.buffer = new byte[Math.max(HEADER_BYTES + 16, initialCapacity)];
+        }
+
+        public void append(long timestamp, byte[] key, byte[] value, List<Header> headers) {
+            if (count == 0) {
+                baseTimestamp = timestamp;
+                maxTimestamp = timestamp;
+            }
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            long timestampDelta = timestamp - baseTimestamp;
+            byte[][] headerKeys = new byte[headers.size()][];
+            int bodyBytes = 1 + ByteUtils.sizeOfVarlong(timestampDelta) + ByteUtils.sizeOfVarint(count)
+                    + sizeOfBytes(key) + sizeOfBytes(value) + ByteUtils.sizeOfVarint(headers.size());
+            for (int h = 0; h < headers.size(); h++) {
+                headerKeys[h] = headers.get(h).getKey().getBytes(StandardCharsets.UTF_8);
+                bodyBytes += sizeOfBytes(headerKeys[h]) + sizeOfBytes(headers.get(h).getValue());
+            }
+            ensureCapacity(size + ByteUtils.sizeOfVarint(bodyBytes) + bodyBytes);
+            int position = ByteUtils.writeVarint(bodyBytes, buffer, size);
+            buffer[position++] = 0;
+            position = ByteUtils.writeVarlong(timestampDelta, buffer, position);
+            position = ByteUtils.writeVarint(count, buffer, position);
+            position = writeBytes(key, position);
+            position = writeBytes(value, position);
+            position = ByteUtils.writeVarint(headers.size(), buffer, position);
+            for (int h = 0; h < headers.size(); h++) {
+                position = writeBytes(headerKeys[h], position);
+                position = writeBytes(headers.get(h).getValue(), position);
+            }
+            size = position;
+            count++;
+        }
+
+        private static int sizeOfBytes(byte[] bytes) {
+            return bytes == null ? ByteUtils.sizeOfVarint(-1)
+                    : ByteUtils.sizeOfVarint(bytes.length) + bytes.length;
+        }
+
+        private int writeBytes(byte[] bytes, int position) {
+            if (bytes == null) {
+                return ByteUtils.writeVarint(-1, buffer, position);
+            }
+            position = ByteUtils.writeVarint(bytes.length, buffer, position);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            return position + bytes.length;
+        }
+
+        /**
+         * Uncompressed size of the batch so far.
+         */
+        public int getSizeInBytes() {
+            return size;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Encodes the batch with base offset 0; the broker assigns the real
+         * one on append.
+         */
+        public RecordBatch build(CompressionType compression) {
+            byte[] batch;
+            if (compression == CompressionType.NONE) {
+                batch = Arrays.copyOf(buffer, size);
+            } else {
+                byte[] records = compression.compress(buffer, HEADER_BYTES, size - HEADER_BYTES);
+                batch = new byte[HEADER_BYTES + records.length];
+                System.arraycopy(records, 0, batch, HEADER_BYTES, records.length);
+            }
+            ByteBuffer header = ByteBuffer.wrap(batch);
+            header.putLong(BASE_OFFSET_OFFSET, 0);
+            header.putInt(LENGTH_OFFSET, batch.length - LOG_OVERHEAD);
+            header.put(MAGIC_OFFSET, MAGIC);
+            header.put(ATTRIBUTES_OFFSET, (byte) compression.ordinal());
+            header.putInt(LAST_OFFSET_DELTA_OFFSET, Math.max(0, count - 1));
+            header.putLong(BASE_TIMESTAMP_OFFSET, baseTimestamp);
+            header.putLong(MAX_TIMESTAMP_OFFSET, maxTimestamp);
+            header.putInt(RECORD_COUNT_OFFSET, count);
+            RecordBatch built = new RecordBatch(header);
+            header.putInt(CRC_OFFSET, built.computeChecksum());
+            return built;
+        }
+
+        private void ensureCapacity(int needed) {
+            if (needed > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+            }
+        }
+    }
+}
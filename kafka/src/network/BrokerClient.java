@@ -0,0 +1,250 @@
+package kafka.src.network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import kafka.src.consumer.FetchResult;
+import kafka.src.message.RecordBatch;
+import kafka.src.storage.LogRecords;
+
+/**
+ * One pipelined connection to a {@link BrokerServer}. Any number of threads
+ * may send at once; each request is written under a short lock and its
+ * future is queued in send order. A reader thread completes the futures as
+ * responses arrive, in that same order.
+ *
+ * The server handles one request per connection at a time, so a long poll
+ * fetch delays everything sent after it. Producers and consumers that
+ * should not wait on each other use separate clients.
+ */
+public class BrokerClient implements AutoCloseable {
+    private static final class Pending {
+        final int correlationId;
+        final CompletableFuture<ByteBuffer> future;
+
+        Pending(int correlationId, CompletableFuture<ByteBuffer> future) {
+            this.correlationId = correlationId;
+            this.future = future;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final SocketChannel channel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
+    private final Thread reader;
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+    public BrokerClient(InetSocketAddress address) {
+        this.address = address;
+        try {
+            this.channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not connect to broker " + address, e);
+        }
+        this.reader = new Thread(this::readResponses, "kafka-client-" + address.getPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Appends the batch to one partition. Completes with the offset of its
+     * first record.
+     */
+    public CompletableFuture<Long> produce(String topic, int partition, RecordBatch batch) {
+        int bodyBytes = Protocol.sizeOf(topic) + 4 + 4 + batch.getSizeInBytes();
+        int correlationId = nextCorrelationId.incrementAndGet();
+        ByteBuffer frame = Protocol.request(Protocol.PRODUCE, correlationId, bodyBytes);
+        Protocol.putString(frame, topic);
+        frame.putInt(partition);
+        frame.putInt(batch.getSizeInBytes());
+        frame.put(batch.getBuffer());
+        return send(correlationId, frame).thenApply(ByteBuffer::getLong);
+    }
+
+    /**
+     * Fetches for one consumer of a group, waiting up to maxWait on the
+     * broker when nothing is available yet. maxBytes may be at most
+     * Protocol.MAX_FETCH_BYTES, a larger response would not fit in a frame.
+     */
+    public CompletableFuture<FetchResult> fetch(String groupId, String consumerId, int maxRecords, int maxBytes,
+                                                long maxWait, TimeUnit unit) {
+        if (maxBytes <= 0 || maxBytes > Protocol.MAX_FETCH_BYTES) {
+            throw new IllegalArgumentException("Fetch max bytes must be between 1 and " + Protocol.MAX_FETCH_BYTES
+                    + ", was " + maxBytes);
+        }
+        int bodyBytes = Protocol.sizeOf(groupId) + Protocol.sizeOf(consumerId) + 12;
+        int correlationId = nextCorrelationId.incrementAndGet();
+        ByteBuffer frame = Protocol.request(Protocol.FETCH, correlationId, bodyBytes);
+        Protocol.putString(frame, groupId);
+        Protocol.putString(frame, consumerId);
+        frame.putInt(maxRecords);
+        frame.putInt(maxBytes);
+        frame.putInt((int) Math.min(Integer.MAX_VALUE, unit.toMillis(maxWait)));
+        return send(correlationId, frame).thenApply(BrokerClient::toFetchResult);
+    }
+
+    /**
+     * Adds the consumer to the group and subscribes the group to topic.
+     */
+    public CompletableFuture<Void> subscribe(String groupId, String consumerId, String topic) {
+        int bodyBytes = Protocol.sizeOf(groupId) + Protocol.sizeOf(consumerId) + Protocol.sizeOf(topic);
+        int correlationId = nextCorrelationId.incrementAndGet();
+        ByteBuffer frame = Protocol.request(Protocol.SUBSCRIBE, correlationId, bodyBytes);
+        Protocol.putString(frame, groupId);
+        Protocol.putString(frame, consumerId);
+        Protocol.putString(frame, topic);
+        return send(correlationId, frame).thenApply(body -> null);
+    }
+
+    /**
+     * Commits offsets, partition id to next offset to read, for groupId.
+     * Completes once the broker has made them durable.
+     */
+    public CompletableFuture<Void> commit(String groupId, Map<String, Long> offsets) {
+        int bodyBytes = Protocol.sizeOf(groupId) + 4;
+        for (String partitionId : offsets.keySet()) {
+            bodyBytes += Protocol.sizeOf(partitionId) + 8;
+        }
+        int correlationId = nextCorrelationId.incrementAndGet();
+        ByteBuffer frame = Protocol.request(Protocol.COMMIT, correlationId, bodyBytes);
+        Protocol.putString(frame, groupId);
+        frame.putInt(offsets.size());
+        for (Map.Entry<String, Long> offset : offsets.entrySet()) {
+            Protocol.putString(frame, offset.getKey());
+            frame.putLong(offset.getValue());
+        }
+        return send(correlationId, frame).thenApply(body -> null);
+    }
+
+    public CompletableFuture<Integer> partitionCount(String topic) {
+        int correlationId = nextCorrelationId.incrementAndGet();
+        ByteBuffer frame = Protocol.request(Protocol.METADATA, correlationId, Protocol.sizeOf(topic));
+        Protocol.putString(frame, topic);
+        return send(correlationId, frame).thenApply(ByteBuffer::getInt);
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Connection to " + address + " closed"));
+    }
+
+    // Batches stay in the response buffer, each partition's run is a slice of it
+    private static FetchResult toFetchResult(ByteBuffer body) {
+        int partitionCount = body.getInt();
+        Map<String, LogRecords> batches = new LinkedHashMap<>();
+        int recordCount = 0;
+        int sizeInBytes = 0;
+        for (int i = 0; i < partitionCount; i++) {
+            String partitionId = Protocol.getString(body);
+            long fetchOffset = body.getLong();
+            int size = body.getInt();
+            ByteBuffer records = body.slice(body.position(), size);
+            body.position(body.position() + size);
+            LogRecords batch = new LogRecords(records.asReadOnlyBuffer(), fetchOffset);
+            batches.put(partitionId, batch);
+            recordCount += batch.getCount();
+            sizeInBytes += size;
+        }
+        return new FetchResult(batches, recordCount, sizeInBytes);
+    }
+
+    private CompletableFuture<ByteBuffer> send(int correlationId, ByteBuffer frame) {
+        frame.flip();
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        writeLock.lock();
+        try {
+            // Queue before writing so the reader can never see a response without its future
+            pending.add(new Pending(correlationId, future));
+            while (failure.get() == null && frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            writeLock.unlock();
+        }
+        if (failure.get() != null) {
+            failPending(); // Raced with a failure that drained the queue before our add
+        }
+        return future;
+    }
+
+    private void readResponses() {
+        ByteBuffer header = ByteBuffer.allocate(4 + Protocol.RESPONSE_HEADER_BYTES);
+        try {
+            while (true) {
+                header.clear();
+                readFully(header);
+                header.flip();
+                int length = header.getInt();
+                int correlationId = header.getInt();
+                byte status = header.get();
+                int bodyLength = length - Protocol.RESPONSE_HEADER_BYTES;
+                if (bodyLength < 0 || length > Protocol.MAX_FRAME_BYTES) {
+                    throw new IOException("Malformed response frame from " + address);
+                }
+                ByteBuffer body = ByteBuffer.allocate(bodyLength);
+                readFully(body);
+                body.flip();
+                Pending request = pending.poll();
+                if (request == null || request.correlationId != correlationId) {
+                    throw new IOException("Out of order response from " + address);
+                }
+                if (status == Protocol.OK) {
+                    request.future.complete(body);
+                } else {
+                    request.future.completeExceptionally(new IOException("Broker " + address
+                            + " rejected request: " + Protocol.getString(body)));
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Broker " + address + " closed the connection");
+            }
+        }
+    }
+
+    // Lock free so it can interrupt a writer blocked on a dead broker by closing the channel
+    private void fail(IOException cause) {
+        failure.compareAndSet(null, cause);
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+        failPending();
+    }
+
+    private void failPending() {
+        Pending request;
+        while ((request = pending.poll()) != null) {
+            request.future.completeExceptionally(failure.get());
+        }
+    }
+}
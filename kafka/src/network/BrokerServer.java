@@ -0,0 +1,476 @@
+package kafka.src.network;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kafka.src.broker.Broker;
+import kafka.src.consumer.ConsumerGroup;
+import kafka.src.consumer.FetchResult;
+import kafka.src.message.RecordBatch;
+import kafka.src.storage.LogRecords;
+
+/**
+ * Network front-end for a {@link Broker}, speaking {@link Protocol} over NIO.
+ * One selector thread accepts connections, cuts frames and writes responses.
+ * Requests run on a worker pool, one at a time per connection, so a client's
+ * produce requests are appended in the order it sent them and its responses
+ * come back in that order. A long poll fetch holds only its own connection.
+ *
+ * Fetched records are written with FileChannel.transferTo straight from the
+ * segment file to the socket. Binds to the loopback interface only.
+ */
+public class BrokerServer implements AutoCloseable {
+    private static final int READ_BUFFER_BYTES = 64 << 10;
+    private static final int MAX_GATHERED_BUFFERS = 64;
+    // Past either limit the connection stops being read until its worker and writes catch up
+    private static final int MAX_QUEUED_REQUESTS = 64;
+    private static final int MAX_QUEUED_SENDS = 256;
+
+    // One piece of a response, written by the selector thread
+    private interface Send {
+        /**
+         * Returns true once everything is written.
+         */
+        boolean writeTo(SocketChannel channel) throws IOException;
+    }
+
+    private static final class BufferSend implements Send {
+        final ByteBuffer buffer;
+
+        BufferSend(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            channel.write(buffer);
+            return !buffer.hasRemaining();
+        }
+    }
+
+    private static final class RecordsSend implements Send {
+        final LogRecords records;
+        long written;
+
+        RecordsSend(LogRecords records) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            written += records.writeTo(channel, written);
+            return written == records.getSizeInBytes();
+        }
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        final Queue<ByteBuffer> requests = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queuedRequests = new AtomicInteger();
+        final AtomicBoolean processing = new AtomicBoolean();
+        final Queue<Send> out = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queuedSends = new AtomicInteger();
+        volatile SelectionKey key;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Broker broker;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService workers;
+    // Connections with new responses, handed from workers to the selector thread
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+    private final Thread ioThread;
+    private volatile boolean running = true;
+
+    public BrokerServer(Broker broker) {
+        this(broker, 0);
+    }
+
+    /**
+     * Serves broker on the given loopback port, 0 picks a free one.
+     */
+    public BrokerServer(Broker broker, int port) {
+        this.broker = broker;
+        try {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start broker server on port " + port, e);
+        }
+        AtomicInteger workerIds = new AtomicInteger();
+        // Unbounded: a long poll parks its worker for up to its max wait
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "kafka-net-worker-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ioThread = new Thread(this::run, "kafka-net-" + getPort());
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort());
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = writable.poll()) != null) {
+                    SelectionKey key = connection.key;
+                    if (key.isValid()) {
+                        try {
+                            write(key);
+                        } catch (IOException e) {
+                            disconnect(key);
+                        }
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        disconnect(key); // One broken client must not stop the broker
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Broker server selector failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                disconnect(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.in) < 0) {
+            disconnect(key);
+            return;
+        }
+        ByteBuffer in = connection.in;
+        in.flip();
+        boolean grown = false;
+        boolean received = false;
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < Protocol.REQUEST_HEADER_BYTES || length > Protocol.MAX_FRAME_BYTES) {
+                disconnect(key);
+                return;
+            }
+            if (in.remaining() < 4 + length) {
+                if (in.capacity() < 4 + length) {
+                    // Frame larger than the buffer, move the partial frame into one that fits
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    larger.put(in);
+                    connection.in = larger;
+                    grown = true;
+                }
+                break;
+            }
+            in.getInt();
+            byte[] frame = new byte[length];
+            in.get(frame);
+            connection.requests.add(ByteBuffer.wrap(frame));
+            connection.queuedRequests.incrementAndGet();
+            received = true;
+        }
+        if (!grown) {
+            in.compact();
+        }
+        if (received) {
+            schedule(connection);
+        }
+        updateInterest(key, connection);
+    }
+
+    /**
+     * Selector thread only. Reads are paused while the connection has too
+     * many requests waiting for its worker or responses waiting for the
+     * socket, so a client that pipelines without reading its responses
+     * cannot queue without bound. Every processed request passes through
+     * write, which resumes reading once the queues are short again.
+     */
+    private void updateInterest(SelectionKey key, Connection connection) {
+        if (!key.isValid()) {
+            return;
+        }
+        boolean backlogged = connection.queuedRequests.get() >= MAX_QUEUED_REQUESTS
+                || connection.queuedSends.get() >= MAX_QUEUED_SENDS;
+        int ops = (backlogged ? 0 : SelectionKey.OP_READ) | (connection.out.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+        key.interestOps(ops);
+    }
+
+    private void schedule(Connection connection) {
+        if (connection.processing.compareAndSet(false, true)) {
+            workers.execute(() -> process(connection));
+        }
+    }
+
+    // Runs on a worker, at most one per connection at a time
+    private void process(Connection connection) {
+        while (true) {
+            ByteBuffer request;
+            while ((request = connection.requests.poll()) != null) {
+                List<Send> sends = handle(request);
+                connection.queuedSends.addAndGet(sends.size());
+                connection.out.addAll(sends);
+                connection.queuedRequests.decrementAndGet();
+                writable.add(connection);
+                selector.wakeup();
+            }
+            connection.processing.set(false);
+            // A frame queued after the poll above but before the reset would otherwise wait
+            if (connection.requests.isEmpty() || !connection.processing.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private List<Send> handle(ByteBuffer request) {
+        byte api = request.get();
+        int correlationId = request.getInt();
+        List<Send> sends = new ArrayList<>(2);
+        try {
+            switch (api) {
+                case Protocol.PRODUCE:
+                    sends.add(new BufferSend(produce(correlationId, request)));
+                    break;
+                case Protocol.FETCH:
+                    fetch(correlationId, request, sends);
+                    break;
+                case Protocol.SUBSCRIBE:
+                    sends.add(new BufferSend(subscribe(correlationId, request)));
+                    break;
+                case Protocol.METADATA:
+                    sends.add(new BufferSend(metadata(correlationId, request)));
+                    break;
+                case Protocol.COMMIT:
+                    sends.add(new BufferSend(commit(correlationId, request)));
+                    break;
+                default:
+                    sends.add(new BufferSend(Protocol.error(correlationId, "Unknown api " + api)));
+            }
+        } catch (Exception e) {
+            sends.clear();
+            sends.add(new BufferSend(Protocol.error(correlationId, e.getMessage())));
+        }
+        return sends;
+    }
+
+    private ByteBuffer produce(int correlationId, ByteBuffer request) {
+        String topic = Protocol.getString(request);
+        int partition = request.getInt();
+        int batchBytes = request.getInt();
+        // The frame is already a private copy, the batch is appended straight from it
+        RecordBatch batch = RecordBatch.wrap(request.slice(request.position(), batchBytes));
+        if (batch.getSizeInBytes() != batchBytes) {
+            throw new IllegalArgumentException("Record batch declares " + batch.getSizeInBytes() + " bytes but "
+                    + batchBytes + " were sent");
+        }
+        long baseOffset = broker.publishBatch(topic, partition, batch);
+        ByteBuffer response = Protocol.responseHeader(correlationId, Protocol.OK, 8, 8);
+        response.putLong(baseOffset);
+        response.flip();
+        return response;
+    }
+
+    // Record bytes are not copied into the response, they follow their batch header as a RecordsSend
+    private void fetch(int correlationId, ByteBuffer request, List<Send> sends) {
+        String groupId = Protocol.getString(request);
+        String consumerId = Protocol.getString(request);
+        int maxRecords = request.getInt();
+        // Runs from several partitions must still fit in one frame the client accepts
+        int maxBytes = Math.min(request.getInt(), Protocol.MAX_FETCH_BYTES);
+        int maxWaitMillis = request.getInt();
+        ConsumerGroup group = broker.getConsumerGroup(groupId);
+        if (group == null) {
+            throw new IllegalArgumentException("Consumer group " + groupId + " does not exist");
+        }
+        FetchResult result = group.fetch(consumerId, maxRecords, maxBytes, maxWaitMillis, TimeUnit.MILLISECONDS);
+        Map<String, LogRecords> batches = result.getBatches();
+        int bodyBytes = 4;
+        for (Map.Entry<String, LogRecords> batch : batches.entrySet()) {
+            bodyBytes += Protocol.sizeOf(batch.getKey()) + 12 + batch.getValue().getSizeInBytes();
+        }
+        ByteBuffer header = Protocol.responseHeader(correlationId, Protocol.OK, bodyBytes, 4);
+        header.putInt(batches.size());
+        header.flip();
+        sends.add(new BufferSend(header));
+        for (Map.Entry<String, LogRecords> batch : batches.entrySet()) {
+            LogRecords records = batch.getValue();
+            ByteBuffer batchHeader = ByteBuffer.allocate(Protocol.sizeOf(batch.getKey()) + 12);
+            Protocol.putString(batchHeader, batch.getKey());
+            batchHeader.putLong(records.getFirstOffset());
+            batchHeader.putInt(records.getSizeInBytes());
+            batchHeader.flip();
+            sends.add(new BufferSend(batchHeader));
+            sends.add(new RecordsSend(records));
+        }
+    }
+
+    private ByteBuffer subscribe(int correlationId, ByteBuffer request) throws Exception {
+        String groupId = Protocol.getString(request);
+        String consumerId = Protocol.getString(request);
+        String topic = Protocol.getString(request);
+        broker.addConsumerToConsumerGroup(groupId, consumerId);
+        broker.subscribe(groupId, topic);
+        ByteBuffer response = Protocol.responseHeader(correlationId, Protocol.OK, 0, 0);
+        response.flip();
+        return response;
+    }
+
+    // Waits for the offsets to be durable; commits from all connections share one sync
+    private ByteBuffer commit(int correlationId, ByteBuffer request) {
+        String groupId = Protocol.getString(request);
+        int count = request.getInt();
+        Map<String, Long> offsets = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String partitionId = Protocol.getString(request);
+            offsets.put(partitionId, request.getLong());
+        }
+        ConsumerGroup group = broker.getConsumerGroup(groupId);
+        if (group == null) {
+            throw new IllegalArgumentException("Consumer group " + groupId + " does not exist");
+        }
+        group.commitSync(offsets);
+        ByteBuffer response = Protocol.responseHeader(correlationId, Protocol.OK, 0, 0);
+        response.flip();
+        return response;
+    }
+
+    private ByteBuffer metadata(int correlationId, ByteBuffer request) {
+        String topic = Protocol.getString(request);
+        int partitionCount = broker.getTopic(topic).getPartitionCount();
+        ByteBuffer response = Protocol.responseHeader(correlationId, Protocol.OK, 4, 4);
+        response.putInt(partitionCount);
+        response.flip();
+        return response;
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        while (!connection.out.isEmpty()) {
+            Send head = connection.out.peek();
+            boolean done;
+            if (head instanceof BufferSend) {
+                done = writeBuffers(connection);
+            } else {
+                done = head.writeTo(connection.channel);
+                if (done) {
+                    connection.out.poll();
+                    connection.queuedSends.decrementAndGet();
+                }
+            }
+            if (!done) {
+                break; // Socket buffer full, resume when writable
+            }
+        }
+        updateInterest(key, connection);
+    }
+
+    // Gathering write of the leading plain buffers, pipelined responses go out in one syscall
+    private boolean writeBuffers(Connection connection) throws IOException {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (Send send : connection.out) {
+            if (!(send instanceof BufferSend) || buffers.size() == MAX_GATHERED_BUFFERS) {
+                break;
+            }
+            buffers.add(((BufferSend) send).buffer);
+        }
+        connection.channel.write(buffers.toArray(new ByteBuffer[0]));
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                return false;
+            }
+            connection.out.poll();
+            connection.queuedSends.decrementAndGet();
+        }
+        return true;
+    }
+
+    private void disconnect(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Nothing left to clean up
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package kafka.src.network;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import kafka.src.broker.Broker;
+import kafka.src.consumer.FetchResult;
+import kafka.src.message.CompressionType;
+import kafka.src.message.Record;
+import kafka.src.producer.Producer;
+import kafka.src.producer.ProducerConfig;
+import kafka.src.producer.RecordMetadata;
+import kafka.src.strategy.partition.HashedPartitionStrategy;
+
+/**
+ * Localhost round trip through the network front-end: starts a BrokerServer
+ * on a free port, produces over one connection, fetches and commits over
+ * another, then checks that a long poll wakes up on a late append.
+ * Fails with an exception if any record is lost or duplicated.
+ */
+public class NetworkDriver {
+    private static final String TOPIC = "events";
+    private static final int PARTITIONS = 3;
+    private static final int MESSAGES = 100_000;
+
+    public static void main(String[] args) {
+        Broker broker = new Broker();
+        broker.createTopic(TOPIC, PARTITIONS, new HashedPartitionStrategy());
+        BrokerServer server = new BrokerServer(broker, 0);
+        BrokerClient producerClient = new BrokerClient(server.getAddress());
+        BrokerClient consumerClient = new BrokerClient(server.getAddress());
+        Producer producer = new Producer(new RemotePublisher(producerClient, new HashedPartitionStrategy()),
+                new ProducerConfig(ProducerConfig.DEFAULT_LINGER_MS, ProducerConfig.DEFAULT_BATCH_SIZE,
+                        CompressionType.DEFLATE));
+        System.out.println("Broker server listening on " + server.getAddress());
+
+        try {
+            long start = System.nanoTime();
+            List<CompletableFuture<RecordMetadata>> acks = new ArrayList<>(MESSAGES);
+            for (int i = 0; i < MESSAGES; i++) {
+                acks.add(producer.send(TOPIC, "user" + (i % 100), "event " + i));
+            }
+            producer.flush();
+            for (CompletableFuture<RecordMetadata> ack : acks) {
+                ack.join();
+            }
+            System.out.printf("Produced %d messages in %d ms%n", MESSAGES, elapsedMillis(start));
+
+            RemoteConsumer consumer = new RemoteConsumer(consumerClient, "network-group", "consumer1");
+            consumer.subscribe(TOPIC);
+            start = System.nanoTime();
+            boolean[] seen = new boolean[MESSAGES];
+            int received = 0;
+            while (received < MESSAGES) {
+                FetchResult result = consumer.poll(1, TimeUnit.SECONDS);
+                if (result.isEmpty()) {
+                    throw new IllegalStateException("Fetch timed out after " + received + " messages");
+                }
+                for (Record record : result.toRecords()) {
+                    String value = new String(record.getValue(), StandardCharsets.UTF_8);
+                    int index = Integer.parseInt(value.substring("event ".length()));
+                    if (seen[index]) {
+                        throw new IllegalStateException("Received " + value + " twice");
+                    }
+                    seen[index] = true;
+                    received++;
+                }
+                consumer.commitAsync(result.getNextOffsets());
+            }
+            System.out.printf("Fetched and committed %d messages in %d ms%n", received, elapsedMillis(start));
+
+            CompletableFuture<FetchResult> longPoll = consumer.fetchAsync(10, 1024, 5, TimeUnit.SECONDS);
+            Thread.sleep(100); // Let the fetch park on the broker
+            long sent = System.nanoTime();
+            producer.send(TOPIC, "late", "late event").join();
+            FetchResult late = longPoll.join();
+            if (late.isEmpty()) {
+                throw new IllegalStateException("Long poll returned without the late message");
+            }
+            System.out.printf("Long poll woke with \"%s\" %d ms after the append%n",
+                    new String(late.toRecords().get(0).getValue(), StandardCharsets.UTF_8), elapsedMillis(sent));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            producer.close();
+            producerClient.close();
+            consumerClient.close();
+            server.close();
+            broker.close();
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
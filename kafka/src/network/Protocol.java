@@ -0,0 +1,103 @@
+package kafka.src.network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import kafka.src.storage.LogConfig;
+
+/**
+ * Wire format between {@link BrokerServer} and {@link BrokerClient}. Every
+ * frame starts with its length, not counting the length field itself.
+ *
+ * <pre>
+ * request:  [int length][byte api][int correlationId][body]
+ * response: [int length][int correlationId][byte status][body]
+ *
+ * PRODUCE   body: [str topic][int partition][int batchBytes][record batch]
+ *           response: [long baseOffset]
+ * FETCH     body: [str groupId][str consumerId][int maxRecords][int maxBytes][int maxWaitMillis]
+ *           maxBytes is capped at MAX_FETCH_BYTES so the response fits in a frame
+ *           response: [int partitionCount] ([str partitionId][long fetchOffset][int size][record batches])*
+ * SUBSCRIBE body: [str groupId][str consumerId][str topic]
+ *           response: empty
+ * METADATA  body: [str topic]
+ *           response: [int partitionCount]
+ * COMMIT    body: [str groupId][int count] ([str partitionId][long offset])*
+ *           response: empty, once the offsets are durable
+ * errors:   status ERROR, body [str message]
+ * </pre>
+ *
+ * Strings are [short length][UTF-8 bytes]. Record batches keep the layout
+ * the producer encoded, so the server stores them and later copies them
+ * from the segment file unchanged.
+ * Responses on a connection come back in request order.
+ */
+final class Protocol {
+    static final byte PRODUCE = 1;
+    static final byte FETCH = 2;
+    static final byte SUBSCRIBE = 3;
+    static final byte METADATA = 4;
+    static final byte COMMIT = 5;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    static final int REQUEST_HEADER_BYTES = 1 + 4;
+    static final int RESPONSE_HEADER_BYTES = 4 + 1;
+    // Record bytes one fetch response may carry. Logs store no batch larger
+    // than this, so even a fetch whose first batch is over maxBytes fits
+    static final int MAX_FETCH_BYTES = LogConfig.MAX_BATCH_BYTES;
+    // Leaves 1 MiB on top of the records for the response and partition headers
+    static final int MAX_FRAME_BYTES = MAX_FETCH_BYTES + (1 << 20);
+
+    private Protocol() {
+    }
+
+    static int sizeOf(String value) {
+        return 2 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Allocates a request frame with the header written; the caller adds
+     * bodyBytes of body and flips it.
+     */
+    static ByteBuffer request(byte api, int correlationId, int bodyBytes) {
+        ByteBuffer frame = ByteBuffer.allocate(4 + REQUEST_HEADER_BYTES + bodyBytes);
+        frame.putInt(REQUEST_HEADER_BYTES + bodyBytes);
+        frame.put(api);
+        frame.putInt(correlationId);
+        return frame;
+    }
+
+    /**
+     * Allocates a response header. bodyBytes counts every body byte, also
+     * those sent separately after this buffer.
+     */
+    static ByteBuffer responseHeader(int correlationId, byte status, int bodyBytes, int capacity) {
+        ByteBuffer frame = ByteBuffer.allocate(4 + RESPONSE_HEADER_BYTES + capacity);
+        frame.putInt(RESPONSE_HEADER_BYTES + bodyBytes);
+        frame.putInt(correlationId);
+        frame.put(status);
+        return frame;
+    }
+
+    static ByteBuffer error(int correlationId, String message) {
+        String text = message == null ? "Unknown error" : message;
+        ByteBuffer frame = responseHeader(correlationId, ERROR, sizeOf(text), sizeOf(text));
+        putString(frame, text);
+        frame.flip();
+        return frame;
+    }
+}
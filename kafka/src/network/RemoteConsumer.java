@@ -0,0 +1,59 @@
+package kafka.src.network;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import kafka.src.consumer.ConsumerGroup;
+import kafka.src.consumer.FetchResult;
+
+/**
+ * A consumer group member on the far side of a {@link BrokerClient}.
+ * Offsets are tracked by the broker's group, as for local consumers.
+ */
+public class RemoteConsumer {
+    private final BrokerClient client;
+    private final String groupId;
+    private final String consumerId;
+
+    public RemoteConsumer(BrokerClient client, String groupId, String consumerId) {
+        this.client = client;
+        this.groupId = groupId;
+        this.consumerId = consumerId;
+    }
+
+    public void subscribe(String topic) {
+        client.subscribe(groupId, consumerId, topic).join();
+    }
+
+    public FetchResult poll(long maxWait, TimeUnit unit) {
+        return poll(ConsumerGroup.DEFAULT_MAX_POLL_RECORDS, ConsumerGroup.DEFAULT_MAX_POLL_BYTES, maxWait, unit);
+    }
+
+    public FetchResult poll(int maxRecords, int maxBytes, long maxWait, TimeUnit unit) {
+        return fetchAsync(maxRecords, maxBytes, maxWait, unit).join();
+    }
+
+    /**
+     * Sends the fetch without waiting for it; several may be in flight.
+     */
+    public CompletableFuture<FetchResult> fetchAsync(int maxRecords, int maxBytes, long maxWait, TimeUnit unit) {
+        return client.fetch(groupId, consumerId, maxRecords, maxBytes, maxWait, unit);
+    }
+
+    /**
+     * Commits offsets, partition id to next offset to read, typically
+     * FetchResult.getNextOffsets() once a fetch is processed.
+     */
+    public CompletableFuture<Void> commitAsync(Map<String, Long> offsets) {
+        return client.commit(groupId, offsets);
+    }
+
+    public void commitSync(Map<String, Long> offsets) {
+        commitAsync(offsets).join();
+    }
+
+    public String getConsumerId() {
+        return consumerId;
+    }
+}
@@ -0,0 +1,36 @@
+package kafka.src.network;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import kafka.src.message.RecordBatch;
+import kafka.src.producer.MessagePublisher;
+import kafka.src.strategy.partition.IPartitionStrategy;
+
+/**
+ * Publishes to a broker over a {@link BrokerClient}. Partition counts are
+ * looked up once per topic; routing uses the given strategy on this side,
+ * so it should match the one the topic was created with.
+ */
+public class RemotePublisher implements MessagePublisher {
+    private final BrokerClient client;
+    private final IPartitionStrategy partitionStrategy;
+    private final Map<String, Integer> partitionCounts = new ConcurrentHashMap<>();
+
+    public RemotePublisher(BrokerClient client, IPartitionStrategy partitionStrategy) {
+        this.client = client;
+        this.partitionStrategy = partitionStrategy;
+    }
+
+    @Override
+    public int partitionFor(String topic, String key) {
+        int partitionCount = partitionCounts.computeIfAbsent(topic, name -> client.partitionCount(name).join());
+        return partitionStrategy.getPartition(key, partitionCount);
+    }
+
+    @Override
+    public CompletableFuture<Long> publishBatch(String topic, int partition, RecordBatch batch) {
+        return client.produce(topic, partition, batch);
+    }
+}
@@ -0,0 +1,32 @@
+package kafka.src.producer;
+
+import java.util.concurrent.CompletableFuture;
+
+import kafka.src.broker.Broker;
+import kafka.src.message.RecordBatch;
+
+/**
+ * Publishes to a broker in the same process. Appends run on the calling
+ * thread, so the future is already complete when returned.
+ */
+class LocalPublisher implements MessagePublisher {
+    private final Broker broker;
+
+    LocalPublisher(Broker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public int partitionFor(String topic, String key) {
+        return broker.getTopic(topic).partitionFor(key);
+    }
+
+    @Override
+    public CompletableFuture<Long> publishBatch(String topic, int partition, RecordBatch batch) {
+        try {
+            return CompletableFuture.completedFuture(broker.publishBatch(topic, partition, batch));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package kafka.src.producer;
+
+import java.util.concurrent.CompletableFuture;
+
+import kafka.src.message.RecordBatch;
+
+/**
+ * Where a Producer's batches go: the broker in this process, or one across
+ * the network.
+ */
+public interface MessagePublisher {
+    /**
+     * Index of the partition key is routed to.
+     */
+    int partitionFor(String topic, String key);
+
+    /**
+     * Appends the batch to one partition. The future completes with the
+     * offset of its first record. Batches to the same partition are appended in
+     * the order they were published.
+     */
+    CompletableFuture<Long> publishBatch(String topic, int partition, RecordBatch batch);
+}
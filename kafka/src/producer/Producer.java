@@ -1,16 +1,79 @@
 package kafka.src.producer;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 import kafka.src.broker.Broker;
+import kafka.src.message.CompressionType;
+import kafka.src.message.Header;
+import kafka.src.message.RecordBatch;
 
 public class Producer {
-    private final Broker broker;
+    private final MessagePublisher publisher;
+    private final RecordAccumulator accumulator;
 
     public Producer(Broker broker) {
-        this.broker = broker;
+        this(broker, ProducerConfig.defaults());
+    }
+
+    public Producer(Broker broker, ProducerConfig config) {
+        this(new LocalPublisher(broker), config);
+    }
+
+    /**
+     * Producer over any publisher, e.g. a network client for a remote broker.
+     */
+    public Producer(MessagePublisher publisher, ProducerConfig config) {
+        this.publisher = publisher;
+        this.accumulator = new RecordAccumulator(publisher, config);
     }
 
+    /**
+     * Publishes one record and waits for it to be appended, bypassing the
+     * batches.
+     */
     public void publish(String topic, String key, String value) throws Exception {
-        broker.publishToTopic(topic, key, value);
+        RecordBatch.Builder single = new RecordBatch.Builder(RecordBatch.HEADER_BYTES + value.length() + 32);
+        single.append(System.currentTimeMillis(), toBytes(key), toBytes(value), Collections.emptyList());
+        try {
+            publisher.publishBatch(topic, publisher.partitionFor(topic, key), single.build(CompressionType.NONE))
+                    .join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    public CompletableFuture<RecordMetadata> send(String topic, String key, String value) {
+        return send(topic, key, toBytes(value), Collections.emptyList());
+    }
+
+    /**
+     * Queues the record in its partition's batch and returns at once. The
+     * key picks the partition and is stored as UTF-8. The future completes
+     * when the batch is appended, after batch size is reached or linger runs
+     * out.
+     */
+    public CompletableFuture<RecordMetadata> send(String topic, String key, byte[] value, List<Header> headers) {
+        int partition = publisher.partitionFor(topic, key);
+        return accumulator.append(topic, partition, System.currentTimeMillis(), toBytes(key), value, headers);
+    }
+
+    private static byte[] toBytes(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends every queued message now and waits for them to be appended.
+     */
+    public void flush() {
+        accumulator.flush();
+    }
+
+    public void close() {
+        accumulator.close();
     }
 
 }
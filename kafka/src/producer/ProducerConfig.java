@@ -0,0 +1,57 @@
+package kafka.src.producer;
+
+import kafka.src.message.CompressionType;
+
+/**
+ * Batching settings of a Producer. A partition's batch is sent once it holds
+ * batchSize bytes or its first message has waited lingerMs, whichever comes
+ * first. Records buffered or in flight may take up to bufferMemory bytes;
+ * past that, send blocks until the broker acknowledges earlier batches.
+ */
+public class ProducerConfig {
+    public static final long DEFAULT_LINGER_MS = 5;
+    public static final int DEFAULT_BATCH_SIZE = 16 * 1024;
+    public static final int DEFAULT_BUFFER_MEMORY = 32 << 20;
+
+    private final long lingerMs;
+    private final int batchSize;
+    private final CompressionType compression;
+    private final int bufferMemory;
+
+    public ProducerConfig(long lingerMs, int batchSize, CompressionType compression) {
+        this(lingerMs, batchSize, compression, DEFAULT_BUFFER_MEMORY);
+    }
+
+    public ProducerConfig(long lingerMs, int batchSize, CompressionType compression, int bufferMemory) {
+        if (lingerMs < 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Linger must not be negative and batch size must be positive");
+        }
+        if (bufferMemory < batchSize) {
+            throw new IllegalArgumentException("Buffer memory must hold at least one batch");
+        }
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compression = compression;
+        this.bufferMemory = bufferMemory;
+    }
+
+    public static ProducerConfig defaults() {
+        return new ProducerConfig(DEFAULT_LINGER_MS, DEFAULT_BATCH_SIZE, CompressionType.NONE);
+    }
+
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public CompressionType getCompression() {
+        return compression;
+    }
+
+    public int getBufferMemory() {
+        return bufferMemory;
+    }
+}
@@ -0,0 +1,261 @@
+package kafka.src.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import kafka.src.message.CompressionType;
+import kafka.src.message.Header;
+import kafka.src.message.RecordBatch;
+
+/**
+ * One open batch per topic partition, each guarded by its own monitor so
+ * senders to different partitions never contend. Full batches go straight to
+ * a ready queue; a single sender thread drains it, seals batches whose linger
+ * ran out, and hands each batch to the publisher in one call. The sender does
+ * not wait for acknowledgements, so a remote publisher keeps many batches in
+ * flight. Every record holds part of the buffer memory budget from append
+ * until its batch is acknowledged, and append blocks while the budget is
+ * used up.
+ *
+ * A batch is queued for sending while its partition's monitor is held, so
+ * batches of one partition reach the ready queue in the order they were
+ * opened.
+ */
+class RecordAccumulator {
+    private static final int RECORD_OVERHEAD_BYTES = 32;
+
+    private final MessagePublisher publisher;
+    private final ProducerConfig config;
+    private final Map<String, PartitionAccumulator> accumulators = new ConcurrentHashMap<>();
+    private final Queue<ProducerBatch> ready = new ConcurrentLinkedQueue<>();
+    // Batches created and not yet completed, what flush waits for
+    private final Set<ProducerBatch> incomplete = ConcurrentHashMap.newKeySet();
+    // One permit per byte of buffer memory, fair so a large record is not starved
+    private final Semaphore memory;
+    private final Thread sender;
+    private volatile boolean running = true;
+
+    RecordAccumulator(MessagePublisher publisher, ProducerConfig config) {
+        this.publisher = publisher;
+        this.config = config;
+        this.memory = new Semaphore(config.getBufferMemory(), true);
+        this.sender = new Thread(this::runSender, "kafka-producer-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    CompletableFuture<RecordMetadata> append(String topic, int partition, long timestamp, byte[] key, byte[] value,
+            List<Header> headers) {
+        if (!running) {
+            throw new IllegalStateException("Producer is closed");
+        }
+        PartitionAccumulator accumulator = accumulators.computeIfAbsent(topic + "-" + partition,
+                k -> new PartitionAccumulator(topic, partition));
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        // Taken before the monitor, a blocked sender must not hold up its partition
+        int reserved = Math.min(estimateSize(key, value, headers), config.getBufferMemory());
+        try {
+            memory.acquire(reserved);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        boolean full = false;
+        boolean created = false;
+        synchronized (accumulator) {
+            if (accumulator.open == null) {
+                accumulator.open = new ProducerBatch(topic, partition, config.getBatchSize());
+                incomplete.add(accumulator.open);
+                created = true;
+            }
+            try {
+                accumulator.open.append(timestamp, key, value, headers, future, reserved);
+            } catch (RuntimeException e) {
+                memory.release(reserved);
+                throw e;
+            }
+            if (accumulator.open.getSizeInBytes() >= config.getBatchSize()) {
+                ready.add(accumulator.open);
+                accumulator.open = null;
+                full = true;
+            }
+        }
+        if (full || created) {
+            LockSupport.unpark(sender); // New deadline or work to send
+        }
+        return future;
+    }
+
+    /**
+     * Sends every open batch now and waits until all batches created so
+     * far are acknowledged.
+     */
+    void flush() {
+        List<ProducerBatch> waitFor = new ArrayList<>(incomplete);
+        for (PartitionAccumulator accumulator : accumulators.values()) {
+            sealOpen(accumulator);
+        }
+        LockSupport.unpark(sender);
+        for (ProducerBatch batch : waitFor) {
+            batch.done.join();
+        }
+    }
+
+    void close() {
+        flush();
+        running = false;
+        LockSupport.unpark(sender);
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSender() {
+        while (running || !ready.isEmpty()) {
+            ProducerBatch batch;
+            while ((batch = ready.poll()) != null) {
+                send(batch);
+            }
+            long now = System.nanoTime();
+            long lingerNanos = TimeUnit.MILLISECONDS.toNanos(config.getLingerMs());
+            long nextDeadline = Long.MAX_VALUE;
+            for (PartitionAccumulator accumulator : accumulators.values()) {
+                long createdNanos = accumulator.openCreatedNanos();
+                if (createdNanos == Long.MIN_VALUE) {
+                    continue;
+                }
+                long deadline = createdNanos + lingerNanos;
+                if (deadline - now <= 0) {
+                    sealOpen(accumulator);
+                } else {
+                    nextDeadline = Math.min(nextDeadline, deadline);
+                }
+            }
+            if (ready.isEmpty() && running) {
+                if (nextDeadline == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, nextDeadline - now);
+                }
+            }
+        }
+        // Messages appended while close was running
+        for (PartitionAccumulator accumulator : accumulators.values()) {
+            sealOpen(accumulator);
+        }
+        ProducerBatch batch;
+        while ((batch = ready.poll()) != null) {
+            send(batch);
+        }
+    }
+
+    private void sealOpen(PartitionAccumulator accumulator) {
+        synchronized (accumulator) {
+            if (accumulator.open != null) {
+                ready.add(accumulator.open);
+                accumulator.open = null;
+            }
+        }
+    }
+
+    // Record bytes before compression plus a little framing, what the record holds while buffered
+    private static int estimateSize(byte[] key, byte[] value, List<Header> headers) {
+        long size = RECORD_OVERHEAD_BYTES + (key == null ? 0 : key.length) + (value == null ? 0 : value.length);
+        for (Header header : headers) {
+            size += header.getKey().length() + (header.getValue() == null ? 0 : header.getValue().length);
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private void send(ProducerBatch batch) {
+        CompletableFuture<Long> published;
+        try {
+            published = publisher.publishBatch(batch.topic, batch.partition, batch.build(config.getCompression()));
+        } catch (RuntimeException e) {
+            published = CompletableFuture.failedFuture(e);
+        }
+        published.whenComplete((baseOffset, failure) -> {
+            memory.release(batch.reservedBytes);
+            if (failure != null) {
+                batch.fail(failure);
+            } else {
+                batch.complete(baseOffset);
+            }
+            incomplete.remove(batch);
+        });
+    }
+
+    private static class PartitionAccumulator {
+        final String topic;
+        final int partition;
+        // Guarded by this
+        ProducerBatch open;
+
+        PartitionAccumulator(String topic, int partition) {
+            this.topic = topic;
+            this.partition = partition;
+        }
+
+        synchronized long openCreatedNanos() {
+            return open == null ? Long.MIN_VALUE : open.createdNanos;
+        }
+    }
+
+    private static class ProducerBatch {
+        final String topic;
+        final int partition;
+        final long createdNanos = System.nanoTime();
+        final RecordBatch.Builder builder;
+        final List<CompletableFuture<RecordMetadata>> futures = new ArrayList<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        // Buffer memory held by the records, returned once the batch completes
+        int reservedBytes;
+
+        ProducerBatch(String topic, int partition, int batchSize) {
+            this.topic = topic;
+            this.partition = partition;
+            this.builder = new RecordBatch.Builder(batchSize);
+        }
+
+        void append(long timestamp, byte[] key, byte[] value, List<Header> headers,
+                CompletableFuture<RecordMetadata> future, int reserved) {
+            builder.append(timestamp, key, value, headers);
+            futures.add(future);
+            reservedBytes += reserved;
+        }
+
+        int getSizeInBytes() {
+            return builder.getSizeInBytes();
+        }
+
+        RecordBatch build(CompressionType compression) {
+            return builder.build(compression);
+        }
+
+        void complete(long baseOffset) {
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).complete(new RecordMetadata(topic, partition, baseOffset + i));
+            }
+            done.complete(null);
+        }
+
+        void fail(Throwable e) {
+            for (CompletableFuture<RecordMetadata> future : futures) {
+                future.completeExceptionally(e);
+            }
+            done.complete(null);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package kafka.src.producer;
+
+/**
+ * Where a sent message was stored.
+ */
+public class RecordMetadata {
+    private final String topic;
+    private final int partition;
+    private final long offset;
+
+    public RecordMetadata(String topic, int partition, long offset) {
+        this.topic = topic;
+        this.partition = partition;
+        this.offset = offset;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return topic + "-" + partition + "@" + offset;
+    }
+}
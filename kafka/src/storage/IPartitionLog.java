@@ -0,0 +1,45 @@
+package kafka.src.storage;
+
+import kafka.src.message.RecordBatch;
+
+/**
+ * Storage behind a Partition. Offsets are assigned by the log on append and
+ * grow by one per record. Reads may run concurrently with an append.
+ */
+public interface IPartitionLog extends AutoCloseable {
+    /**
+     * Stores batch unchanged apart from its base offset, which the log
+     * assigns, and returns that offset. Its records get consecutive offsets
+     * and nothing else is appended in between.
+     */
+    long append(RecordBatch batch);
+
+    /**
+     * Whole batches from the one holding startOffset on, in one read, until
+     * maxRecords or maxBytes is reached. Batches are never split, so the
+     * first one may start before startOffset or go over maxRecords, and it
+     * is returned even when it alone is larger than maxBytes, so a consumer
+     * always makes progress. A read may stop early at a segment boundary.
+     * Empty when startOffset is not stored.
+     */
+    LogRecords read(long startOffset, int maxRecords, int maxBytes);
+
+    /**
+     * Oldest offset still stored.
+     */
+    long getStartOffset();
+
+    /**
+     * Offset the next append will get.
+     */
+    long getEndOffset();
+
+    /**
+     * Drops data past the retention limits. Logs without retention do nothing.
+     */
+    default void enforceRetention() {
+    }
+
+    @Override
+    void close();
+}
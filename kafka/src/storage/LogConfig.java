@@ -0,0 +1,67 @@
+package kafka.src.storage;
+
+import java.nio.file.Path;
+
+import kafka.src.message.RecordBatch;
+
+/**
+ * Settings shared by every partition log of a broker. A retention limit of
+ * -1 means unlimited; the active segment is never removed by retention.
+ */
+public class LogConfig {
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    public static final int DEFAULT_INDEX_INTERVAL_BYTES = 4096;
+    public static final long UNLIMITED = -1;
+    // Largest batch a log stores, whatever the segment size, so that any
+    // stored batch fits in one network fetch response (see network Protocol)
+    public static final int MAX_BATCH_BYTES = 63 << 20;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexIntervalBytes;
+    private final long retentionBytes;
+    private final long retentionMillis;
+
+    public LogConfig(Path directory, int segmentBytes, int indexIntervalBytes, long retentionBytes,
+            long retentionMillis) {
+        if (segmentBytes < RecordBatch.HEADER_BYTES || indexIntervalBytes <= 0) {
+            throw new IllegalArgumentException("Segment size and index interval must be positive");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.retentionBytes = retentionBytes;
+        this.retentionMillis = retentionMillis;
+    }
+
+    public static LogConfig defaults(Path directory) {
+        return new LogConfig(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_INDEX_INTERVAL_BYTES, UNLIMITED, UNLIMITED);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public int getIndexIntervalBytes() {
+        return indexIntervalBytes;
+    }
+
+    public long getRetentionBytes() {
+        return retentionBytes;
+    }
+
+    public long getRetentionMillis() {
+        return retentionMillis;
+    }
+
+    /**
+     * Largest index a full segment can need, one entry per interval plus one.
+     */
+    int getMaxIndexEntries() {
+        return segmentBytes / indexIntervalBytes + 1;
+    }
+}
@@ -0,0 +1,196 @@
+package kafka.src.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import kafka.src.message.Record;
+import kafka.src.message.RecordBatch;
+
+/**
+ * A run of whole {@link RecordBatch}es read from one segment in their stored
+ * layout. The buffer is a read-only view of the mapped segment, so a fetch
+ * copies nothing until a batch is decoded. The first batch may start before
+ * the fetch offset; iteration skips those records. Records read from a
+ * segment also remember where they sit in the file, so {@link #writeTo} can
+ * send them with FileChannel.transferTo.
+ */
+public class LogRecords implements Iterable<Record> {
+    private static final LogRecords EMPTY = new LogRecords(ByteBuffer.allocate(0), 0, 0, 0, null, 0);
+
+    private final ByteBuffer buffer;
+    private final long startOffset;
+    private final int count;
+    private final long nextOffset;
+    // Null when the records did not come from a segment file
+    private final FileChannel channel;
+    private final long filePosition;
+
+    /**
+     * Batches received as bytes, e.g. from the network, for a fetch from
+     * startOffset. Only batch headers are read.
+     */
+    public LogRecords(ByteBuffer buffer, long startOffset) {
+        int count = 0;
+        long nextOffset = startOffset;
+        for (int position = buffer.position(); position < buffer.limit();
+                position += RecordBatch.sizeAt(buffer, position)) {
+            long lastOffset = RecordBatch.lastOffsetAt(buffer, position);
+            count += (int) (lastOffset - Math.max(startOffset, RecordBatch.baseOffsetAt(buffer, position)) + 1);
+            nextOffset = lastOffset + 1;
+        }
+        this.buffer = buffer;
+        this.startOffset = startOffset;
+        this.count = count;
+        this.nextOffset = nextOffset;
+        this.channel = null;
+        this.filePosition = 0;
+    }
+
+    LogRecords(ByteBuffer buffer, long startOffset, int count, long nextOffset, FileChannel channel,
+            long filePosition) {
+        this.buffer = buffer;
+        this.startOffset = startOffset;
+        this.count = count;
+        this.nextOffset = nextOffset;
+        this.channel = channel;
+        this.filePosition = filePosition;
+    }
+
+    public static LogRecords empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Offset of the first record returned, the fetch offset.
+     */
+    public long getFirstOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Offset to fetch from after these records.
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Records at or after the fetch offset.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Bytes of the whole batches, including records before the fetch offset.
+     */
+    public int getSizeInBytes() {
+        return buffer.remaining();
+    }
+
+    /**
+     * The raw batches, positioned at the first one.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * Views of each batch, nothing decoded or checked.
+     */
+    public List<RecordBatch> batches() {
+        if (isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<RecordBatch> batches = new ArrayList<>();
+        ByteBuffer view = buffer.duplicate();
+        while (view.hasRemaining()) {
+            RecordBatch batch = RecordBatch.wrap(view);
+            batches.add(batch);
+            view.position(view.position() + batch.getSizeInBytes());
+        }
+        return batches;
+    }
+
+    /**
+     * Writes the bytes from position written on to target and returns how
+     * many went out; call again until all getSizeInBytes() are written.
+     * Segment-backed records use transferTo, which moves file pages to a
+     * socket without copying them through the heap. If retention closed the
+     * segment meanwhile, the still valid mapping is written instead.
+     */
+    public long writeTo(WritableByteChannel target, long written) throws IOException {
+        long remaining = getSizeInBytes() - written;
+        if (channel != null) {
+            try {
+                return channel.transferTo(filePosition + written, remaining, target);
+            } catch (ClosedChannelException e) {
+                if (channel.isOpen()) {
+                    throw e; // The target closed, not the segment
+                }
+            }
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(view.position() + (int) written);
+        return target.write(view);
+    }
+
+    public List<Record> toRecords() {
+        List<Record> records = new ArrayList<>(count);
+        for (Record record : this) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Decodes one batch at a time, checking its CRC first.
+     */
+    @Override
+    public Iterator<Record> iterator() {
+        Iterator<RecordBatch> batches = batches().iterator();
+        return new Iterator<Record>() {
+            private Iterator<Record> current = Collections.emptyIterator();
+            private Record next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (current.hasNext()) {
+                        Record record = current.next();
+                        if (record.getOffset() >= startOffset) {
+                            next = record;
+                        }
+                    } else if (batches.hasNext()) {
+                        current = batches.next().records().iterator();
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Record record = next;
+                next = null;
+                return record;
+            }
+        };
+    }
+}
@@ -0,0 +1,236 @@
+package kafka.src.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import kafka.src.message.RecordBatch;
+
+/**
+ * One fixed-size, memory-mapped segment file holding consecutive offsets
+ * starting at baseOffset. It stores {@link RecordBatch}es back to back exactly
+ * as producers encoded them; only the base offset is written by the log. A
+ * batchLength of zero where a batch should start marks the end of the data.
+ *
+ * The file is preallocated to the segment size as a sparse file and appends
+ * are plain memory copies. The writer publishes a batch by bumping the volatile size after
+ * its bytes are in place, so readers only ever see whole batches. When the
+ * segment is rolled the file is truncated to the bytes written.
+ */
+final class LogSegment {
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".index";
+
+    private final long baseOffset;
+    private final Path logFile;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final OffsetIndex index;
+    private final int indexIntervalBytes;
+    private int bytesSinceIndex;
+    private volatile int size;
+    private volatile long nextOffset;
+    private volatile long lastAppendMillis;
+
+    private LogSegment(Path directory, long baseOffset, LogConfig config, boolean active) {
+        this.baseOffset = baseOffset;
+        this.logFile = directory.resolve(fileName(baseOffset, LOG_SUFFIX));
+        this.indexIntervalBytes = config.getIndexIntervalBytes();
+        boolean existed;
+        try {
+            existed = Files.exists(logFile);
+            this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            // Sealed segments keep their truncated size, the active one is preallocated
+            this.capacity = (int) (active ? Math.max(channel.size(), config.getSegmentBytes()) : channel.size());
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            this.lastAppendMillis = existed ? Files.getLastModifiedTime(logFile).toMillis()
+                    : System.currentTimeMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open log segment " + logFile, e);
+        }
+        this.index = new OffsetIndex(directory.resolve(fileName(baseOffset, INDEX_SUFFIX)),
+                active ? config.getMaxIndexEntries() : 0);
+        if (existed) {
+            recover();
+        } else {
+            this.size = 0;
+            this.nextOffset = baseOffset;
+        }
+    }
+
+    /**
+     * Opens or creates the segment starting at baseOffset. Only the active
+     * segment is mapped at full size and takes appends.
+     */
+    static LogSegment open(Path directory, long baseOffset, LogConfig config, boolean active) {
+        return new LogSegment(directory, baseOffset, config, active);
+    }
+
+    static boolean isLogFile(Path file) {
+        return file.getFileName().toString().endsWith(LOG_SUFFIX);
+    }
+
+    static long baseOffsetOf(Path logFile) {
+        String name = logFile.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+    }
+
+    private static String fileName(long baseOffset, String suffix) {
+        return String.format("%020d%s", baseOffset, suffix);
+    }
+
+    /**
+     * Finds the end of the data by scanning from the last index entry. A batch
+     * torn by a crash fails its CRC; its header is cleared so the end marker
+     * holds again, while the rest of the file is left alone to stay sparse.
+     */
+    private void recover() {
+        int position = index.lastPosition();
+        long expectedOffset = baseOffset + index.lastRelativeOffset();
+        while (RecordBatch.isValidAt(buffer, position, capacity)
+                && RecordBatch.baseOffsetAt(buffer, position) == expectedOffset) {
+            expectedOffset = RecordBatch.lastOffsetAt(buffer, position) + 1;
+            position += RecordBatch.sizeAt(buffer, position);
+        }
+        index.truncateAfter(position);
+        int headerBytes = Math.min(RecordBatch.HEADER_BYTES, capacity - position);
+        if (!isZero(position, headerBytes)) {
+            buffer.put(position, new byte[headerBytes]);
+        }
+        this.size = position;
+        this.nextOffset = expectedOffset;
+        this.bytesSinceIndex = position - index.lastPosition();
+    }
+
+    // Reads only, so a clean tail that is still a hole in the file stays one
+    private boolean isZero(int position, int length) {
+        for (int i = position; i < position + length; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean hasRoomFor(int batchBytes) {
+        return size + batchBytes <= capacity && !index.isFull();
+    }
+
+    static int maxBatchBytes(LogConfig config) {
+        return Math.min(config.getSegmentBytes(), LogConfig.MAX_BATCH_BYTES);
+    }
+
+    /**
+     * Copies batch in at the end and gives it offset as its base offset.
+     * Single writer, the log holds its append lock.
+     */
+    void append(long offset, RecordBatch batch) {
+        int position = size;
+        if (bytesSinceIndex >= indexIntervalBytes) {
+            index.append((int) (offset - baseOffset), position);
+            bytesSinceIndex = 0;
+        }
+        int batchBytes = batch.getSizeInBytes();
+        buffer.put(position, batch.getBuffer(), 0, batchBytes);
+        buffer.putLong(position + RecordBatch.BASE_OFFSET_OFFSET, offset);
+        bytesSinceIndex += batchBytes;
+        nextOffset = RecordBatch.lastOffsetAt(buffer, position) + 1;
+        lastAppendMillis = System.currentTimeMillis();
+        size = position + batchBytes;
+    }
+
+    /**
+     * Whole batches from the one holding startOffset to the end of this
+     * segment, within the limits. Index lookup for the nearest earlier batch,
+     * then a forward scan over batch headers only.
+     */
+    LogRecords read(long startOffset, int maxRecords, int maxBytes) {
+        int end = size;
+        int start = index.floorPosition((int) (startOffset - baseOffset));
+        while (start < end && RecordBatch.lastOffsetAt(buffer, start) < startOffset) {
+            start += RecordBatch.sizeAt(buffer, start);
+        }
+        if (start >= end || RecordBatch.baseOffsetAt(buffer, start) > startOffset) {
+            return LogRecords.empty();
+        }
+        int position = start;
+        int count = 0;
+        long next = startOffset;
+        while (position < end && count < maxRecords) {
+            int batchBytes = RecordBatch.sizeAt(buffer, position);
+            if (count > 0 && position - start + batchBytes > maxBytes) {
+                break;
+            }
+            long lastOffset = RecordBatch.lastOffsetAt(buffer, position);
+            count += (int) (lastOffset - Math.max(startOffset, RecordBatch.baseOffsetAt(buffer, position)) + 1);
+            next = lastOffset + 1;
+            position += batchBytes;
+        }
+        return new LogRecords(buffer.slice(start, position - start).asReadOnlyBuffer(), startOffset, count, next,
+                channel, start);
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    long getLastAppendMillis() {
+        return lastAppendMillis;
+    }
+
+    void flush() {
+        buffer.force();
+        index.flush();
+    }
+
+    /**
+     * Truncates the preallocated file to the data written. Called once the
+     * segment stops taking appends.
+     */
+    void seal() {
+        try {
+            buffer.force();
+            channel.truncate(size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not seal log segment " + logFile, e);
+        }
+        index.seal();
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close log segment " + logFile, e);
+        }
+        index.close();
+    }
+
+    /**
+     * Removes the files. Readers still holding the segment keep reading the
+     * mapping, which lives until it is garbage collected.
+     */
+    void delete() {
+        close();
+        index.delete();
+        try {
+            Files.deleteIfExists(logFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete log segment " + logFile, e);
+        }
+    }
+}
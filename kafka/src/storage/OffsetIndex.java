@@ -0,0 +1,145 @@
+package kafka.src.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sparse offset index of one segment: a memory-mapped array of
+ * [int relativeOffset][int position] entries, one per index interval of log
+ * bytes. Entries are appended by the single writer and published through the
+ * volatile entry count, so readers search without locking.
+ */
+final class OffsetIndex {
+    static final int ENTRY_BYTES = 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int maxEntries;
+    private volatile int entries;
+
+    OffsetIndex(Path file, int maxEntries) {
+        this.file = file;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            int existingEntries = (int) (channel.size() / ENTRY_BYTES);
+            this.maxEntries = Math.max(maxEntries, existingEntries);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) this.maxEntries * ENTRY_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open offset index " + file, e);
+        }
+        this.entries = countValidEntries();
+    }
+
+    // Positions strictly grow, the first entry that does not ends the index
+    private int countValidEntries() {
+        int count = 0;
+        int lastPosition = 0;
+        while (count < maxEntries) {
+            int position = buffer.getInt(count * ENTRY_BYTES + 4);
+            if (position <= lastPosition) {
+                break;
+            }
+            lastPosition = position;
+            count++;
+        }
+        return count;
+    }
+
+    boolean isFull() {
+        return entries == maxEntries;
+    }
+
+    void append(int relativeOffset, int position) {
+        int slot = entries * ENTRY_BYTES;
+        buffer.putInt(slot, relativeOffset);
+        buffer.putInt(slot + 4, position);
+        entries++;
+    }
+
+    /**
+     * Position of the last indexed record at or before relativeOffset, 0 if
+     * the segment has to be scanned from its start.
+     */
+    int floorPosition(int relativeOffset) {
+        int low = 0;
+        int high = entries - 1;
+        int position = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(mid * ENTRY_BYTES) <= relativeOffset) {
+                position = buffer.getInt(mid * ENTRY_BYTES + 4);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return position;
+    }
+
+    int lastPosition() {
+        int count = entries;
+        return count == 0 ? 0 : buffer.getInt((count - 1) * ENTRY_BYTES + 4);
+    }
+
+    int lastRelativeOffset() {
+        int count = entries;
+        return count == 0 ? 0 : buffer.getInt((count - 1) * ENTRY_BYTES);
+    }
+
+    /**
+     * Drops entries past the recovered end of the log and clears them, up to
+     * the first slot that was never written, so the rest stays sparse.
+     */
+    void truncateAfter(int logSize) {
+        while (entries > 0 && lastPosition() >= logSize) {
+            entries--;
+        }
+        int stale = entries;
+        while (stale < maxEntries && buffer.getLong(stale * ENTRY_BYTES) != 0) {
+            stale++;
+        }
+        int from = entries * ENTRY_BYTES;
+        buffer.put(from, new byte[stale * ENTRY_BYTES - from]);
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Shrinks the file to the entries written. The mapping stays valid for
+     * readers; nothing past the last entry is read.
+     */
+    void seal() {
+        try {
+            buffer.force();
+            channel.truncate((long) entries * ENTRY_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not seal offset index " + file, e);
+        }
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close offset index " + file, e);
+        }
+    }
+
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete offset index " + file, e);
+        }
+    }
+}
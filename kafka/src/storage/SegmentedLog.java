@@ -0,0 +1,177 @@
+package kafka.src.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import kafka.src.message.RecordBatch;
+
+/**
+ * Append-only partition log split into fixed-size segment files, each with a
+ * sparse offset index. Record batches live in memory-mapped files rather
+ * than on the heap, so appending millions of records allocates nothing per
+ * record.
+ *
+ * One writer at a time appends under a lock; readers find the segment in a
+ * skip list by base offset and read without locking. Retention removes whole
+ * segments, oldest first, once the log is over its size limit or a segment's
+ * last append is older than the age limit. Reopening a directory recovers the
+ * log that was there.
+ */
+public class SegmentedLog implements IPartitionLog {
+    private final Path directory;
+    private final LogConfig config;
+    private final ConcurrentSkipListMap<Long, LogSegment> segments;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private volatile LogSegment activeSegment;
+
+    public SegmentedLog(Path directory, LogConfig config) {
+        this.directory = directory;
+        this.config = config;
+        this.segments = new ConcurrentSkipListMap<>();
+        List<Long> baseOffsets;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                baseOffsets = files.filter(LogSegment::isLogFile).map(LogSegment::baseOffsetOf).sorted()
+                        .collect(Collectors.toList());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open log " + directory, e);
+        }
+        for (int i = 0; i < baseOffsets.size(); i++) {
+            boolean last = i == baseOffsets.size() - 1;
+            long baseOffset = baseOffsets.get(i);
+            segments.put(baseOffset, LogSegment.open(directory, baseOffset, config, last));
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, LogSegment.open(directory, 0, config, true));
+        }
+        this.activeSegment = segments.lastEntry().getValue();
+    }
+
+    /**
+     * Appends the batch as one unit under the lock. Batches never span
+     * segments, a batch that does not fit rolls a new one first.
+     */
+    @Override
+    public long append(RecordBatch batch) {
+        if (batch.getSizeInBytes() > LogSegment.maxBatchBytes(config)) {
+            throw new IllegalArgumentException("Record batch of " + batch.getSizeInBytes()
+                    + " bytes is larger than the " + LogSegment.maxBatchBytes(config) + " bytes a log accepts");
+        }
+        appendLock.lock();
+        try {
+            LogSegment segment = activeSegment;
+            if (!segment.hasRoomFor(batch.getSizeInBytes())) {
+                segment = roll();
+            }
+            long baseOffset = segment.getNextOffset();
+            segment.append(baseOffset, batch);
+            return baseOffset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Caller holds appendLock
+    private LogSegment roll() {
+        LogSegment sealed = activeSegment;
+        sealed.seal();
+        LogSegment next = LogSegment.open(directory, sealed.getNextOffset(), config, true);
+        segments.put(next.getBaseOffset(), next);
+        activeSegment = next;
+        enforceRetention();
+        return next;
+    }
+
+    @Override
+    public LogRecords read(long startOffset, int maxRecords, int maxBytes) {
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(startOffset);
+        if (entry == null || maxRecords <= 0) {
+            return LogRecords.empty();
+        }
+        return entry.getValue().read(startOffset, maxRecords, maxBytes);
+    }
+
+    @Override
+    public long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    @Override
+    public long getEndOffset() {
+        return activeSegment.getNextOffset();
+    }
+
+    public long getSizeInBytes() {
+        long total = 0;
+        for (LogSegment segment : segments.values()) {
+            total += segment.getSize();
+        }
+        return total;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void enforceRetention() {
+        appendLock.lock();
+        try {
+            List<LogSegment> expired = new ArrayList<>();
+            long size = getSizeInBytes();
+            long now = System.currentTimeMillis();
+            for (LogSegment segment : segments.values()) {
+                if (segment == activeSegment) {
+                    break;
+                }
+                boolean overSize = config.getRetentionBytes() != LogConfig.UNLIMITED
+                        && size > config.getRetentionBytes();
+                boolean tooOld = config.getRetentionMillis() != LogConfig.UNLIMITED
+                        && now - segment.getLastAppendMillis() > config.getRetentionMillis();
+                if (!overSize && !tooOld) {
+                    break; // Later segments are newer and the log fits
+                }
+                expired.add(segment);
+                size -= segment.getSize();
+            }
+            for (LogSegment segment : expired) {
+                segments.remove(segment.getBaseOffset());
+                segment.delete();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces written data to disk. Without it the OS writes mapped pages back
+     * on its own schedule, which survives a process crash but not a power loss.
+     */
+    public void flush() {
+        activeSegment.flush();
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            flush();
+            for (LogSegment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+}
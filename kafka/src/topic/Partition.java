@@ -1,39 +1,100 @@
 package kafka.src.topic;
 
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
-import kafka.src.message.Message;
+import kafka.src.message.Record;
+import kafka.src.message.RecordBatch;
+import kafka.src.storage.IPartitionLog;
+import kafka.src.storage.LogRecords;
 
 public class Partition {
     private final String id;
-    private final Map<Integer, Message> messages;
-    private final AtomicInteger currentOffset = new AtomicInteger(-1);
+    private final IPartitionLog log;
+    // Woken after every append; a concurrent set so appends never take a shared lock
+    private final Set<Runnable> appendListeners = ConcurrentHashMap.newKeySet();
 
-    public Partition(String id) {
+    public Partition(String id, IPartitionLog log) {
         this.id = id;
-        this.messages = new ConcurrentHashMap<>();
+        this.log = log;
     }
 
-    public int appendMessage(Message message) {
-        messages.putIfAbsent(message.getOffset(), message);
-        return message.getOffset();
+    /**
+     * Checks the batch CRC and appends it without decoding its records.
+     * Returns the offset of its first record.
+     */
+    public long append(RecordBatch batch) {
+        if (batch.getRecordCount() <= 0) {
+            throw new IllegalArgumentException("Record batch is empty");
+        }
+        batch.ensureValid();
+        long baseOffset = log.append(batch);
+        signalAppend();
+        return baseOffset;
+    }
+
+    /**
+     * Runs listener after each append until it is removed. Listeners run on
+     * the appending thread and must only hand off, e.g. unpark a waiter.
+     */
+    public void addAppendListener(Runnable listener) {
+        appendListeners.add(listener);
     }
 
-    public int getNextOffset() {
-        return currentOffset.incrementAndGet();
+    public void removeAppendListener(Runnable listener) {
+        appendListeners.remove(listener);
     }
 
-    public Optional<Message> getMessageAtOffset(int offset) {
-        if (!messages.containsKey(offset)) {
-            return Optional.empty();
+    private void signalAppend() {
+        if (appendListeners.isEmpty()) {
+            return;
         }
-        return Optional.of(messages.get(offset));
+        for (Runnable listener : appendListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Decodes the batch holding offset and returns that record.
+     */
+    public Optional<Record> getRecordAtOffset(long offset) {
+        LogRecords batch = log.read(offset, 1, 1);
+        for (Record record : batch) {
+            if (record.getOffset() == offset) {
+                return Optional.of(record);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reads whole batches from the one holding startOffset in one call.
+     */
+    public LogRecords read(long startOffset, int maxRecords, int maxBytes) {
+        return log.read(startOffset, maxRecords, maxBytes);
+    }
+
+    /**
+     * Oldest offset still stored, earlier ones were removed by retention.
+     */
+    public long getStartOffset() {
+        return log.getStartOffset();
+    }
+
+    public long getEndOffset() {
+        return log.getEndOffset();
+    }
+
+    public IPartitionLog getLog() {
+        return log;
     }
 
     public String getId() {
         return id;
     }
+
+    public void close() {
+        log.close();
+    }
 }
@@ -1,11 +1,16 @@
 package kafka.src.topic;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import kafka.src.message.Message;
+import kafka.src.message.CompressionType;
+import kafka.src.message.RecordBatch;
+import kafka.src.storage.LogConfig;
+import kafka.src.storage.SegmentedLog;
 import kafka.src.strategy.partition.IPartitionStrategy;
 
 public class Topic {
@@ -13,24 +18,49 @@ public class Topic {
     private final Map<String, Partition> topicPartitions;
     private final IPartitionStrategy partitionStrategy;
 
-    public Topic(String name, int numPartitions, IPartitionStrategy partitionStrategy) {
+    public Topic(String name, int numPartitions, IPartitionStrategy partitionStrategy, LogConfig logConfig) {
         this.name = name;
         this.partitionStrategy = partitionStrategy;
         this.topicPartitions = new HashMap<>();
         for (int i = 0; i < numPartitions; i++) {
             String partitionId = name + "-part-" + i;
-            topicPartitions.put(partitionId, new Partition(partitionId));
+            SegmentedLog log = new SegmentedLog(logConfig.getDirectory().resolve(partitionId), logConfig);
+            topicPartitions.put(partitionId, new Partition(partitionId, log));
         }
     }
 
-    public int addMessage(String key, String message) {
-        int partitionIndex = partitionStrategy.getPartition(key, topicPartitions.size());
-        String partitionId = name + "-part-" + partitionIndex;
-        Partition partition = topicPartitions.get(partitionId);
-        int newOffset = partition.getNextOffset();
+    /**
+     * Appends a single record batch holding key and message, both as UTF-8.
+     */
+    public long addMessage(String key, String message) {
+        RecordBatch.Builder single = new RecordBatch.Builder(RecordBatch.HEADER_BYTES + 64);
+        single.append(System.currentTimeMillis(), key == null ? null : key.getBytes(StandardCharsets.UTF_8),
+                message.getBytes(StandardCharsets.UTF_8), Collections.emptyList());
+        Partition partition = getPartition(partitionFor(key));
+        return partition.append(single.build(CompressionType.NONE));
+    }
+
+    /**
+     * Index of the partition the strategy picks for key.
+     */
+    public int partitionFor(String key) {
+        return partitionStrategy.getPartition(key, topicPartitions.size());
+    }
+
+    public Partition getPartition(int partitionIndex) {
+        Partition partition = topicPartitions.get(name + "-part-" + partitionIndex);
+        if (partition == null) {
+            throw new IllegalArgumentException("Topic " + name + " has no partition " + partitionIndex);
+        }
+        return partition;
+    }
 
-        Message msg = new Message(message, newOffset);
-        return partition.appendMessage(msg);
+    public int getPartitionCount() {
+        return topicPartitions.size();
+    }
+
+    public String getName() {
+        return name;
     }
 
     public List<Partition> getPartitions() {
@@ -40,4 +70,10 @@ public class Topic {
     public List<String> getPartitionIds() {
         return new ArrayList<>(topicPartitions.keySet());
     }
+
+    public void close() {
+        for (Partition partition : topicPartitions.values()) {
+            partition.close();
+        }
+    }
 }